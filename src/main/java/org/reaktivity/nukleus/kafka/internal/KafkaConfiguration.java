@@ -43,6 +43,69 @@ public class KafkaConfiguration extends Configuration
 
     public static final String READ_IDLE_TIMEOUT_PROPERTY = "nukleus.kafka.read.idle.timeout";
 
+    // Maximum bytes of recent messages to cache for each partition of a streaming (non-compacted) topic, split
+    // evenly between the live tail and the most recent historical scan, zero disables caching of streaming topics
+    public static final String STREAMING_CACHE_PARTITION_CAPACITY_PROPERTY =
+            "nukleus.kafka.streaming.cache.partition.capacity";
+
+    // Maximum time to retain recent messages of streaming topics in the cache, zero means no time limit
+    public static final String STREAMING_CACHE_RETENTION_MS_PROPERTY = "nukleus.kafka.streaming.cache.retention.ms";
+
+    // Maximum number of offsets a slow subscriber to a streaming topic may trail the cached live tail while it
+    // is served from the cache, beyond this it falls back to fetching from Kafka, zero means no limit
+    public static final String SLOW_CONSUMER_MAX_LAG_PROPERTY = "nukleus.kafka.slow.consumer.max.lag";
+
+    // Fetch with isolation level read_committed, so records of aborted transactions are not delivered or cached
+    public static final String READ_COMMITTED_PROPERTY = "nukleus.kafka.read.committed";
+
+    // Maximum size of a single message that is fetched again with a larger max partition bytes when it exceeds
+    // nukleus.kafka.fetch.partition.max.bytes, zero means such messages are skipped
+    public static final String FETCH_MESSAGE_MAX_BYTES_PROPERTY = "nukleus.kafka.fetch.message.max.bytes";
+
+    // Number of fetch connections per broker used to bootstrap compacted topics in parallel, each bootstrapping one
+    // topic at a time, zero means topics are bootstrapped on the live fetch connection
+    public static final String TOPIC_BOOTSTRAP_PARALLELISM_PROPERTY = "nukleus.kafka.topic.bootstrap.parallelism";
+
+    // Time to live of topic metadata shared by all routes to the same Kafka cluster (identified by cluster id),
+    // zero means each route looks up topic metadata independently
+    public static final String METADATA_SHARED_TTL_MS_PROPERTY = "nukleus.kafka.metadata.shared.ttl.ms";
+
+    // Interval between background refreshes of partition leaders for all topics, zero means partition leaders
+    // are only refreshed after fetch errors
+    public static final String METADATA_REFRESH_INTERVAL_MS_PROPERTY = "nukleus.kafka.metadata.refresh.interval.ms";
+
+    // Refresh only the leader of a partition after a NOT_LEADER_FOR_PARTITION or LEADER_NOT_AVAILABLE fetch error,
+    // without repeating DescribeConfigs and while the other partitions keep being fetched, instead of refreshing
+    // the whole topic metadata after a backoff
+    public static final String METADATA_PARTITION_REFRESH_PROPERTY = "nukleus.kafka.metadata.partition.refresh";
+
+    // Maximum number of topics requested together in a single Metadata or DescribeConfigs request, batches whose
+    // response would not fit the network decode buffer are split and requested again
+    public static final String METADATA_REQUEST_MAX_TOPICS_PROPERTY = "nukleus.kafka.metadata.request.max.topics";
+
+    // Rack of this nukleus, when set fetches are sent to the replica in the same rack as chosen by the
+    // partition leader (requires Kafka 2.4 or later with a replica selector configured on the brokers)
+    public static final String CLIENT_RACK_PROPERTY = "nukleus.kafka.client.rack";
+
+    // Partitions at most this many offsets behind the high water mark are requested first on live fetch connections,
+    // ahead of partitions still catching up, zero means partitions are requested in partition order
+    public static final String FETCH_LIVE_EDGE_OFFSETS_PROPERTY = "nukleus.kafka.fetch.live.edge.offsets";
+
+    // Percentage of nukleus.kafka.fetch.partition.max.bytes requested for partitions still catching up
+    // when nukleus.kafka.fetch.live.edge.offsets is set
+    public static final String FETCH_CATCH_UP_WEIGHT_PROPERTY = "nukleus.kafka.fetch.catch.up.weight";
+
+    // Maximum number of topics per route publishing lag gauges (offsets behind the high water mark and age),
+    // zero means no lag gauges are published
+    public static final String LAG_METRICS_TOPICS_PROPERTY = "nukleus.kafka.lag.metrics.topics";
+
+    // Maximum number of partitions per topic also publishing their own lag gauges
+    public static final String LAG_METRICS_PARTITIONS_PROPERTY = "nukleus.kafka.lag.metrics.partitions";
+
+    // Interval at which per route latency percentiles (broker append to decode, decode to dispatch and
+    // cache replay) are published and their histograms reset, zero means latencies are not recorded
+    public static final String LATENCY_HISTOGRAM_INTERVAL_MS_PROPERTY = "nukleus.kafka.latency.histogram.interval.ms";
+
     public static final long MESSAGE_CACHE_CAPACITY_DEFAULT = 128 * 1024 * 1024;
 
     public static final int MESSAGE_CACHE_BLOCK_CAPACITY_DEFAULT = 1024;
@@ -51,6 +114,38 @@ public class KafkaConfiguration extends Configuration
 
     public static final int READ_IDLE_TIMEOUT_DEFAULT = 5000;
 
+    public static final long STREAMING_CACHE_PARTITION_CAPACITY_DEFAULT = 0L;
+
+    public static final long STREAMING_CACHE_RETENTION_MS_DEFAULT = 0L;
+
+    public static final long SLOW_CONSUMER_MAX_LAG_DEFAULT = 0L;
+
+    public static final boolean READ_COMMITTED_DEFAULT = false;
+
+    public static final int FETCH_MESSAGE_MAX_BYTES_DEFAULT = 0;
+
+    public static final int TOPIC_BOOTSTRAP_PARALLELISM_DEFAULT = 0;
+
+    public static final long METADATA_SHARED_TTL_MS_DEFAULT = 0L;
+
+    public static final long METADATA_REFRESH_INTERVAL_MS_DEFAULT = 0L;
+
+    public static final boolean METADATA_PARTITION_REFRESH_DEFAULT = false;
+
+    public static final int METADATA_REQUEST_MAX_TOPICS_DEFAULT = 1;
+
+    public static final String CLIENT_RACK_DEFAULT = null;
+
+    public static final long FETCH_LIVE_EDGE_OFFSETS_DEFAULT = 0L;
+
+    public static final int FETCH_CATCH_UP_WEIGHT_DEFAULT = 100;
+
+    public static final int LAG_METRICS_TOPICS_DEFAULT = 0;
+
+    public static final int LAG_METRICS_PARTITIONS_DEFAULT = 0;
+
+    public static final long LATENCY_HISTOGRAM_INTERVAL_MS_DEFAULT = 0L;
+
     public KafkaConfiguration(
         Configuration config)
     {
@@ -92,4 +187,84 @@ public class KafkaConfiguration extends Configuration
         return getInteger(READ_IDLE_TIMEOUT_PROPERTY, READ_IDLE_TIMEOUT_DEFAULT);
     }
 
+    public long streamingCachePartitionCapacity()
+    {
+        return getLong(STREAMING_CACHE_PARTITION_CAPACITY_PROPERTY, STREAMING_CACHE_PARTITION_CAPACITY_DEFAULT);
+    }
+
+    public long streamingCacheRetentionMillis()
+    {
+        return getLong(STREAMING_CACHE_RETENTION_MS_PROPERTY, STREAMING_CACHE_RETENTION_MS_DEFAULT);
+    }
+
+    public long slowConsumerMaxLag()
+    {
+        return getLong(SLOW_CONSUMER_MAX_LAG_PROPERTY, SLOW_CONSUMER_MAX_LAG_DEFAULT);
+    }
+
+    public boolean readCommitted()
+    {
+        return getBoolean(READ_COMMITTED_PROPERTY, READ_COMMITTED_DEFAULT);
+    }
+
+    public int fetchMessageMaxBytes()
+    {
+        return getInteger(FETCH_MESSAGE_MAX_BYTES_PROPERTY, FETCH_MESSAGE_MAX_BYTES_DEFAULT);
+    }
+
+    public int topicBootstrapParallelism()
+    {
+        return getInteger(TOPIC_BOOTSTRAP_PARALLELISM_PROPERTY, TOPIC_BOOTSTRAP_PARALLELISM_DEFAULT);
+    }
+
+    public long metadataSharedTtlMillis()
+    {
+        return getLong(METADATA_SHARED_TTL_MS_PROPERTY, METADATA_SHARED_TTL_MS_DEFAULT);
+    }
+
+    public long metadataRefreshIntervalMillis()
+    {
+        return getLong(METADATA_REFRESH_INTERVAL_MS_PROPERTY, METADATA_REFRESH_INTERVAL_MS_DEFAULT);
+    }
+
+    public boolean metadataPartitionRefresh()
+    {
+        return getBoolean(METADATA_PARTITION_REFRESH_PROPERTY, METADATA_PARTITION_REFRESH_DEFAULT);
+    }
+
+    public int metadataRequestMaxTopics()
+    {
+        return getInteger(METADATA_REQUEST_MAX_TOPICS_PROPERTY, METADATA_REQUEST_MAX_TOPICS_DEFAULT);
+    }
+
+    public String clientRack()
+    {
+        return getProperty(CLIENT_RACK_PROPERTY, CLIENT_RACK_DEFAULT);
+    }
+
+    public long fetchLiveEdgeOffsets()
+    {
+        return getLong(FETCH_LIVE_EDGE_OFFSETS_PROPERTY, FETCH_LIVE_EDGE_OFFSETS_DEFAULT);
+    }
+
+    public int fetchCatchUpWeight()
+    {
+        return getInteger(FETCH_CATCH_UP_WEIGHT_PROPERTY, FETCH_CATCH_UP_WEIGHT_DEFAULT);
+    }
+
+    public int lagMetricsTopics()
+    {
+        return getInteger(LAG_METRICS_TOPICS_PROPERTY, LAG_METRICS_TOPICS_DEFAULT);
+    }
+
+    public int lagMetricsPartitions()
+    {
+        return getInteger(LAG_METRICS_PARTITIONS_PROPERTY, LAG_METRICS_PARTITIONS_DEFAULT);
+    }
+
+    public long latencyHistogramIntervalMillis()
+    {
+        return getLong(LATENCY_HISTOGRAM_INTERVAL_MS_PROPERTY, LATENCY_HISTOGRAM_INTERVAL_MS_DEFAULT);
+    }
+
 }
@@ -36,7 +36,12 @@ public class KafkaCounters
     public final LongSupplier cacheBufferReleases;
     public final LongSupplier dispatchNoWindow;
     public final LongSupplier dispatchNeedOtherMessage;
-
+    public final LongSupplier dispatchEncodeCacheHits;
+    public final LongSupplier slowConsumerParked;
+    public final LongSupplier slowConsumerFallbacks;
+    public final LongConsumer slowConsumerLag;
+    public final LongConsumer fetchBytesReceived;
+    public final LongConsumer fetchBytesCopied;
 
     public KafkaCounters(
         Function<String, LongSupplier> supplyCounter,
@@ -50,6 +55,12 @@ public class KafkaCounters
         this.cacheInUse = supplyAccumulator.apply("cache.inuse");
         this.dispatchNoWindow = supplyCounter.apply("dispatch.no.window");
         this.dispatchNeedOtherMessage = supplyCounter.apply("dispatch.need.other.message");
+        this.dispatchEncodeCacheHits = supplyCounter.apply("dispatch.encode.cache.hits");
+        this.slowConsumerParked = supplyCounter.apply("slow.consumer.parked");
+        this.slowConsumerFallbacks = supplyCounter.apply("slow.consumer.fallbacks");
+        this.slowConsumerLag = supplyAccumulator.apply("slow.consumer.lag");
+        this.fetchBytesReceived = supplyAccumulator.apply("fetch.bytes.received");
+        this.fetchBytesCopied = supplyAccumulator.apply("fetch.bytes.copied");
         this.cacheBufferAcquires = supplyCounter.apply("message.cache.buffer.acquires");
         this.cacheBufferReleases = supplyCounter.apply("message.cache.buffer.releases");
     }
@@ -60,7 +71,8 @@ public class KafkaCounters
     {
         Long2ObjectHashMap<KafkaRefCounters> refCounters =
                 countersByRef.computeIfAbsent(networkName, name -> new Long2ObjectHashMap<>());
-        return refCounters.computeIfAbsent(networkRef, ref -> new KafkaRefCounters(networkName, networkRef, supplyCounter));
+        return refCounters.computeIfAbsent(networkRef,
+                ref -> new KafkaRefCounters(networkName, networkRef, supplyCounter, supplyAccumulator));
     }
 
 }
@@ -16,26 +16,44 @@
 package org.reaktivity.nukleus.kafka.internal;
 
 import java.util.function.Function;
+import java.util.function.LongConsumer;
 import java.util.function.LongSupplier;
 
 import static java.lang.String.format;
 
 public class KafkaRefCounters
 {
+    private final String networkName;
+    private final long networkRef;
+    private final Function<String, LongConsumer> supplyAccumulator;
+
     public final LongSupplier historicalFetches;
+    public final LongSupplier oversizedMessageFetches;
     public final LongSupplier metadataRequestIdleTimeouts;
     public final LongSupplier describeConfigsRequestIdleTimeouts;
     public final LongSupplier listOffsetsRequestIdleTimeouts;
     public final LongSupplier fetchRequestIdleTimeouts;
     public final LongSupplier forcedDetaches;
     public final LongSupplier internalErrors;
+    public final LongSupplier topicBootstrapsCompleted;
+    public final LongSupplier metadataLookupsShared;
+    public final LongSupplier metadataResponseOverflows;
+    public final LongSupplier leaderRefreshes;
+    public final LongSupplier reconnects;
+    public final LongSupplier replicaFallbacks;
 
     KafkaRefCounters(
         String networkName,
         long networkRef,
-        Function<String, LongSupplier> supplyCounter)
+        Function<String, LongSupplier> supplyCounter,
+        Function<String, LongConsumer> supplyAccumulator)
     {
+        this.networkName = networkName;
+        this.networkRef = networkRef;
+        this.supplyAccumulator = supplyAccumulator;
         this.historicalFetches = supplyCounter.apply(format("historical.fetches.%s.%d", networkName, networkRef));
+        this.oversizedMessageFetches = supplyCounter.apply(
+                format("oversized.message.fetches.%s.%d", networkName, networkRef));
         this.metadataRequestIdleTimeouts = supplyCounter.apply(
                 format("metadata.request.idle.timeouts.%s.%d", networkName, networkRef));
         this.describeConfigsRequestIdleTimeouts = supplyCounter.apply(
@@ -48,5 +66,58 @@ public class KafkaRefCounters
                 format("forced.detaches.%s.%d", networkName, networkRef));
         this.internalErrors = supplyCounter.apply(
                 format("internal.errors.%s.%d", networkName, networkRef));
+        this.topicBootstrapsCompleted = supplyCounter.apply(
+                format("topic.bootstraps.completed.%s.%d", networkName, networkRef));
+        this.metadataLookupsShared = supplyCounter.apply(
+                format("metadata.lookups.shared.%s.%d", networkName, networkRef));
+        this.metadataResponseOverflows = supplyCounter.apply(
+                format("metadata.response.overflows.%s.%d", networkName, networkRef));
+        this.leaderRefreshes = supplyCounter.apply(
+                format("leader.refreshes.%s.%d", networkName, networkRef));
+        this.reconnects = supplyCounter.apply(
+                format("reconnects.%s.%d", networkName, networkRef));
+        this.replicaFallbacks = supplyCounter.apply(
+                format("replica.fallbacks.%s.%d", networkName, networkRef));
+    }
+
+    public LongConsumer topicBootstrapOffsetsBehind(
+        String topicName)
+    {
+        return supplyAccumulator.apply(format("topic.bootstrap.offsets.behind.%s.%s.%d", topicName, networkName, networkRef));
+    }
+
+    public LongConsumer topicLagOffsets(
+        String topicName)
+    {
+        return supplyAccumulator.apply(format("topic.lag.offsets.%s.%s.%d", topicName, networkName, networkRef));
+    }
+
+    public LongConsumer topicLagMillis(
+        String topicName)
+    {
+        return supplyAccumulator.apply(format("topic.lag.ms.%s.%s.%d", topicName, networkName, networkRef));
+    }
+
+    public LongConsumer partitionLagOffsets(
+        String topicName,
+        int partition)
+    {
+        return supplyAccumulator.apply(
+                format("partition.lag.offsets.%s.%d.%s.%d", topicName, partition, networkName, networkRef));
+    }
+
+    public LongConsumer latencyMicros(
+        String stage,
+        String statistic)
+    {
+        return supplyAccumulator.apply(format("latency.%s.us.%s.%s.%d", stage, statistic, networkName, networkRef));
+    }
+
+    public LongConsumer partitionLagMillis(
+        String topicName,
+        int partition)
+    {
+        return supplyAccumulator.apply(
+                format("partition.lag.ms.%s.%d.%s.%d", topicName, partition, networkName, networkRef));
     }
 }
@@ -46,6 +46,10 @@ public class CompactedPartitionIndex implements PartitionIndex
 
     static final int MAX_INVALID_ENTRIES = 10000;
 
+    // Initial number of added messages per timestamp index entry, doubled each time the index is thinned
+    static final int TIMESTAMP_INDEX_INTERVAL = 128;
+    static final int MAX_TIMESTAMP_INDEX_ENTRIES = 1024;
+
     private final MessageCache messageCache;
     private final LongSupplier cacheHits;
     private final LongSupplier cacheMisses;
@@ -58,6 +62,12 @@ public class CompactedPartitionIndex implements PartitionIndex
     private final List<DirectBuffer> tombstoneKeys = new ArrayList<>(100);
     private final LongArrayList tombstoneExpiryTimes = new LongArrayList(100, NO_EXPIRY_TIME);
 
+    // Sparse index of (timestamp, offset) pairs in increasing order, timestamps are forced to be non-decreasing
+    private final LongArrayList indexedTimestamps = new LongArrayList(16, NO_OFFSET);
+    private final LongArrayList indexedOffsets = new LongArrayList(16, NO_OFFSET);
+    private int timestampIndexInterval = TIMESTAMP_INDEX_INTERVAL;
+    private int addsSinceTimestampIndexed = TIMESTAMP_INDEX_INTERVAL;
+
     private final EntryIterator iterator = new EntryIterator();
     private final NoMessagesIterator noMessagesIterator = new NoMessagesIterator();
     private final EntryImpl noMessageEntry = new EntryImpl(0L, NO_MESSAGE, NO_POSITION);
@@ -107,6 +117,7 @@ public class CompactedPartitionIndex implements PartitionIndex
         if (requestOffset <= validToOffset && messageStartOffset >= validToOffset)
         {
             validToOffset = messageStartOffset + 1;
+            indexTimestamp(timestamp, messageStartOffset);
             if (entry == null)
             {
                 UnsafeBuffer keyCopy = new UnsafeBuffer(new byte[key.capacity()]);
@@ -182,6 +193,62 @@ public class CompactedPartitionIndex implements PartitionIndex
         return result;
     }
 
+    @Override
+    public long offsetForTimestamp(
+        long timestamp)
+    {
+        long result = NO_OFFSET;
+        final int samples = indexedOffsets.size();
+        if (samples > 0)
+        {
+            // last index entry with a timestamp before the requested timestamp
+            int low = 0;
+            int high = samples;
+            while (low < high)
+            {
+                final int middle = (low + high) >>> 1;
+                if (indexedTimestamps.getLong(middle) < timestamp)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            final int sample = low - 1;
+
+            if (sample == -1)
+            {
+                result = indexedOffsets.getLong(0);
+            }
+            else
+            {
+                // scan only the entries between this index entry and the next one
+                final long limit = sample + 1 < samples ? indexedOffsets.getLong(sample + 1) : validToOffset;
+                result = limit;
+                int position = locate(indexedOffsets.getLong(sample) + 1);
+                for (; position != NO_POSITION && position < entries.size(); position++)
+                {
+                    final EntryImpl entry = entries.get(position);
+                    if (entry.offset >= limit)
+                    {
+                        break;
+                    }
+
+                    final MessageFW message = entry.message == NO_MESSAGE ? null : messageCache.get(entry.message, messageRO);
+                    if (message == null || message.timestamp() >= timestamp)
+                    {
+                        // when the message is not cached we cannot tell, so start here to be safe
+                        result = entry.offset;
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public void extendNextOffset(
         long requestOffset,
@@ -256,6 +323,18 @@ public class CompactedPartitionIndex implements PartitionIndex
 
             compact(0, startOffset);
         }
+
+        // Retain the last index entry at or below the start offset as a lower bound for lookups
+        int expired = 0;
+        while (expired + 1 < indexedOffsets.size() && indexedOffsets.getLong(expired + 1) <= startOffset)
+        {
+            expired++;
+        }
+        if (expired > 0)
+        {
+            indexedOffsets.subList(0, expired).clear();
+            indexedTimestamps.subList(0, expired).clear();
+        }
     }
 
     int numberOfEntries()
@@ -263,6 +342,11 @@ public class CompactedPartitionIndex implements PartitionIndex
         return entries.size();
     }
 
+    int numberOfTimestampIndexEntries()
+    {
+        return indexedOffsets.size();
+    }
+
     private void cacheMessage(
         EntryImpl entry,
         long timestamp,
@@ -281,6 +365,34 @@ public class CompactedPartitionIndex implements PartitionIndex
         }
     }
 
+    private void indexTimestamp(
+        long timestamp,
+        long offset)
+    {
+        if (++addsSinceTimestampIndexed >= timestampIndexInterval)
+        {
+            addsSinceTimestampIndexed = 0;
+            final int samples = indexedTimestamps.size();
+            final long lastTimestamp = samples == 0 ? Long.MIN_VALUE : indexedTimestamps.getLong(samples - 1);
+            indexedTimestamps.addLong(Math.max(timestamp, lastTimestamp));
+            indexedOffsets.addLong(offset);
+
+            if (indexedOffsets.size() > MAX_TIMESTAMP_INDEX_ENTRIES)
+            {
+                // Bound memory by dropping every other entry, keeping the first as the lower bound
+                for (int i = 1, j = 1; j < indexedOffsets.size(); i++, j += 2)
+                {
+                    indexedOffsets.setLong(i, indexedOffsets.getLong(j));
+                    indexedTimestamps.setLong(i, indexedTimestamps.getLong(j));
+                }
+                final int retained = (indexedOffsets.size() + 1) / 2;
+                indexedOffsets.subList(retained, indexedOffsets.size()).clear();
+                indexedTimestamps.subList(retained, indexedTimestamps.size()).clear();
+                timestampIndexInterval <<= 1;
+            }
+        }
+    }
+
     private void cancelTombstoneExpiry(
         UnsafeBuffer key)
     {
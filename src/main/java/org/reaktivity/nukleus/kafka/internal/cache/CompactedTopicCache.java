@@ -130,6 +130,14 @@ public class CompactedTopicCache implements TopicCache
         return indexes[partition].getOffset(key);
     }
 
+    @Override
+    public long offsetForTimestamp(
+        int partition,
+        long timestamp)
+    {
+        return indexes[partition].offsetForTimestamp(timestamp);
+    }
+
     @Override
     public boolean hasMessages(
         Long2LongHashMap fetchOffsets,
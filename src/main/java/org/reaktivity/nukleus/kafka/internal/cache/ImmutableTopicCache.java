@@ -68,4 +68,18 @@ public interface ImmutableTopicCache
         Long2LongHashMap fetchOffsets,
         OctetsFW fetchKey,
         ListFW<KafkaHeaderFW> headers);
+
+    /**
+     * @return the offset of the first message in the given partition with a timestamp at or after the given
+     *         timestamp, or TopicCache.NO_OFFSET if this cannot be determined from the cache
+     */
+    long offsetForTimestamp(
+        int partition,
+        long timestamp);
+
+    /**
+     * @return the offset following the highest offset known to the cache for the given partition
+     */
+    long nextOffset(
+        int partition);
 }
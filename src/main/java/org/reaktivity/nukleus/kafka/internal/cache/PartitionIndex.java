@@ -57,6 +57,13 @@ public interface PartitionIndex
     long getOffset(
         OctetsFW key);
 
+    /*
+     * @return the offset of the first message whose timestamp is not before the given timestamp, which may be
+     *         the next offset, or NO_OFFSET if no messages have been indexed
+     */
+    long offsetForTimestamp(
+        long timestamp);
+
     long nextOffset();
 
     void extendNextOffset(
@@ -0,0 +1,509 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.cache;
+
+import static org.agrona.BitUtil.findNextPositivePowerOfTwo;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.LongSupplier;
+
+import org.agrona.DirectBuffer;
+import org.reaktivity.nukleus.kafka.internal.cache.PartitionIndex.Entry;
+import org.reaktivity.nukleus.kafka.internal.stream.HeadersFW;
+import org.reaktivity.nukleus.kafka.internal.types.KafkaHeaderFW;
+import org.reaktivity.nukleus.kafka.internal.types.ListFW;
+import org.reaktivity.nukleus.kafka.internal.types.MessageFW;
+import org.reaktivity.nukleus.kafka.internal.types.OctetsFW;
+
+/**
+ * Ring of the most recent messages of a streaming (non-compacted) topic partition. The ring only ever holds
+ * a contiguous range of offsets, [startOffset, nextOffset), so a subscriber whose requested offset lies within
+ * that range can be served entirely from memory. Oldest messages are evicted once the configured byte capacity
+ * or retention time is exceeded.
+ */
+public class StreamingPartitionIndex
+{
+    private static final int NO_MESSAGE = MessageCache.NO_MESSAGE;
+    private static final long NO_OFFSET = -1L;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final MessageCache messageCache;
+    private final LongSupplier cacheHits;
+    private final LongSupplier cacheMisses;
+    private final long maxBytes;
+    private final long retentionMillis;
+    private final MessageFW messageRO = new MessageFW();
+    private final HeadersFW headersRO = new HeadersFW();
+    private final EntryIterator iterator = new EntryIterator();
+    private final NoMessagesIterator noMessagesIterator = new NoMessagesIterator();
+    private final EntryImpl entry = new EntryImpl();
+
+    private long[] offsets;
+    private int[] messages;
+    private int[] sizes;
+    private long[] timestamps;
+    private long[] addTimes;
+    private int mask;
+    private int head;
+    private int count;
+    private long bytes;
+
+    private long startOffset = NO_OFFSET;
+    private long validToOffset = NO_OFFSET;
+
+    public StreamingPartitionIndex(
+        long maxBytes,
+        long retentionMillis,
+        MessageCache messageCache,
+        LongSupplier cacheHits,
+        LongSupplier cacheMisses)
+    {
+        this.maxBytes = maxBytes;
+        this.retentionMillis = retentionMillis;
+        this.messageCache = messageCache;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public void add(
+        long requestOffset,
+        long messageStartOffset,
+        long timestamp,
+        long traceId,
+        DirectBuffer key,
+        HeadersFW headers,
+        DirectBuffer value)
+    {
+        if (validToOffset == NO_OFFSET || requestOffset > validToOffset)
+        {
+            // Gap in observed offsets, restart the ring from the requested offset
+            clear();
+            startOffset = requestOffset;
+            validToOffset = requestOffset;
+        }
+
+        // Only cache if there are no gaps in observed offsets and we have not yet observed this offset
+        if (messageStartOffset >= validToOffset)
+        {
+            final int size =
+                (key == null ? 0 : key.capacity()) +
+                headers.sizeof() +
+                (value == null ? 0 : value.capacity());
+
+            if (size <= maxBytes)
+            {
+                evict(maxBytes - size, System.currentTimeMillis());
+                final int message = messageCache.put(timestamp, traceId, key, headers, value);
+                append(messageStartOffset, message, size, timestamp);
+            }
+            else
+            {
+                // Cannot be held in the ring, so the ring restarts after this message
+                clear();
+                startOffset = messageStartOffset + 1;
+            }
+            validToOffset = messageStartOffset + 1;
+        }
+    }
+
+    public Iterator<Entry> entries(
+        long requestOffset,
+        OctetsFW fetchKey,
+        ListFW<KafkaHeaderFW> headerConditions)
+    {
+        evict(maxBytes, System.currentTimeMillis());
+        return inRange(requestOffset) ?
+                iterator.reset(locate(requestOffset), fetchKey, headerConditions) :
+                noMessagesIterator.reset(requestOffset);
+    }
+
+    public Entry getEntry(
+        long offset)
+    {
+        final int position = locate(offset);
+        return position != count && offsetAt(position) == offset ?
+                entry.wrap(offset, messageAt(position)) :
+                entry.wrap(offset, NO_MESSAGE);
+    }
+
+    /**
+     * @return the offset of the first message with a timestamp at or after the given timestamp, assuming timestamps
+     *         do not decrease, or NO_OFFSET if earlier messages which are no longer held may also qualify
+     */
+    public long offsetForTimestamp(
+        long timestamp)
+    {
+        long offset = NO_OFFSET;
+        if (count > 0 && timestampAt(0) < timestamp)
+        {
+            int low = 1;
+            int high = count;
+            while (low < high)
+            {
+                final int middle = (low + high) >>> 1;
+                if (timestampAt(middle) < timestamp)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            offset = low == count ? validToOffset : offsetAt(low);
+        }
+        return offset;
+    }
+
+    public boolean hasMessages(
+        long requestOffset)
+    {
+        return count > 0 && inRange(requestOffset);
+    }
+
+    public void extendNextOffset(
+        long requestOffset,
+        long lastOffset)
+    {
+        if (validToOffset == NO_OFFSET)
+        {
+            startOffset = requestOffset;
+            validToOffset = Math.max(requestOffset, lastOffset);
+        }
+        else if (requestOffset <= validToOffset)
+        {
+            validToOffset = Math.max(lastOffset, validToOffset);
+        }
+    }
+
+    /**
+     * @return whether messages fetched from the given offset extend (or lie within) the range held by this ring
+     */
+    public boolean covers(
+        long requestOffset)
+    {
+        return validToOffset != NO_OFFSET && startOffset <= requestOffset && requestOffset <= validToOffset;
+    }
+
+    public long nextOffset()
+    {
+        return validToOffset == NO_OFFSET ? 0L : validToOffset;
+    }
+
+    public void startOffset(
+        long startOffset)
+    {
+        while (count > 0 && offsetAt(0) < startOffset)
+        {
+            removeFirst();
+        }
+        this.startOffset = Math.max(this.startOffset, startOffset);
+    }
+
+    int numberOfEntries()
+    {
+        return count;
+    }
+
+    long bytes()
+    {
+        return bytes;
+    }
+
+    private void evict(
+        long bytesLimit,
+        long now)
+    {
+        final long expiredTime = retentionMillis > 0 ? now - retentionMillis : Long.MIN_VALUE;
+        while (count > 0 && (bytes > bytesLimit || addTimes[head] < expiredTime))
+        {
+            removeFirst();
+        }
+    }
+
+    private void append(
+        long offset,
+        int message,
+        int size,
+        long timestamp)
+    {
+        if (count == offsets.length)
+        {
+            grow();
+        }
+        final int index = (head + count) & mask;
+        offsets[index] = offset;
+        messages[index] = message;
+        sizes[index] = size;
+        timestamps[index] = timestamp;
+        addTimes[index] = System.currentTimeMillis();
+        bytes += size;
+        count++;
+    }
+
+    private void removeFirst()
+    {
+        final int message = messages[head];
+        if (message != NO_MESSAGE)
+        {
+            messageCache.release(message);
+        }
+        bytes -= sizes[head];
+        head = (head + 1) & mask;
+        count--;
+
+        // messages up to the next remaining entry are no longer available
+        startOffset = count > 0 ? offsets[head] : validToOffset;
+    }
+
+    private void clear()
+    {
+        while (count > 0)
+        {
+            removeFirst();
+        }
+        head = 0;
+    }
+
+    private boolean inRange(
+        long offset)
+    {
+        return validToOffset != NO_OFFSET && startOffset <= offset && offset < validToOffset;
+    }
+
+    private long offsetAt(
+        int position)
+    {
+        return offsets[(head + position) & mask];
+    }
+
+    private long timestampAt(
+        int position)
+    {
+        return timestamps[(head + position) & mask];
+    }
+
+    private int messageAt(
+        int position)
+    {
+        return messages[(head + position) & mask];
+    }
+
+    // @return position of the first entry with offset greater than or equal to the given offset
+    private int locate(
+        long offset)
+    {
+        int low = 0;
+        int high = count;
+        while (low < high)
+        {
+            final int middle = (low + high) >>> 1;
+            if (offsetAt(middle) < offset)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void grow()
+    {
+        final long[] oldOffsets = offsets;
+        final int[] oldMessages = messages;
+        final int[] oldSizes = sizes;
+        final long[] oldTimestamps = timestamps;
+        final long[] oldAddTimes = addTimes;
+        final int oldMask = mask;
+
+        allocate(oldOffsets.length << 1);
+        for (int i = 0; i < count; i++)
+        {
+            final int oldIndex = (head + i) & oldMask;
+            offsets[i] = oldOffsets[oldIndex];
+            messages[i] = oldMessages[oldIndex];
+            sizes[i] = oldSizes[oldIndex];
+            timestamps[i] = oldTimestamps[oldIndex];
+            addTimes[i] = oldAddTimes[oldIndex];
+        }
+        head = 0;
+    }
+
+    private void allocate(
+        int capacity)
+    {
+        final int size = findNextPositivePowerOfTwo(capacity);
+        offsets = new long[size];
+        messages = new int[size];
+        sizes = new int[size];
+        timestamps = new long[size];
+        addTimes = new long[size];
+        mask = size - 1;
+    }
+
+    private static boolean matches(
+        OctetsFW fetchKey,
+        OctetsFW key)
+    {
+        if (fetchKey == null)
+        {
+            return true;
+        }
+
+        final int length = fetchKey.sizeof();
+        boolean matches = key != null && key.sizeof() == length;
+        final DirectBuffer fetchKeyBuffer = fetchKey.buffer();
+        final DirectBuffer keyBuffer = matches ? key.buffer() : null;
+        for (int i = 0; matches && i < length; i++)
+        {
+            matches = fetchKeyBuffer.getByte(fetchKey.offset() + i) == keyBuffer.getByte(key.offset() + i);
+        }
+        return matches;
+    }
+
+    final class EntryIterator implements Iterator<Entry>
+    {
+        private final EntryImpl entry = new EntryImpl();
+
+        private int position;
+        private boolean hasNext;
+        private OctetsFW fetchKey;
+        private ListFW<KafkaHeaderFW> headerConditions;
+
+        @Override
+        public boolean hasNext()
+        {
+            return hasNext;
+        }
+
+        @Override
+        public Entry next()
+        {
+            EntryImpl result = null;
+            while (position < count)
+            {
+                final long offset = offsetAt(position);
+                final int message = messageAt(position);
+                final MessageFW messageFW = messageCache.get(message, messageRO);
+                position++;
+                if (messageFW == null)
+                {
+                    // no longer in memory, so must be fetched from this offset onwards
+                    cacheMisses.getAsLong();
+                    result = entry.wrap(offset, NO_MESSAGE);
+                    hasNext = false;
+                    break;
+                }
+                else if (matches(fetchKey, messageFW.key()) &&
+                         headersRO.wrap(messageFW.headers()).matches(headerConditions))
+                {
+                    cacheHits.getAsLong();
+                    result = entry.wrap(offset, message);
+                    break;
+                }
+            }
+            if (result == null)
+            {
+                result = entry.wrap(validToOffset, NO_MESSAGE);
+                hasNext = false;
+            }
+            return result;
+        }
+
+        Iterator<Entry> reset(
+            int position,
+            OctetsFW fetchKey,
+            ListFW<KafkaHeaderFW> headerConditions)
+        {
+            this.position = position;
+            this.fetchKey = fetchKey;
+            this.headerConditions = headerConditions;
+            this.hasNext = true;
+            return this;
+        }
+    }
+
+    final class NoMessagesIterator implements Iterator<Entry>
+    {
+        private final EntryImpl entry = new EntryImpl();
+        private int remaining;
+
+        NoMessagesIterator reset(
+            long offset)
+        {
+            entry.wrap(offset, NO_MESSAGE);
+            remaining = 1;
+            return this;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return remaining > 0;
+        }
+
+        @Override
+        public Entry next()
+        {
+            if (remaining-- > 0)
+            {
+                return entry;
+            }
+            else
+            {
+                 throw new NoSuchElementException();
+            }
+        }
+    }
+
+    static final class EntryImpl implements Entry
+    {
+        private long offset;
+        private int message;
+
+        EntryImpl wrap(
+            long offset,
+            int message)
+        {
+            this.offset = offset;
+            this.message = message;
+            return this;
+        }
+
+        @Override
+        public long offset()
+        {
+            return offset;
+        }
+
+        @Override
+        public int messageHandle()
+        {
+            return message;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("Entry[offset=%d, %d]", offset, message);
+        }
+    }
+}
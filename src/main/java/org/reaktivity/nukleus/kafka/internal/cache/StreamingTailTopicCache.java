@@ -0,0 +1,309 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.cache;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.function.LongSupplier;
+
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Long2LongHashMap;
+import org.reaktivity.nukleus.kafka.internal.cache.PartitionIndex.Entry;
+import org.reaktivity.nukleus.kafka.internal.stream.HeadersFW;
+import org.reaktivity.nukleus.kafka.internal.types.KafkaHeaderFW;
+import org.reaktivity.nukleus.kafka.internal.types.ListFW;
+import org.reaktivity.nukleus.kafka.internal.types.MessageFW;
+import org.reaktivity.nukleus.kafka.internal.types.OctetsFW;
+
+/**
+ * A cache of the most recent messages of each partition of a streaming (non-compacted) topic,
+ * allowing subscribers to replay recent history without fetching it again from Kafka.
+ * <p>
+ * Each partition holds two rings: the tail, following the live stream, and the scan, holding the responses
+ * to the most recent historical fetch. The scan ring lets subscribers trailing behind a historical fetch
+ * be served from memory instead of triggering another fetch of the same offsets. The partition capacity is
+ * split evenly between the two rings, so a partition never holds more than the configured capacity.
+ */
+public class StreamingTailTopicCache implements TopicCache
+{
+    private final MessageFW messageRO = new MessageFW();
+    private final MessageCache messageCache;
+    private final StreamingPartitionIndex[] tails;
+    private final StreamingPartitionIndex[] scans;
+    private final MessageIterator messageIterator;
+    private final MessageImpl message = new MessageImpl();
+
+    public StreamingTailTopicCache(
+        int partitionCount,
+        long partitionCapacity,
+        long retentionMillis,
+        MessageCache messageCache,
+        LongSupplier cacheHits,
+        LongSupplier cacheMisses)
+    {
+        this.messageCache = messageCache;
+        this.tails = new StreamingPartitionIndex[partitionCount];
+        this.scans = new StreamingPartitionIndex[partitionCount];
+        final long scanCapacity = partitionCapacity >> 1;
+        final long tailCapacity = partitionCapacity - scanCapacity;
+        for (int i = 0; i < partitionCount; i++)
+        {
+            tails[i] = new StreamingPartitionIndex(tailCapacity, retentionMillis, messageCache,
+                    cacheHits, cacheMisses);
+            scans[i] = new StreamingPartitionIndex(scanCapacity, retentionMillis, messageCache,
+                    cacheHits, cacheMisses);
+        }
+        this.messageIterator = new MessageIterator(partitionCount);
+    }
+
+    @Override
+    public void add(
+        int partition,
+        long requestOffset,
+        long messageStartOffset,
+        long timestamp,
+        long traceId,
+        DirectBuffer key,
+        HeadersFW headers,
+        DirectBuffer value,
+        boolean cacheIfNew)
+    {
+        final StreamingPartitionIndex tail = tails[partition];
+        final StreamingPartitionIndex scan = scans[partition];
+        final StreamingPartitionIndex index;
+        if (tail.covers(requestOffset))
+        {
+            index = tail;
+        }
+        else if (scan.covers(requestOffset))
+        {
+            index = scan;
+        }
+        else
+        {
+            // Newer than the tail means the live stream moved on, otherwise a new historical scan has started
+            index = requestOffset > tail.nextOffset() ? tail : scan;
+        }
+        index.add(requestOffset, messageStartOffset, timestamp, traceId, key, headers, value);
+    }
+
+    @Override
+    public boolean compacted()
+    {
+        return false;
+    }
+
+    @Override
+    public void extendNextOffset(
+        int partition,
+        long requestOffset,
+        long lastOffset)
+    {
+        final StreamingPartitionIndex scan = scans[partition];
+        if (scan.covers(requestOffset) && !tails[partition].covers(requestOffset))
+        {
+            scan.extendNextOffset(requestOffset, lastOffset);
+        }
+        else
+        {
+            tails[partition].extendNextOffset(requestOffset, lastOffset);
+        }
+    }
+
+    @Override
+    public Iterator<MessageRef> getMessages(
+        Long2LongHashMap fetchOffsets,
+        OctetsFW fetchKey,
+        ListFW<KafkaHeaderFW> headers)
+    {
+        return messageIterator.reset(fetchOffsets, fetchKey, headers);
+    }
+
+    @Override
+    public MessageRef getMessage(
+        int partition,
+        long offset)
+    {
+        return message.wrap(partition, index(partition, offset).getEntry(offset));
+    }
+
+    @Override
+    public long getOffset(
+        int partition,
+        OctetsFW key)
+    {
+        return NO_OFFSET;
+    }
+
+    @Override
+    public long offsetForTimestamp(
+        int partition,
+        long timestamp)
+    {
+        final StreamingPartitionIndex tail = tails[partition];
+        final StreamingPartitionIndex scan = scans[partition];
+        long offset = tail.offsetForTimestamp(timestamp);
+        if (offset == NO_OFFSET)
+        {
+            offset = scan.offsetForTimestamp(timestamp);
+
+            // past the end of the scan is only known to qualify if the tail follows on from it
+            if (offset == scan.nextOffset() && !tail.covers(offset))
+            {
+                offset = NO_OFFSET;
+            }
+        }
+        return offset;
+    }
+
+    @Override
+    public boolean hasMessages(
+        Long2LongHashMap fetchOffsets,
+        OctetsFW fetchKey,
+        ListFW<KafkaHeaderFW> headers)
+    {
+        boolean result = false;
+        for (int partition = 0; partition < tails.length && !result; partition++)
+        {
+            final long offset = fetchOffsets.get(partition);
+            result = offset != fetchOffsets.missingValue() && index(partition, offset).hasMessages(offset);
+        }
+        return result;
+    }
+
+    @Override
+    public long nextOffset(
+        int partition)
+    {
+        // a live stream starting from the first offset of the partition is held in the scan ring
+        return Math.max(tails[partition].nextOffset(), scans[partition].nextOffset());
+    }
+
+    @Override
+    public void startOffset(
+        int partition,
+        long startOffset)
+    {
+        tails[partition].startOffset(startOffset);
+        scans[partition].startOffset(startOffset);
+    }
+
+    private StreamingPartitionIndex index(
+        int partition,
+        long offset)
+    {
+        final StreamingPartitionIndex scan = scans[partition];
+        return scan.hasMessages(offset) ? scan : tails[partition];
+    }
+
+    private final class MessageImpl implements MessageRef
+    {
+        private int partition;
+        private long offset;
+        private int messageHandle;
+
+        private MessageImpl wrap(
+            int partition,
+            Entry entry)
+        {
+            this.partition = partition;
+            this.offset = entry.offset();
+            this.messageHandle = entry.messageHandle();
+            return this;
+        }
+
+        @Override
+        public long offset()
+        {
+            return offset;
+        }
+
+        @Override
+        public int partition()
+        {
+            return partition;
+        }
+
+        @Override
+        public MessageFW message()
+        {
+            return messageCache.get(messageHandle, messageRO);
+        }
+    }
+
+    private final class MessageIterator implements Iterator<MessageRef>
+    {
+        private final Iterator<Entry>[] iterators;
+        private final MessageImpl message = new MessageImpl();
+        private int partition = -1;
+
+        @SuppressWarnings("unchecked")
+        MessageIterator(
+            int partitionCount)
+        {
+            iterators = new Iterator[partitionCount];
+        }
+
+        Iterator<MessageRef> reset(
+            Long2LongHashMap fetchOffsets,
+            OctetsFW fetchKey,
+            ListFW<KafkaHeaderFW> headerConditions)
+        {
+            for (int i = 0; i < iterators.length; i++)
+            {
+                final long offset = fetchOffsets.get(i);
+                iterators[i] = offset == fetchOffsets.missingValue() ?
+                        Collections.emptyIterator() :
+                        index(i, offset).entries(offset, fetchKey, headerConditions);
+            }
+            return this;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            boolean result = false;
+            partition = nextPartition(partition);
+            for (int i = 0; i < iterators.length; i++)
+            {
+                result = iterators[partition].hasNext();
+                if (result)
+                {
+                    break;
+                }
+                else
+                {
+                    partition = nextPartition(partition);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public MessageRef next()
+        {
+            return message.wrap(partition, iterators[partition].next());
+        }
+
+        private int nextPartition(
+            int partition)
+        {
+            int result = ++partition;
+            result = result == iterators.length ? 0 : result;
+            return result;
+        }
+    }
+}
@@ -122,6 +122,14 @@ public final class StreamingTopicCache implements TopicCache
         return NO_OFFSET;
     }
 
+    @Override
+    public long offsetForTimestamp(
+        int partition,
+        long timestamp)
+    {
+        return NO_OFFSET;
+    }
+
     @Override
     public boolean hasMessages(
         Long2LongHashMap fetchOffsets,
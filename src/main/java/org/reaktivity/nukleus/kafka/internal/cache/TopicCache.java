@@ -49,9 +49,6 @@ public interface TopicCache extends ImmutableTopicCache
 
     boolean compacted();
 
-    long nextOffset(
-        int partition);
-
     void startOffset(
         int partition,
         long startOffset);
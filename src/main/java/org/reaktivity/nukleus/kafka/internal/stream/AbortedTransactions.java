@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import org.agrona.collections.LongArrayList;
+import org.agrona.collections.LongHashSet;
+
+/*
+ * Aborted transactions reported in a read committed fetch response for one partition. A transaction
+ * is aborted from its first offset until the next control batch of its producer.
+ */
+final class AbortedTransactions
+{
+    private static final long NO_PRODUCER_ID = -1L;
+
+    private final LongArrayList producerIds = new LongArrayList();
+    private final LongArrayList firstOffsets = new LongArrayList();
+    private final LongHashSet abortedProducerIds = new LongHashSet(16, NO_PRODUCER_ID);
+    private int nextPending;
+
+    void reset()
+    {
+        producerIds.clear();
+        firstOffsets.clear();
+        abortedProducerIds.clear();
+        nextPending = 0;
+    }
+
+    // Kafka reports aborted transactions in order of first offset
+    void add(
+        long producerId,
+        long firstOffset)
+    {
+        producerIds.addLong(producerId);
+        firstOffsets.addLong(firstOffset);
+    }
+
+    boolean isAborted(
+        long producerId,
+        long lastOffset)
+    {
+        advance(lastOffset);
+        return abortedProducerIds.contains(producerId);
+    }
+
+    void onControlBatch(
+        long producerId,
+        long lastOffset)
+    {
+        advance(lastOffset);
+        abortedProducerIds.remove(producerId);
+    }
+
+    private void advance(
+        long lastOffset)
+    {
+        while (nextPending < firstOffsets.size() && firstOffsets.getLong(nextPending) <= lastOffset)
+        {
+            abortedProducerIds.add(producerIds.getLong(nextPending));
+            nextPending++;
+        }
+    }
+}
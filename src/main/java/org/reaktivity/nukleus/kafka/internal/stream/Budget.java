@@ -19,6 +19,8 @@ public interface Budget
 {
     void decBudget(long streamId, int amount);
 
+    void blocked(long streamId);
+
     void closed(long streamId);
 
     void closing(long streamId, int credit);
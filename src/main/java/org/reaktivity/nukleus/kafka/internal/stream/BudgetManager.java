@@ -30,6 +30,12 @@ public class BudgetManager
         Runnable budgetAvailable;
         boolean closing;
 
+        // ready queue links and deficit round robin state
+        GroupStreamBudget next;
+        GroupStreamBudget previous;
+        boolean waiting;
+        int deficit;
+
         GroupStreamBudget(long streamId, Runnable budgetAvailable)
         {
             this.streamId = streamId;
@@ -50,7 +56,11 @@ public class BudgetManager
 
         private int initialBudget =  -1;
         private int budget;
-        private int startPosition = -1;
+
+        // streams waiting for budget, in round robin order
+        private GroupStreamBudget head;
+        private GroupStreamBudget tail;
+        private int waitingCount;
 
         GroupBudget(long groupId)
         {
@@ -68,32 +78,86 @@ public class BudgetManager
             budget += credit;
             assert budget <= initialBudget;
 
-            // For fairness iterate from a moving startPosition to end, then 0 to startPosition
-            startPosition = ++startPosition >= streamMap.size() ? 0 : startPosition;
+            // Deficit round robin over the waiting streams only: each visit earns a stream its share of the
+            // group budget, streams which consumed more than their share (large messages) sit out until repaid.
+            // Each waiting stream is visited at most once per credit.
+            final int quantum = Math.max(initialBudget / Math.max(waitingCount, 1), 1);
+            int visits = waitingCount;
+            int served = 0;
+            while (visits-- > 0 && budget > 0 && head != null)
+            {
+                GroupStreamBudget stream = head;
+                dequeue(stream);
+                stream.deficit = Math.min(stream.deficit + quantum, initialBudget);
+                if (stream.deficit > 0 || (visits == 0 && served == 0))
+                {
+                    run(stream);
+                    served++;
+                }
+                else
+                {
+                    enqueue(stream);
+                }
+            }
+        }
 
-            int pos = 0;
-            for (GroupStreamBudget stream : streamMap.values())
+        private void run(
+            GroupStreamBudget stream)
+        {
+            stream.budgetAvailable.run();
+            if (!stream.waiting)
             {
-                if (pos >= startPosition)
+                // no longer backlogged, so forfeits any remaining share
+                stream.deficit = Math.min(stream.deficit, 0);
+            }
+        }
+
+        private void enqueue(
+            GroupStreamBudget stream)
+        {
+            if (!stream.waiting)
+            {
+                stream.waiting = true;
+                stream.next = null;
+                stream.previous = tail;
+                if (tail == null)
                 {
-                    stream.budgetAvailable.run();
+                    head = stream;
                 }
-                if (budget <= 0)
+                else
                 {
-                    break;
+                    tail.next = stream;
                 }
-                pos++;
+                tail = stream;
+                waitingCount++;
             }
+        }
 
-            pos = 0;
-            for (GroupStreamBudget stream : streamMap.values())
+        private void dequeue(
+            GroupStreamBudget stream)
+        {
+            if (stream.waiting)
             {
-                if (pos >= startPosition || budget <= 0)
+                if (stream.previous == null)
+                {
+                    head = stream.next;
+                }
+                else
+                {
+                    stream.previous.next = stream.next;
+                }
+                if (stream.next == null)
+                {
+                    tail = stream.previous;
+                }
+                else
                 {
-                    break;
+                    stream.next.previous = stream.previous;
                 }
-                stream.budgetAvailable.run();
-                pos++;
+                stream.next = null;
+                stream.previous = null;
+                stream.waiting = false;
+                waitingCount--;
             }
         }
 
@@ -101,6 +165,10 @@ public class BudgetManager
         public void closed(long streamId)
         {
             GroupStreamBudget streamBudget = streamMap.remove(streamId);
+            if (streamBudget != null)
+            {
+                dequeue(streamBudget);
+            }
             if (streamMap.isEmpty())
             {
                 groups.remove(groupId);
@@ -119,6 +187,7 @@ public class BudgetManager
             {
                 streamBudget.unackedBudget -= credit;
                 streamBudget.closing = true;
+                dequeue(streamBudget);
                 if (credit > 0)
                 {
                     moreBudget(credit);
@@ -134,6 +203,17 @@ public class BudgetManager
 
             GroupStreamBudget streamBudget = streamMap.get(streamId);
             streamBudget.unackedBudget += amount;
+            streamBudget.deficit = Math.max(streamBudget.deficit - amount, -initialBudget);
+        }
+
+        @Override
+        public void blocked(long streamId)
+        {
+            GroupStreamBudget streamBudget = streamMap.get(streamId);
+            if (streamBudget != null && !streamBudget.closing)
+            {
+                enqueue(streamBudget);
+            }
         }
 
         @Override
@@ -161,6 +241,7 @@ public class BudgetManager
                 }
                 streamBudget = new GroupStreamBudget(streamId, budgetAvailable);
                 streamMap.put(streamId, streamBudget);
+                enqueue(streamBudget);
             }
             else
             {
@@ -192,8 +273,8 @@ public class BudgetManager
             long streams = streamMap.values().stream().count();
             long unackedStreams = streamMap.values().stream().filter(s -> s.unackedBudget > 0).count();
 
-            return String.format("(groupId=%d budget=%d streams=%d unackedStreams=%d)",
-                    groupId, budget, streams, unackedStreams);
+            return String.format("(groupId=%d budget=%d streams=%d unackedStreams=%d waitingStreams=%d)",
+                    groupId, budget, streams, unackedStreams, waitingCount);
         }
     }
 
@@ -210,6 +291,12 @@ public class BudgetManager
             budget -= amount;
         }
 
+        @Override
+        public void blocked(
+            long streamId)
+        {
+        }
+
         @Override
         public void closed(
             long streamId)
@@ -26,11 +26,13 @@ import static org.reaktivity.nukleus.kafka.internal.util.BufferUtil.wrap;
 import static org.reaktivity.nukleus.kafka.internal.util.Flags.FIN;
 import static org.reaktivity.nukleus.kafka.internal.util.Flags.INIT;
 
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntSupplier;
 import java.util.function.IntToLongFunction;
 import java.util.function.LongSupplier;
 import java.util.function.Predicate;
@@ -38,6 +40,7 @@ import java.util.function.Predicate;
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.collections.Long2LongHashMap;
+import org.agrona.collections.Long2LongHashMap.LongIterator;
 import org.agrona.collections.Long2ObjectHashMap;
 import org.agrona.concurrent.UnsafeBuffer;
 import org.reaktivity.nukleus.buffer.BufferPool;
@@ -139,6 +142,7 @@ public final class ClientStreamFactory implements StreamFactory
     final BufferPool bufferPool;
     final MessageCache messageCache;
     private final MutableDirectBuffer writeBuffer;
+    private final MutableDirectBuffer dataBuffer; // encode cache for DATA frames, sized as writeBuffer
     final DelayedTaskScheduler scheduler;
     final KafkaCounters counters;
 
@@ -150,6 +154,35 @@ public final class ClientStreamFactory implements StreamFactory
     private final int fetchPartitionMaxBytes;
     private final boolean forceProactiveMessageCache;
     private final int readIdleTimeout;
+    final long streamingCachePartitionCapacity;
+    final long streamingCacheRetentionMillis;
+    private final long slowConsumerMaxLag;
+    final boolean readCommitted;
+    final int fetchMessageMaxBytes;
+    final int topicBootstrapParallelism;
+    private final long metadataSharedTtlMillis;
+    final long metadataRefreshIntervalMillis;
+    final boolean metadataPartitionRefresh;
+    final int metadataRequestMaxTopics;
+    final String clientRack;
+    final long fetchLiveEdgeOffsets;
+    final int fetchCatchUpWeight;
+    final int lagMetricsTopics;
+    final int lagMetricsPartitions;
+    final long latencyHistogramIntervalMillis;
+    private final Map<String, ClusterMetadata> clusterMetadataById;
+
+    // Encode cache: identifies the message whose DATA frame is currently encoded in dataBuffer, so that
+    // subscribers receiving the same message (e.g. via broadcast) only rewrite per subscriber fields instead
+    // of encoding the value again. Each subscriber still copies the whole frame on accept.
+    private NetworkConnectionPool encodeCachePool;
+    private String encodeCacheTopic;
+    private int encodeCachePartition;
+    private long encodeCacheOffset = NO_OFFSET;
+    private int encodeCacheValueLimit;
+    private byte encodeCacheFlags;
+    private boolean encodeCacheHasKey;
+    private int encodeCacheLimit;
 
     public ClientStreamFactory(
         KafkaConfiguration config,
@@ -171,9 +204,27 @@ public final class ClientStreamFactory implements StreamFactory
         this.fetchPartitionMaxBytes = config.fetchPartitionMaxBytes();
         this.forceProactiveMessageCache = config.messageCacheProactive();
         this.readIdleTimeout = config.readIdleTimeout();
+        this.streamingCachePartitionCapacity = config.streamingCachePartitionCapacity();
+        this.streamingCacheRetentionMillis = config.streamingCacheRetentionMillis();
+        this.slowConsumerMaxLag = config.slowConsumerMaxLag();
+        this.readCommitted = config.readCommitted();
+        this.fetchMessageMaxBytes = config.fetchMessageMaxBytes();
+        this.topicBootstrapParallelism = config.topicBootstrapParallelism();
+        this.metadataSharedTtlMillis = config.metadataSharedTtlMillis();
+        this.metadataRefreshIntervalMillis = config.metadataRefreshIntervalMillis();
+        this.metadataPartitionRefresh = config.metadataPartitionRefresh();
+        this.metadataRequestMaxTopics = Math.max(config.metadataRequestMaxTopics(), 1);
+        this.clientRack = config.clientRack();
+        this.fetchLiveEdgeOffsets = config.fetchLiveEdgeOffsets();
+        this.fetchCatchUpWeight = config.fetchCatchUpWeight();
+        this.lagMetricsTopics = config.lagMetricsTopics();
+        this.lagMetricsPartitions = config.lagMetricsPartitions();
+        this.latencyHistogramIntervalMillis = config.latencyHistogramIntervalMillis();
+        this.clusterMetadataById = new HashMap<>();
         this.router = requireNonNull(router);
         this.budgetManager = new BudgetManager();
         this.writeBuffer = requireNonNull(writeBuffer);
+        this.dataBuffer = new UnsafeBuffer(new byte[writeBuffer.capacity()]);
         this.bufferPool = requireNonNull(bufferPool);
         this.messageCache = new DefaultMessageCache(requireNonNull(memoryManager));
         this.supplyStreamId = requireNonNull(supplyStreamId);
@@ -252,6 +303,13 @@ public final class ClientStreamFactory implements StreamFactory
         return newStream;
     }
 
+    ClusterMetadata supplyClusterMetadata(
+        String clusterId)
+    {
+        return metadataSharedTtlMillis > 0L && clusterId != null ?
+                clusterMetadataById.computeIfAbsent(clusterId, id -> new ClusterMetadata(metadataSharedTtlMillis)) : null;
+    }
+
     private Long2ObjectHashMap<NetworkConnectionPool> newConnectionPoolsByRef(
         String networkName)
     {
@@ -463,21 +521,56 @@ public final class ClientStreamFactory implements StreamFactory
         final long timestamp,
         final DirectBuffer messageValue,
         final int messageValueLimit,
-        final Long2LongHashMap fetchOffsets)
+        final Long2LongHashMap fetchOffsets,
+        final NetworkConnectionPool networkPool,
+        final String topicName,
+        final int partition,
+        final long messageOffset)
     {
         OctetsFW key = messageKey == null ? null : messageKeyRO.wrap(messageKey, 0, messageKey.capacity());
-        OctetsFW value = messageValue == null ? null : messageValueRO.wrap(messageValue, 0, messageValueLimit);
-        final DataFW data = dataRW.wrap(writeBuffer, 0, writeBuffer.capacity())
-                .streamId(targetId)
-                .trace(traceId)
-                .flags(flags)
-                .groupId(0)
-                .padding(padding)
-                .payload(value)
-                .extension(e -> e.set(visitKafkaDataEx(timestamp, fetchOffsets, key)))
-                .build();
 
-        target.accept(data.typeId(), data.buffer(), data.offset(), data.sizeof());
+        if (encodeCacheOffset == messageOffset &&
+            encodeCachePartition == partition &&
+            encodeCacheValueLimit == messageValueLimit &&
+            encodeCacheFlags == flags &&
+            encodeCacheHasKey == (key != null) &&
+            encodeCachePool == networkPool &&
+            encodeCacheTopic.equals(topicName))
+        {
+            // Encode cache hit, the frame was already encoded for another subscriber, only rewrite per subscriber fields
+            dataBuffer.putLong(DataFW.FIELD_OFFSET_STREAM_ID, targetId);
+            dataBuffer.putLong(DataFW.FIELD_OFFSET_TRACE, traceId);
+            dataBuffer.putInt(DataFW.FIELD_OFFSET_PADDING, padding);
+            final int extensionSize = visitKafkaDataEx(timestamp, fetchOffsets, key)
+                    .visit(dataBuffer, encodeCacheLimit, dataBuffer.capacity());
+            counters.dispatchEncodeCacheHits.getAsLong();
+
+            target.accept(DataFW.TYPE_ID, dataBuffer, 0, encodeCacheLimit + extensionSize);
+        }
+        else
+        {
+            OctetsFW value = messageValue == null ? null : messageValueRO.wrap(messageValue, 0, messageValueLimit);
+            final DataFW data = dataRW.wrap(dataBuffer, 0, dataBuffer.capacity())
+                    .streamId(targetId)
+                    .trace(traceId)
+                    .flags(flags)
+                    .groupId(0)
+                    .padding(padding)
+                    .payload(value)
+                    .extension(e -> e.set(visitKafkaDataEx(timestamp, fetchOffsets, key)))
+                    .build();
+
+            encodeCachePool = networkPool;
+            encodeCacheTopic = topicName;
+            encodeCachePartition = partition;
+            encodeCacheOffset = messageOffset;
+            encodeCacheValueLimit = messageValueLimit;
+            encodeCacheFlags = flags;
+            encodeCacheHasKey = key != null;
+            encodeCacheLimit = data.payload().limit();
+
+            target.accept(data.typeId(), data.buffer(), data.offset(), data.sizeof());
+        }
     }
 
     private void doKafkaDataContinuation(
@@ -492,7 +585,8 @@ public final class ClientStreamFactory implements StreamFactory
     {
         OctetsFW value = messageValue == null ? null : messageValueRO.wrap(messageValue, messageValueOffset, messageValueLimit);
 
-        final DataFW data = dataRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+        encodeCacheOffset = NO_OFFSET;
+        final DataFW data = dataRW.wrap(dataBuffer, 0, dataBuffer.capacity())
                 .streamId(targetId)
                 .trace(traceId)
                 .flags(flags)
@@ -577,6 +671,12 @@ public final class ClientStreamFactory implements StreamFactory
         private long progressStartOffset = NO_OFFSET;
         private long progressEndOffset;
 
+        // offsets behind the live tail while parked on the cache, as last reported to counters.slowConsumerLag
+        private long reportedLag;
+
+        // when this subscriber attached to, or was parked on, the cache, used to measure cache replay latency
+        private long cacheReplayStartedAt;
+
         private String topicName;
         private ListFW<KafkaHeaderFW> headers;
         private OctetsFW fetchKey;
@@ -592,8 +692,11 @@ public final class ClientStreamFactory implements StreamFactory
         private final Runnable dispatchFragmentedFromCacheState = this::dispatchFragmentedMessageFromCache;
         private final Runnable dispatchFromPoolState = this::dispatchMessagesFromPool;
         private Runnable dispatchState = NOOP;
+        private Runnable seekResumeState;
+        private int pendingSeeks;
 
         private final Runnable dispatchUsingCurrentState = this::dispatchMessages;
+        private final IntSupplier supplyWindow = this::writeableBytes;
 
         private ClientAcceptStream(
             MessageConsumer applicationThrottle,
@@ -625,6 +728,7 @@ public final class ClientStreamFactory implements StreamFactory
             boolean reattach)
         {
             progressHandler = NOOP_PROGRESS_HANDLER;
+            reportLag(0L);
             if (detacher != null && attacher == null)
             {
                 invoke(detacher);
@@ -724,6 +828,7 @@ public final class ClientStreamFactory implements StreamFactory
                     if (bytesToWrite < payloadLength)
                     {
                         dispatchBlocked = true;
+                        budget.blocked(applicationReplyId);
                     }
                     else
                     {
@@ -743,6 +848,7 @@ public final class ClientStreamFactory implements StreamFactory
                 else
                 {
                     dispatchBlocked = true;
+                    budget.blocked(applicationReplyId);
                     counters.dispatchNoWindow.getAsLong();
                 }
                 result |= MessageDispatcher.FLAGS_EXPECTING_WINDOW;
@@ -792,6 +898,7 @@ public final class ClientStreamFactory implements StreamFactory
 
             if (dispatchBlocked && dispatchState == dispatchFromPoolState)
             {
+                // Slow consumer, park on the cached copy rather than holding back the network fetches
                 enterDispatchFromCacheState();
             }
 
@@ -824,6 +931,7 @@ public final class ClientStreamFactory implements StreamFactory
 
         private void detachFromNetworkPool()
         {
+            reportLag(0L);
             if (detacher != null && dispatchState == dispatchFromPoolState)
             {
                 invoke(detacher);
@@ -838,11 +946,40 @@ public final class ClientStreamFactory implements StreamFactory
         private void dispatchMessages()
         {
             dispatchState.run();
+
+            if (writeableBytes() == 0)
+            {
+                // wait for more budget to continue
+                budget.blocked(applicationReplyId);
+            }
+        }
+
+        private void dispatchIfWriteable()
+        {
+            if (writeableBytes() > 0)
+            {
+                dispatchState.run();
+            }
+            else
+            {
+                // group budget only resumes streams which report they are blocked
+                budget.blocked(applicationReplyId);
+            }
         }
 
         private void dispatchMessagesFromCache()
         {
+            if (lagsBehindCache())
+            {
+                // Too far behind to keep up from the cache, fall back to fetching from Kafka
+                counters.slowConsumerFallbacks.getAsLong();
+                enterDispatchFromPoolState();
+                dispatchState.run();
+                return;
+            }
+
             Iterator<MessageRef> messages = historicalCache.getMessages(fetchOffsets, fetchKey, headers);
+            final LatencyHistogram cacheReplayLatency = networkPool.getCacheReplayLatency();
 
             int previousPartition = NO_PARTITION;
             long flushToOffset = NO_OFFSET;
@@ -869,7 +1006,7 @@ public final class ClientStreamFactory implements StreamFactory
 
                 if (message != null)
                 {
-                    dispatch(
+                    final int result = dispatch(
                         partition,
                         requestOffset,
                         offset,
@@ -879,6 +1016,11 @@ public final class ClientStreamFactory implements StreamFactory
                         message.traceId(),
                         wrap(valueBuffer, message.value()));
 
+                    if (cacheReplayLatency != null && MessageDispatcher.delivered(result))
+                    {
+                        cacheReplayLatency.recordNanos(System.nanoTime() - cacheReplayStartedAt);
+                    }
+
                     previousPartition = partition;
                     offset++;
                     flushToOffset = offset;
@@ -896,6 +1038,8 @@ public final class ClientStreamFactory implements StreamFactory
                 dispatchState = dispatchFragmentedFromCacheState;
             }
 
+            reportLag(lag());
+
             if (!messages.hasNext())
             {
                 // No more messages available in cache
@@ -960,13 +1104,57 @@ public final class ClientStreamFactory implements StreamFactory
 
         private void enterDispatchFromCacheState()
         {
-            if (historicalCache != null && historicalCache.hasMessages(fetchOffsets, fetchKey, headers))
+            if (historicalCache != null && historicalCache.hasMessages(fetchOffsets, fetchKey, headers) &&
+                !lagsBehindCache())
             {
                 dispatchState = fragmentedMessageOffset == NO_OFFSET ?
                         dispatchFromCacheState : dispatchFragmentedFromCacheState;
                 invoke(detacher);
                 progressHandler = NOOP_PROGRESS_HANDLER;
+                cacheReplayStartedAt = System.nanoTime();
+                counters.slowConsumerParked.getAsLong();
+                reportLag(lag());
+            }
+        }
+
+        private long lag()
+        {
+            long lag = 0L;
+            if (!compacted)
+            {
+                final LongIterator partitions = fetchOffsets.keySet().iterator();
+                while (partitions.hasNext())
+                {
+                    final int partition = (int) partitions.nextValue();
+                    lag += Math.max(historicalCache.nextOffset(partition) - fetchOffsets.get(partition), 0L);
+                }
+            }
+            return lag;
+        }
+
+        private void reportLag(
+            long lag)
+        {
+            if (lag != reportedLag)
+            {
+                counters.slowConsumerLag.accept(lag - reportedLag);
+                reportedLag = lag;
+            }
+        }
+
+        private boolean lagsBehindCache()
+        {
+            boolean lags = false;
+            if (slowConsumerMaxLag > 0 && !compacted)
+            {
+                final LongIterator partitions = fetchOffsets.keySet().iterator();
+                while (!lags && partitions.hasNext())
+                {
+                    final int partition = (int) partitions.nextValue();
+                    lags = historicalCache.nextOffset(partition) - fetchOffsets.get(partition) > slowConsumerMaxLag;
+                }
             }
+            return lags;
         }
 
         private void enterDispatchFromPoolState()
@@ -974,6 +1162,7 @@ public final class ClientStreamFactory implements StreamFactory
             dispatchState = dispatchFromPoolState;
             invoke(attacher);
             progressHandler = poolProgressHandler;
+            reportLag(0L);
         }
 
         private void doDeferredDetach()
@@ -1019,7 +1208,8 @@ public final class ClientStreamFactory implements StreamFactory
                 final long oldFetchOffset = this.fetchOffsets.put(partition, nextOffset);
                 doKafkaData(applicationReply, applicationReplyId, traceId, applicationReplyPadding, flags,
                             compacted ? key : null,
-                            timestamp, value, valueLimit, fetchOffsets);
+                            timestamp, value, valueLimit, fetchOffsets, networkPool, topicName,
+                            partition, messageStartOffset);
                 this.fetchOffsets.put(partition, oldFetchOffset);
             }
             else
@@ -1196,6 +1386,7 @@ public final class ClientStreamFactory implements StreamFactory
             {
                 this.historicalCache = historicalCache;
                 this.poolProgressHandler = progressHandler;
+                this.cacheReplayStartedAt = System.nanoTime();
                 dispatchState = dispatchFromCacheState;
             }
             else
@@ -1212,6 +1403,7 @@ public final class ClientStreamFactory implements StreamFactory
             {
                 int partitionId = BufferUtil.partition(hashCode, partitionCount);
                 long offset = fetchOffsets.computeIfAbsent(0L, v -> defaultOffset);
+                offset = offset < 0L ? seek(partitionId, -offset) : offset;
                 long lowestOffset = firstAvailableOffset.applyAsLong(partitionId);
                 offset = Math.max(offset,  lowestOffset);
                 if (partitionId != 0)
@@ -1225,22 +1417,61 @@ public final class ClientStreamFactory implements StreamFactory
                 for (int partition=0; partition < partitionCount; partition++)
                 {
                     long offset = fetchOffsets.computeIfAbsent(partition, v -> defaultOffset);
+                    offset = offset < 0L ? seek(partition, -offset) : offset;
                     long lowestOffset = firstAvailableOffset.applyAsLong(partition);
                     offset = Math.max(offset,  lowestOffset);
                     fetchOffsets.put(partition, offset);
                 }
             }
 
-            if (writeableBytes() > 0)
+            if (pendingSeeks > 0)
             {
-                dispatchState.run();
+                // Wait until the timestamps have been resolved to offsets
+                seekResumeState = dispatchState;
+                dispatchState = NOOP;
+            }
+            else
+            {
+                dispatchIfWriteable();
+            }
+        }
+
+        // Negative fetch offsets request the first message with a timestamp at or after their absolute value
+        private long seek(
+            int partition,
+            long timestamp)
+        {
+            long offset = historicalCache == null ? NO_OFFSET : historicalCache.offsetForTimestamp(partition, timestamp);
+            if (offset == NO_OFFSET)
+            {
+                pendingSeeks++;
+                networkPool.doSeek(topicName, partition, timestamp, o -> onSeekResolved(partition, o));
+                offset = 0L;
+            }
+            return offset;
+        }
+
+        private void onSeekResolved(
+            int partition,
+            long offset)
+        {
+            if (networkAttachId != UNATTACHED && pendingSeeks > 0)
+            {
+                // NO_OFFSET means there is no message at or after the timestamp, so receive only new messages
+                fetchOffsets.put(partition, offset == NO_OFFSET ? NetworkConnectionPool.MAX_OFFSET : offset);
+
+                if (--pendingSeeks == 0)
+                {
+                    dispatchState = seekResumeState;
+                    dispatchIfWriteable();
+                }
             }
         }
 
         private void invoke(
             AttachDetailsConsumer attacher)
         {
-            attacher.apply(fetchOffsets, fetchKey, headers, this, this::writeableBytes);
+            attacher.apply(fetchOffsets, fetchKey, headers, this, supplyWindow);
         }
 
         private void onMetadataError(
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.reaktivity.nukleus.kafka.internal.stream.NetworkConnectionPool.BrokerMetadata;
+
+/*
+ * Topic metadata of one Kafka cluster, shared by the connection pools of all routes to that cluster
+ * so that each topic is looked up at most once per time to live instead of once per route.
+ */
+final class ClusterMetadata
+{
+    private final Map<String, TopicEntry> entriesByTopic = new HashMap<>();
+    private final long ttlMillis;
+
+    ClusterMetadata(
+        long ttlMillis)
+    {
+        this.ttlMillis = ttlMillis;
+    }
+
+    TopicEntry get(
+        String topicName,
+        long now)
+    {
+        TopicEntry entry = entriesByTopic.get(topicName);
+        if (entry != null && now - entry.updatedAt > ttlMillis)
+        {
+            entriesByTopic.remove(topicName);
+            entry = null;
+        }
+        return entry;
+    }
+
+    void put(
+        String topicName,
+        BrokerMetadata[] brokers,
+        int[] nodeIdsByPartition,
+        boolean compacted,
+        int deleteRetentionMs,
+        long now)
+    {
+        entriesByTopic.put(topicName,
+                new TopicEntry(brokers.clone(), nodeIdsByPartition.clone(), compacted, deleteRetentionMs, now));
+    }
+
+    void invalidate(
+        String topicName)
+    {
+        entriesByTopic.remove(topicName);
+    }
+
+    static final class TopicEntry
+    {
+        final BrokerMetadata[] brokers;
+        final int[] nodeIdsByPartition;
+        final boolean compacted;
+        final int deleteRetentionMs;
+        private final long updatedAt;
+
+        private TopicEntry(
+            BrokerMetadata[] brokers,
+            int[] nodeIdsByPartition,
+            boolean compacted,
+            int deleteRetentionMs,
+            long updatedAt)
+        {
+            this.brokers = brokers;
+            this.nodeIdsByPartition = nodeIdsByPartition;
+            this.compacted = compacted;
+            this.deleteRetentionMs = deleteRetentionMs;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
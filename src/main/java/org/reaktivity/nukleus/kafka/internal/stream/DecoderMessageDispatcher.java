@@ -23,6 +23,12 @@ public interface DecoderMessageDispatcher
         int partition,
         long lowWatermark);
 
+    void startBatch(
+        int partition,
+        long requestOffset,
+        long firstOffset,
+        long lastOffset);
+
     int dispatch(
         int partition,
         long requestOffset,
@@ -16,26 +16,34 @@
 package org.reaktivity.nukleus.kafka.internal.stream;
 
 import static java.lang.String.format;
+import static java.nio.ByteBuffer.allocateDirect;
 import static java.util.Objects.requireNonNull;
+import static org.agrona.BitUtil.findNextPositivePowerOfTwo;
 import static org.agrona.LangUtil.rethrowUnchecked;
 import static org.reaktivity.nukleus.kafka.internal.stream.KafkaError.NONE;
 import static org.reaktivity.nukleus.kafka.internal.stream.KafkaError.asKafkaError;
 
 import java.util.function.Function;
+import java.util.function.LongConsumer;
 
 import org.agrona.BitUtil;
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
+import org.reaktivity.nukleus.kafka.internal.function.HighWatermarkConsumer;
 import org.reaktivity.nukleus.kafka.internal.function.KafkaErrorConsumer;
+import org.reaktivity.nukleus.kafka.internal.function.OversizedMessageConsumer;
+import org.reaktivity.nukleus.kafka.internal.function.PreferredReplicaConsumer;
 import org.reaktivity.nukleus.kafka.internal.function.StringIntLongToLongFunction;
 import org.reaktivity.nukleus.kafka.internal.function.StringIntToLongFunction;
 import org.reaktivity.nukleus.kafka.internal.types.OctetsFW;
 import org.reaktivity.nukleus.kafka.internal.types.Varint32FW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.ResponseHeaderFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.FetchResponseFW;
+import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.FetchResponseV11FW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.HeaderFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.PartitionResponseFW;
+import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.PreferredReadReplicaFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.RecordBatchFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.RecordFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.RecordSetFW;
@@ -55,15 +63,22 @@ import org.reaktivity.nukleus.kafka.internal.util.BufferUtil;
  * o When a record batch is truncated, it may be truncated at a record boundary (i.e. one or
  *   more records at the end are absent), or in the middle of a record. In the latter case, the record
  *   length field (which is the first field, and is a varint) will always be present, and not truncated.
+ * o A record batch too large for the decoding buffer can be fetched again once the buffer has been
+ *   enlarged, which is done between responses (when no bytes are buffered) up to maxMessageBytes.
  */
 public class FetchResponseDecoder implements ResponseDecoder
 {
     private static final int UNKNOWN = -1;
+
+    // Bytes copied at a time to complete a partially received fixed size header
+    private static final int SLOT_COPY_BYTES = 256;
     private final ResponseHeaderFW responseRO = new ResponseHeaderFW();
     private final FetchResponseFW fetchResponseRO = new FetchResponseFW();
+    private final FetchResponseV11FW fetchResponseV11RO = new FetchResponseV11FW();
     private final TopicResponseFW topicResponseRO = new TopicResponseFW();
     private final PartitionResponseFW partitionResponseRO = new PartitionResponseFW();
     private final TransactionResponseFW transactionResponseRO = new TransactionResponseFW();
+    private final PreferredReadReplicaFW preferredReadReplicaRO = new PreferredReadReplicaFW();
     private final RecordSetFW recordSetRO = new RecordSetFW();
 
     private final Varint32FW varint32RO = new Varint32FW();
@@ -73,15 +88,29 @@ public class FetchResponseDecoder implements ResponseDecoder
     private final HeaderFW headerRO = new HeaderFW();
 
     private final HeadersFW headers = new HeadersFW();
+    private final AbortedTransactions abortedTransactions = new AbortedTransactions();
     private final DirectBuffer keyBuffer = new UnsafeBuffer(BufferUtil.EMPTY_BYTE_ARRAY);
     private final DirectBuffer valueBuffer = new UnsafeBuffer(BufferUtil.EMPTY_BYTE_ARRAY);
 
     private final Function<String, DecoderMessageDispatcher> getDispatcher;
     private final StringIntToLongFunction getRequestedOffsetForPartition;
     private final StringIntLongToLongFunction updateStartOffsetForPartition;
+    private final HighWatermarkConsumer highWatermarkHandler;
     private final KafkaErrorConsumer errorHandler;
-    private final int maxRecordBatchSize;
-    private final MutableDirectBuffer buffer;
+    private final OversizedMessageConsumer oversizedMessageHandler;
+    private final PreferredReplicaConsumer preferredReplicaHandler;
+    private final boolean rackAware;
+    private final DecoderState afterTransactionResponses;
+    private final int maxMessageBytes;
+    private final MutableDirectBuffer decodingBuffer;
+    private final LongConsumer bytesCopiedAccumulator;
+    private final LatencyHistogram appendToDecodeLatency;
+    private final LatencyHistogram decodeToDispatchLatency;
+
+    private MutableDirectBuffer buffer;
+    private MutableDirectBuffer enlargedBuffer;
+    private int maxRecordBatchSize;
+    private int requiredCapacity;
 
     private DecoderState decoderState;
     private int responseBytesRemaining = UNKNOWN;
@@ -113,14 +142,32 @@ public class FetchResponseDecoder implements ResponseDecoder
         Function<String, DecoderMessageDispatcher> getDispatcher,
         StringIntToLongFunction getRequestedOffsetForPartition,
         StringIntLongToLongFunction updateStartOffsetForPartition,
+        HighWatermarkConsumer highWatermarkHandler,
         KafkaErrorConsumer errorHandler,
-        MutableDirectBuffer decodingBuffer)
+        OversizedMessageConsumer oversizedMessageHandler,
+        PreferredReplicaConsumer preferredReplicaHandler,
+        boolean rackAware,
+        int maxMessageBytes,
+        MutableDirectBuffer decodingBuffer,
+        LongConsumer bytesCopiedAccumulator,
+        LatencyHistogram appendToDecodeLatency,
+        LatencyHistogram decodeToDispatchLatency)
     {
         this.getDispatcher = getDispatcher;
         this.getRequestedOffsetForPartition = getRequestedOffsetForPartition;
         this.updateStartOffsetForPartition = updateStartOffsetForPartition;
+        this.highWatermarkHandler = highWatermarkHandler;
         this.errorHandler = errorHandler;
-        this.buffer = requireNonNull(decodingBuffer);
+        this.oversizedMessageHandler = oversizedMessageHandler;
+        this.preferredReplicaHandler = preferredReplicaHandler;
+        this.rackAware = rackAware;
+        this.afterTransactionResponses = rackAware ? this::decodePreferredReadReplica : this::decodeRecordSet;
+        this.decodingBuffer = requireNonNull(decodingBuffer);
+        this.maxMessageBytes = maxMessageBytes;
+        this.bytesCopiedAccumulator = bytesCopiedAccumulator;
+        this.appendToDecodeLatency = appendToDecodeLatency;
+        this.decodeToDispatchLatency = decodeToDispatchLatency;
+        this.buffer = decodingBuffer;
         this.maxRecordBatchSize = buffer.capacity();
         this.decoderState = this::decodeResponseHeader;
     }
@@ -130,6 +177,11 @@ public class FetchResponseDecoder implements ResponseDecoder
         OctetsFW payload,
         long traceId)
     {
+        if (responseBytesRemaining == UNKNOWN && slotLimit == 0)
+        {
+            resizeBuffer();
+        }
+
         int remaining = decodePayload(payload.buffer(), payload.offset(), payload.limit(), traceId);
 
         // Process any bytes which could not be fitted into the decoding buffer (which is sized to the
@@ -158,39 +210,79 @@ public class FetchResponseDecoder implements ResponseDecoder
         int limit,
         long traceId)
     {
-        int unconsumedBytes = 0;
-        if (slotLimit > 0)
+        // Complete buffered bytes by copying only what the current decoder state needs, and once the
+        // buffered bytes have been decoded continue decoding in place from the network buffer
+        while (slotLimit > 0 && offset < limit)
         {
-            unconsumedBytes = appendToSlot(buffer, offset, limit);
-            buffer = this.buffer;
-            offset = slotOffset;
-            limit = slotLimit;
-        }
-        int newOffset = decode(buffer, offset, limit, traceId);
-        if (responseBytesRemaining != UNKNOWN)
-        {
-            responseBytesRemaining -= newOffset - offset;
+            final int required = bytesToComplete();
+            final int copyLimit = required < limit - offset ? offset + required : limit;
+            final int overflow = appendToSlot(buffer, offset, copyLimit);
+            final int copied = copyLimit - offset - overflow;
+            final int bufferedLimit = slotLimit - copied;
+            final int decodeOffset = slotOffset;
+            final int newSlotOffset = decode(this.buffer, decodeOffset, slotLimit, traceId);
+            consumed(newSlotOffset - decodeOffset);
+
+            if (newSlotOffset >= bufferedLimit)
+            {
+                offset += newSlotOffset - bufferedLimit;
+                slotOffset = slotLimit = 0;
+            }
+            else if (copied == 0 && newSlotOffset == decodeOffset)
+            {
+                // no room left in the decoding buffer, and no progress
+                return limit - offset;
+            }
+            else
+            {
+                slotOffset = newSlotOffset;
+                offset += copied;
+            }
         }
-        if (responseBytesRemaining == 0)
+
+        int unconsumedBytes = 0;
+        if (offset < limit)
         {
-            assert newOffset == limit :
-                    format("no pipelined requests offset = %d limit = %d newOffset = %d", offset, limit, newOffset);
+            int newOffset = decode(buffer, offset, limit, traceId);
+            consumed(newOffset - offset);
+            if (responseBytesRemaining == 0)
+            {
+                assert newOffset == limit :
+                        format("no pipelined requests offset = %d limit = %d newOffset = %d", offset, limit, newOffset);
+            }
+            else if (newOffset < limit)
+            {
+                slotOffset = 0;
+                slotLimit = 0;
+                unconsumedBytes = appendToSlot(buffer, newOffset, limit);
+            }
         }
-        else if (newOffset == limit)
+        return unconsumedBytes;
+    }
+
+    private void consumed(
+        int bytes)
+    {
+        if (responseBytesRemaining != UNKNOWN)
         {
-            slotOffset = slotLimit = 0;
+            responseBytesRemaining -= bytes;
         }
-        else if (slotLimit == 0)
+    }
+
+    // Bytes to copy from the network buffer to complete the current decoder state
+    private int bytesToComplete()
+    {
+        int result = SLOT_COPY_BYTES;
+        if (decoderState == bufferBytesDecoderState)
         {
-            slotOffset = 0;
-            slotLimit = 0;
-            unconsumedBytes = appendToSlot(buffer, newOffset, limit);
+            result = Math.max(bufferBytesDecoderState.bytesToAwait - (slotLimit - slotOffset), 0);
         }
-        else
+        else if (decoderState == skipBytesDecoderState)
         {
-             slotOffset = newOffset;
+            // skipped bytes never need to be contiguous
+            result = 0;
         }
-        return unconsumedBytes;
+        return result;
     }
 
     @Override
@@ -204,6 +296,39 @@ public class FetchResponseDecoder implements ResponseDecoder
         decoderState = this::decodeResponseHeader;
     }
 
+    // Enlarge the decoding buffer for the response following one with an oversized message, otherwise restore it.
+    // The enlarged buffer is kept for later oversized messages, and only grows (in powers of two) when too small.
+    private void resizeBuffer()
+    {
+        MutableDirectBuffer newBuffer = decodingBuffer;
+        if (requiredCapacity > decodingBuffer.capacity())
+        {
+            if (enlargedBuffer == null || enlargedBuffer.capacity() < requiredCapacity)
+            {
+                final int capacity = Math.max(Math.min(findNextPositivePowerOfTwo(requiredCapacity), maxMessageBytes),
+                        requiredCapacity);
+                enlargedBuffer = new UnsafeBuffer(allocateDirect(capacity));
+            }
+            newBuffer = enlargedBuffer;
+        }
+        buffer = newBuffer;
+        maxRecordBatchSize = newBuffer.capacity();
+        requiredCapacity = 0;
+    }
+
+    private boolean refetchOversized(
+        long offset,
+        int messageBytes)
+    {
+        final boolean refetch = messageBytes <= maxMessageBytes;
+        if (refetch)
+        {
+            requiredCapacity = Math.max(requiredCapacity, messageBytes);
+            oversizedMessageHandler.accept(topicName, partition, offset, messageBytes);
+        }
+        return refetch;
+    }
+
     private int appendToSlot(DirectBuffer source, int offset, int limit)
     {
         final int remaining = buffer.capacity() - (slotLimit - slotOffset);
@@ -215,6 +340,7 @@ public class FetchResponseDecoder implements ResponseDecoder
         }
         buffer.putBytes(slotLimit, source, offset, bytesCopied);
         slotLimit += bytesCopied;
+        bytesCopiedAccumulator.accept(bytesCopied);
         return bytesToCopy - bytesCopied;
     }
 
@@ -222,6 +348,7 @@ public class FetchResponseDecoder implements ResponseDecoder
     {
         int dataLength = slotLimit - slotOffset;
         slot.putBytes(0, slot, slotOffset, dataLength);
+        bytesCopiedAccumulator.accept(dataLength);
         slotOffset = 0;
         slotLimit = dataLength;
     }
@@ -268,12 +395,25 @@ public class FetchResponseDecoder implements ResponseDecoder
         long traceId)
     {
         int newOffset = offset;
-        FetchResponseFW response = fetchResponseRO.tryWrap(buffer, offset, limit);
-        if (response != null)
+        if (rackAware)
         {
-            topicCount = response.topicCount();
-            newOffset = response.limit();
-            decoderState = this::decodeTopicResponse;
+            FetchResponseV11FW response = fetchResponseV11RO.tryWrap(buffer, offset, limit);
+            if (response != null)
+            {
+                topicCount = response.topicCount();
+                newOffset = response.limit();
+                decoderState = this::decodeTopicResponse;
+            }
+        }
+        else
+        {
+            FetchResponseFW response = fetchResponseRO.tryWrap(buffer, offset, limit);
+            if (response != null)
+            {
+                topicCount = response.topicCount();
+                newOffset = response.limit();
+                decoderState = this::decodeTopicResponse;
+            }
         }
         return newOffset;
     }
@@ -323,9 +463,10 @@ public class FetchResponseDecoder implements ResponseDecoder
                 errorCode = response.errorCode();
                 highWatermark = response.highWatermark();
                 abortedTransactionCount = response.abortedTransactionCount();
+                abortedTransactions.reset();
                 requestedOffset = getRequestedOffsetForPartition.apply(topicName, partition);
                 nextFetchAt = requestedOffset;
-                decoderState = abortedTransactionCount > 0 ? this::decodeTransactionResponse : this::decodeRecordSet;
+                decoderState = abortedTransactionCount > 0 ? this::decodeTransactionResponse : afterTransactionResponses;
 
                 final long newStartOffset = response.logStartOffset();
                 final long oldStartOffset = updateStartOffsetForPartition.apply(topicName, partition, newStartOffset);
@@ -338,6 +479,10 @@ public class FetchResponseDecoder implements ResponseDecoder
                 {
                     errorHandler.accept(topicName, partition, asKafkaError(errorCode));
                 }
+                else
+                {
+                    highWatermarkHandler.accept(topicName, partition, requestedOffset, highWatermark);
+                }
             }
         }
         else
@@ -360,11 +505,32 @@ public class FetchResponseDecoder implements ResponseDecoder
             if (response != null)
             {
                 abortedTransactionCount--;
+                abortedTransactions.add(response.producerId(), response.firstOffset());
                 newOffset = response.limit();
             }
         }
         else
         {
+            decoderState = afterTransactionResponses;
+        }
+        return newOffset;
+    }
+
+    private int decodePreferredReadReplica(
+        DirectBuffer buffer,
+        int offset,
+        int limit,
+        long traceId)
+    {
+        int newOffset = offset;
+        PreferredReadReplicaFW response = preferredReadReplicaRO.tryWrap(buffer, offset, limit);
+        if (response != null)
+        {
+            newOffset = response.limit();
+            if (errorCode == NONE.errorCode)
+            {
+                preferredReplicaHandler.accept(topicName, partition, response.replicaId());
+            }
             decoderState = this::decodeRecordSet;
         }
         return newOffset;
@@ -389,6 +555,14 @@ public class FetchResponseDecoder implements ResponseDecoder
             {
                 decoderState = this::decodePartitionResponse;
             }
+            else if (recordSetBytesRemaining > maxRecordBatchSize && refetchOversized(requestedOffset, recordSetBytesRemaining))
+            {
+                // Fetch the same offset again once the decoding buffer has been enlarged
+                messageDispatcher.flush(partition, requestedOffset, requestedOffset);
+                skipBytesDecoderState.bytesToSkip = recordSetBytesRemaining;
+                skipBytesDecoderState.nextState = this::decodePartitionResponse;
+                decoderState = skipBytesDecoderState;
+            }
             else if (recordSetBytesRemaining > maxRecordBatchSize)
             {
                 System.out.format(
@@ -432,7 +606,7 @@ public class FetchResponseDecoder implements ResponseDecoder
             skipBytesDecoderState.nextState = this::decodePartitionResponse;
             decoderState = skipBytesDecoderState;
         }
-        else if (isCompressed(recordBatch) || isControlBatch(recordBatch))
+        else if (isAborted(recordBatch) || isCompressed(recordBatch) || isControlBatch(recordBatch))
         {
             nextFetchAt = recordBatch.firstOffset() + recordBatch.lastOffsetDelta() + 1;
             if (nextFetchAt > requestedOffset)
@@ -460,6 +634,17 @@ public class FetchResponseDecoder implements ResponseDecoder
                 // record batch was truncated in response due to max fetch bytes or max partition bytes limit set on request,
                 // contains only one (necessarily incomplete) message
             {
+                if (refetchOversized(recordBatch.firstOffset(), recordBatchActualSize))
+                {
+                    // Fetch the message again with a large enough max partition bytes
+                    nextFetchAt = recordBatch.firstOffset();
+                    messageDispatcher.flush(partition, requestedOffset, nextFetchAt);
+                    skipBytesDecoderState.bytesToSkip = recordSetBytesRemaining;
+                    skipBytesDecoderState.nextState = this::decodePartitionResponse;
+                    decoderState = skipBytesDecoderState;
+                }
+                else
+                {
                     System.out.format(
                         "[nukleus-kafka] skipping large message at topic: %s partition: %d offset: %d, " +
                             "message size %d bytes exceeds configured nukleus.kafka.fetch.partition.max.bytes %d\n",
@@ -469,6 +654,7 @@ public class FetchResponseDecoder implements ResponseDecoder
                     skipBytesDecoderState.bytesToSkip = recordSetBytesRemaining;
                     skipBytesDecoderState.nextState = this::decodePartitionResponse;
                     decoderState = skipBytesDecoderState;
+                }
             }
             else
             {
@@ -481,6 +667,7 @@ public class FetchResponseDecoder implements ResponseDecoder
                 assert recordSetBytesRemaining >= 0;
                 recordBatchBytesRemaining = recordBatchActualSize - recordBatch.sizeof();
                 assert recordBatchBytesRemaining >= 0;
+                messageDispatcher.startBatch(partition, requestedOffset, firstOffset, firstOffset + lastOffsetDelta);
                 decoderState = this::decodeRecordLength;
                 newOffset = recordBatch.limit();
             }
@@ -607,8 +794,21 @@ public class FetchResponseDecoder implements ResponseDecoder
                         value = valueBuffer;
                     }
                     headers.wrap(buffer, headersOffset, headersLimit);
+
+                    final boolean recordLatency = appendToDecodeLatency != null;
+                    if (recordLatency)
+                    {
+                        appendToDecodeLatency.recordMillis(System.currentTimeMillis() - timestamp);
+                    }
+                    final long dispatchStartedAt = recordLatency ? System.nanoTime() : 0L;
+
                     messageDispatcher.dispatch(partition, requestedOffset, currentFetchAt, highWatermark,
                             key, headers, timestamp, traceId, value);
+
+                    if (recordLatency)
+                    {
+                        decodeToDispatchLatency.recordNanos(System.nanoTime() - dispatchStartedAt);
+                    }
                 }
 
                 newOffset = headersLimit;
@@ -625,6 +825,23 @@ public class FetchResponseDecoder implements ResponseDecoder
         return newOffset;
     }
 
+    // Only read committed fetch responses report aborted transactions
+    private boolean isAborted(
+        RecordBatchFW recordBatch)
+    {
+        final long lastOffset = recordBatch.firstOffset() + recordBatch.lastOffsetDelta();
+        boolean aborted = false;
+        if (isControlBatch(recordBatch))
+        {
+            abortedTransactions.onControlBatch(recordBatch.producerId(), lastOffset);
+        }
+        else if (isTransactional(recordBatch))
+        {
+            aborted = abortedTransactions.isAborted(recordBatch.producerId(), lastOffset);
+        }
+        return aborted;
+    }
+
     @FunctionalInterface
     interface DecoderState
     {
@@ -689,6 +906,13 @@ public class FetchResponseDecoder implements ResponseDecoder
         return (attributes & 0x07) != 0;
     }
 
+    private static boolean isTransactional(RecordBatchFW recordBatch)
+    {
+        short attributes = recordBatch.attributes();
+        // fifth lowest bit indicates whether the RecordBatch is part of a transaction
+        return (attributes & 0x10) != 0;
+    }
+
     private static boolean isControlBatch(RecordBatchFW recordBatch)
     {
         short attributes = recordBatch.attributes();
@@ -15,10 +15,14 @@
  */
 package org.reaktivity.nukleus.kafka.internal.stream;
 
+import static org.agrona.BitUtil.SIZE_OF_LONG;
 import static org.reaktivity.nukleus.kafka.internal.util.BufferUtil.EMPTY_BYTE_ARRAY;
 
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.agrona.DirectBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
@@ -26,27 +30,49 @@ import org.reaktivity.nukleus.kafka.internal.types.Flyweight;
 import org.reaktivity.nukleus.kafka.internal.types.KafkaHeaderFW;
 import org.reaktivity.nukleus.kafka.internal.types.ListFW;
 import org.reaktivity.nukleus.kafka.internal.types.OctetsFW;
+import org.reaktivity.nukleus.kafka.internal.types.String16FW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.HeaderFW;
 import org.reaktivity.nukleus.kafka.internal.util.BufferUtil;
 
 public final class HeadersFW
 {
+    private static final int UNINDEXED = -1;
+
+    // Header lookups are nested, one per level of header conditions in the routing tree
+    private static final int INITIAL_LOOKUP_DEPTH = 8;
+
     private final DirectBuffer emptyBuffer = new UnsafeBuffer(EMPTY_BYTE_ARRAY);
 
     private final HeaderFW headerRO = new HeaderFW();
 
-    private final HeaderValueIterator iterator = new HeaderValueIterator();
-
-    private final DirectBuffer key = new UnsafeBuffer(EMPTY_BYTE_ARRAY);
-    private final DirectBuffer value1 = new UnsafeBuffer(EMPTY_BYTE_ARRAY);
-    private final DirectBuffer value2 = new UnsafeBuffer(EMPTY_BYTE_ARRAY);
+    private HeaderValueIterator[] iterators = new HeaderValueIterator[INITIAL_LOOKUP_DEPTH];
 
     private final Function<DirectBuffer, Iterator<DirectBuffer>> supplyHeader = this::supplyHeader;
+    private final Predicate<KafkaHeaderFW> unmatchedCondition = this::unmatched;
 
     private int offset;
     private int limit;
     private DirectBuffer buffer;
 
+    // Index of the wrapped headers, built at most once per wrap, on first lookup
+    private int headerCount = UNINDEXED;
+    private int[] keyHashes = new int[8];
+    private int[] keyOffsets = new int[8];
+    private int[] keyLengths = new int[8];
+    private int[] valueOffsets = new int[8];
+    private int[] valueLengths = new int[8];
+
+    // Number of header lookups still in use, an iterator is released once it has been exhausted
+    private int depth;
+
+    public HeadersFW()
+    {
+        for (int i = 0; i < iterators.length; i++)
+        {
+            iterators[i] = new HeaderValueIterator(i);
+        }
+    }
+
     public DirectBuffer buffer()
     {
         return buffer;
@@ -79,6 +105,8 @@ public final class HeadersFW
         this.buffer = buffer;
         this.offset = offset;
         this.limit = limit;
+        this.headerCount = UNINDEXED;
+        this.depth = 0;
         return this;
     }
 
@@ -101,16 +129,7 @@ public final class HeadersFW
         // Find first non-matching header condition. If not found, all headerConditions are fulfilled.
         return headerConditions == null ||
                headerConditions.isEmpty() ||
-               null == headerConditions.matchFirst(
-            h ->
-            {
-                boolean[] matchFound = new boolean[]{false};
-                headerSupplier().apply(BufferUtil.wrap(key,  h.key())).forEachRemaining(
-                    v -> matchFound[0] = matchFound[0] ||
-                             BufferUtil.wrap(value1, v).equals(BufferUtil.wrap(value2, h.value())));
-                return !matchFound[0];
-            }
-        );
+               null == headerConditions.matchFirst(unmatchedCondition);
     }
 
     @Override
@@ -138,48 +157,157 @@ public final class HeadersFW
 
     private Iterator<DirectBuffer> supplyHeader(DirectBuffer headerKey)
     {
-        return iterator.reset(headerKey);
+        if (headerCount == UNINDEXED)
+        {
+            index();
+        }
+        if (depth == iterators.length)
+        {
+            final int length = iterators.length;
+            iterators = Arrays.copyOf(iterators, length << 1);
+            for (int i = length; i < iterators.length; i++)
+            {
+                iterators[i] = new HeaderValueIterator(i);
+            }
+        }
+        return iterators[depth++].reset(headerKey);
+    }
+
+    private void index()
+    {
+        int count = 0;
+        for (int position = offset; position < limit; position = headerRO.limit())
+        {
+            final HeaderFW header = headerRO.wrap(buffer, position, limit);
+            final OctetsFW value = header.value();
+            if (value == null)
+            {
+                // cannot match any header condition
+                continue;
+            }
+            if (count == keyHashes.length)
+            {
+                final int newLength = count << 1;
+                keyHashes = Arrays.copyOf(keyHashes, newLength);
+                keyOffsets = Arrays.copyOf(keyOffsets, newLength);
+                keyLengths = Arrays.copyOf(keyLengths, newLength);
+                valueOffsets = Arrays.copyOf(valueOffsets, newLength);
+                valueLengths = Arrays.copyOf(valueLengths, newLength);
+            }
+            final OctetsFW name = header.key();
+            keyHashes[count] = BufferUtil.defaultHashCode(buffer, name.offset(), name.limit());
+            keyOffsets[count] = name.offset();
+            keyLengths[count] = name.sizeof();
+            valueOffsets[count] = value.offset();
+            valueLengths[count] = value.sizeof();
+            count++;
+        }
+        headerCount = count;
+    }
+
+    private boolean unmatched(
+        KafkaHeaderFW condition)
+    {
+        if (headerCount == UNINDEXED)
+        {
+            index();
+        }
+
+        final String16FW conditionKey = condition.key();
+        final DirectBuffer conditionBuffer = conditionKey.buffer();
+        final int conditionKeyOffset = conditionKey.offset() + Short.BYTES;
+        final int conditionKeyLength = conditionKey.limit() - conditionKeyOffset;
+        final int conditionKeyHash =
+                BufferUtil.defaultHashCode(conditionBuffer, conditionKeyOffset, conditionKeyOffset + conditionKeyLength);
+        final OctetsFW conditionValue = condition.value();
+
+        boolean matched = false;
+        for (int i = 0; !matched && i < headerCount; i++)
+        {
+            matched = keyHashes[i] == conditionKeyHash &&
+                      bytesEqual(keyOffsets[i], keyLengths[i], conditionBuffer, conditionKeyOffset, conditionKeyLength) &&
+                      bytesEqual(valueOffsets[i], valueLengths[i],
+                              conditionValue.buffer(), conditionValue.offset(), conditionValue.sizeof());
+        }
+        return !matched;
+    }
+
+    private boolean bytesEqual(
+        int offset,
+        int length,
+        DirectBuffer other,
+        int otherOffset,
+        int otherLength)
+    {
+        boolean result = length == otherLength;
+        int i = 0;
+        for (; result && i + SIZE_OF_LONG <= length; i += SIZE_OF_LONG)
+        {
+            result = buffer.getLong(offset + i) == other.getLong(otherOffset + i);
+        }
+        for (; result && i < length; i++)
+        {
+            result = buffer.getByte(offset + i) == other.getByte(otherOffset + i);
+        }
+        return result;
     }
 
     private final class HeaderValueIterator implements Iterator<DirectBuffer>
     {
         private final DirectBuffer headerValue = new UnsafeBuffer(EMPTY_BYTE_ARRAY);
-        private final DirectBuffer compare1 = new UnsafeBuffer(EMPTY_BYTE_ARRAY);
-        private final DirectBuffer compare2 = new UnsafeBuffer(EMPTY_BYTE_ARRAY);
+        private final int level;
 
         private DirectBuffer headerKey;
-        private int position;
+        private int headerKeyHash;
+        private int index;
+
+        private HeaderValueIterator(
+            int level)
+        {
+            this.level = level;
+        }
 
         @Override
         public boolean hasNext()
         {
-            return position < limit();
+            final boolean hasNext = index < headerCount;
+            if (!hasNext)
+            {
+                // lookups nested within this one are complete too, so release them all for reuse
+                depth = Math.min(depth, level);
+            }
+            return hasNext;
         }
 
         @Override
         public DirectBuffer next()
         {
-            headerRO.wrap(buffer, position, limit());
-            OctetsFW value = headerRO.value();
-            headerValue.wrap(value.buffer(), value.offset(), value.sizeof());
-            position = headerRO.limit();
+            if (index >= headerCount)
+            {
+                throw new NoSuchElementException();
+            }
+            final int valueLength = valueLengths[index];
+            if (valueLength == 0)
+            {
+                // Agrona bounds check would fail if value is at the end of the buffer
+                headerValue.wrap(EMPTY_BYTE_ARRAY);
+            }
+            else
+            {
+                headerValue.wrap(buffer, valueOffsets[index], valueLength);
+            }
+            index++;
             advance();
             return headerValue;
         }
 
         private void advance()
         {
-            while (position < limit())
+            while (index < headerCount &&
+                   (keyHashes[index] != headerKeyHash ||
+                    !bytesEqual(keyOffsets[index], keyLengths[index], headerKey, 0, headerKey.capacity())))
             {
-                headerRO.wrap(buffer, position, limit());
-                if (matches(headerRO.key(), headerKey))
-                {
-                    break;
-                }
-                else
-                {
-                    position = headerRO.limit();
-                }
+                index++;
             }
         }
 
@@ -187,16 +315,10 @@ public final class HeadersFW
                 DirectBuffer headerKey)
         {
             this.headerKey = headerKey;
-            position = offset();
+            this.headerKeyHash = BufferUtil.defaultHashCode(headerKey, 0, headerKey.capacity());
+            index = 0;
             advance();
             return this;
         }
-
-        private boolean matches(OctetsFW octets, DirectBuffer buffer)
-        {
-            BufferUtil.wrap(compare1, octets);
-            compare2.wrap(buffer);
-            return compare1.equals(compare2);
-        }
     }
 }
@@ -15,27 +15,24 @@
  */
 package org.reaktivity.nukleus.kafka.internal.stream;
 
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.function.Function;
 
 import org.agrona.DirectBuffer;
-import org.agrona.concurrent.UnsafeBuffer;
 import org.reaktivity.nukleus.kafka.internal.types.KafkaHeaderFW;
 import org.reaktivity.nukleus.kafka.internal.types.OctetsFW;
+import org.reaktivity.nukleus.kafka.internal.util.DirectBufferHashMap;
 
 import static org.reaktivity.nukleus.kafka.internal.stream.HeadersMessageDispatcher.NOOP;
 
 public class KeyMessageDispatcher implements MessageDispatcher
 {
-    protected final UnsafeBuffer buffer = new UnsafeBuffer(new byte[0]);
     private final Function<DirectBuffer, HeaderValueMessageDispatcher> createHeaderValueMessageDispatcher;
 
-    private Map<UnsafeBuffer, HeadersMessageDispatcher> dispatchersByKey = new HashMap<>();
+    private final DirectBufferHashMap<HeadersMessageDispatcher> dispatchersByKey = new DirectBufferHashMap<>();
 
     boolean deferUpdates;
-    private boolean hasDeferredUpdates;
+    private int deferredRemovals;
 
     public KeyMessageDispatcher(
         Function<DirectBuffer, HeaderValueMessageDispatcher> createHeaderValueMessageDispatcher)
@@ -80,8 +77,7 @@ public class KeyMessageDispatcher implements MessageDispatcher
         long traceId,
         DirectBuffer value)
     {
-        buffer.wrap(key, 0, key.capacity());
-        MessageDispatcher result = dispatchersByKey.get(buffer);
+        MessageDispatcher result = dispatchersByKey.get(key, 0, key.capacity());
         return result == null ? 0 :
             result.dispatch(partition, requestOffset, messageOffset, key, supplyHeader, timestamp, traceId, value);
     }
@@ -124,14 +120,15 @@ public class KeyMessageDispatcher implements MessageDispatcher
 
     public void add(OctetsFW key, Iterator<KafkaHeaderFW> headers, MessageDispatcher dispatcher)
     {
-        buffer.wrap(key.buffer(), key.offset(), key.sizeof());
-        HeadersMessageDispatcher existing = dispatchersByKey.get(buffer);
-        if (existing == null)
+        HeadersMessageDispatcher existing = dispatchersByKey.get(key.buffer(), key.offset(), key.sizeof());
+        if (existing == null || existing == NOOP)
         {
-            UnsafeBuffer keyCopy = new UnsafeBuffer(new byte[key.sizeof()]);
-            keyCopy.putBytes(0,  key.buffer(), key.offset(), key.sizeof());
+            if (existing == NOOP)
+            {
+                deferredRemovals--;
+            }
             existing = new HeadersMessageDispatcher(createHeaderValueMessageDispatcher);
-            dispatchersByKey.put(keyCopy, existing);
+            dispatchersByKey.put(key.buffer(), key.offset(), key.sizeof(), existing);
         }
         existing.add(headers, dispatcher);
     }
@@ -142,8 +139,7 @@ public class KeyMessageDispatcher implements MessageDispatcher
             long lastOffset,
             DirectBuffer key)
     {
-        buffer.wrap(key, 0, key.capacity());
-        MessageDispatcher dispatcher = dispatchersByKey.get(buffer);
+        MessageDispatcher dispatcher = dispatchersByKey.get(key, 0, key.capacity());
         if (dispatcher != null)
         {
             dispatcher.flush(partition, requestOffset, lastOffset);
@@ -153,21 +149,20 @@ public class KeyMessageDispatcher implements MessageDispatcher
     public boolean remove(OctetsFW key, Iterator<KafkaHeaderFW> headers, MessageDispatcher dispatcher)
     {
         boolean result = false;
-        buffer.wrap(key.buffer(), key.offset(), key.sizeof());
-        HeadersMessageDispatcher headersDispatcher = dispatchersByKey.get(buffer);
-        if (headersDispatcher != null)
+        HeadersMessageDispatcher headersDispatcher = dispatchersByKey.get(key.buffer(), key.offset(), key.sizeof());
+        if (headersDispatcher != null && headersDispatcher != NOOP)
         {
             result = headersDispatcher.remove(headers, dispatcher);
             if (headersDispatcher.isEmpty())
             {
                 if (deferUpdates)
                 {
-                    dispatchersByKey.replace(buffer, NOOP);
-                    hasDeferredUpdates = true;
+                    dispatchersByKey.put(key.buffer(), key.offset(), key.sizeof(), NOOP);
+                    deferredRemovals++;
                 }
                 else
                 {
-                    dispatchersByKey.remove(buffer);
+                    dispatchersByKey.remove(key.buffer(), key.offset(), key.sizeof());
                 }
             }
         }
@@ -176,15 +171,15 @@ public class KeyMessageDispatcher implements MessageDispatcher
 
     public boolean isEmpty()
     {
-        return dispatchersByKey.isEmpty() || dispatchersByKey.values().stream().allMatch(x -> x == HeadersMessageDispatcher.NOOP);
+        return dispatchersByKey.size() == deferredRemovals;
     }
 
     private void processDeferredUpdates()
     {
-        if (hasDeferredUpdates)
+        if (deferredRemovals != 0)
         {
-            hasDeferredUpdates = false;
-            dispatchersByKey.entrySet().removeIf(e -> e.getValue() == NOOP);
+            deferredRemovals = 0;
+            dispatchersByKey.removeIf(d -> d == NOOP);
         }
     }
 
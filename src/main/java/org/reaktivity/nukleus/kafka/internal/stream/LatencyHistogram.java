@@ -0,0 +1,146 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import static java.lang.String.format;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/*
+ * Fixed memory histogram of latencies in microseconds with logarithmic buckets, each power of two split
+ * into 8 linear sub buckets (so values are reported at most 12.5% above their actual value). The
+ * percentiles of the values recorded since the previous publish are published as gauges, then the
+ * histogram is reset so each interval reports its own percentiles.
+ */
+final class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private static final String[] PERCENTILE_NAMES = { "p50", "p99", "p999" };
+    private static final double[] PERCENTILES = { 50.0, 99.0, 99.9 };
+
+    private final long[] counts = new long[BUCKETS];
+    private final LongConsumer[] percentileGauges;
+    private final LongConsumer maxGauge;
+    private final long[] publishedPercentiles;
+
+    private long total;
+    private long max;
+    private long publishedMax;
+
+    LatencyHistogram(
+        Function<String, LongConsumer> supplyGauge)
+    {
+        this.percentileGauges = new LongConsumer[PERCENTILES.length];
+        for (int i = 0; i < PERCENTILES.length; i++)
+        {
+            percentileGauges[i] = supplyGauge.apply(PERCENTILE_NAMES[i]);
+        }
+        this.maxGauge = supplyGauge.apply("max");
+        this.publishedPercentiles = new long[PERCENTILES.length];
+    }
+
+    void recordMillis(
+        long millis)
+    {
+        record(millis * 1000L);
+    }
+
+    void recordNanos(
+        long nanos)
+    {
+        record(nanos / 1000L);
+    }
+
+    void record(
+        long micros)
+    {
+        final long value = Math.max(micros, 0L);
+        counts[bucket(value)]++;
+        total++;
+        max = Math.max(max, value);
+    }
+
+    long percentile(
+        double percentile)
+    {
+        long value = 0L;
+        if (total > 0L)
+        {
+            final long target = Math.max((long) Math.ceil(total * percentile / 100.0), 1L);
+            long cumulative = 0L;
+            int bucket = 0;
+            while (cumulative + counts[bucket] < target)
+            {
+                cumulative += counts[bucket];
+                bucket++;
+            }
+            value = Math.min(highestValue(bucket), max);
+        }
+        return value;
+    }
+
+    void publish()
+    {
+        for (int i = 0; i < PERCENTILES.length; i++)
+        {
+            final long value = percentile(PERCENTILES[i]);
+            percentileGauges[i].accept(value - publishedPercentiles[i]);
+            publishedPercentiles[i] = value;
+        }
+        maxGauge.accept(max - publishedMax);
+        publishedMax = max;
+
+        Arrays.fill(counts, 0L);
+        total = 0L;
+        max = 0L;
+    }
+
+    @Override
+    public String toString()
+    {
+        return format("LatencyHistogram: total=%d max=%d", total, max);
+    }
+
+    static int bucket(
+        long value)
+    {
+        int bucket = (int) value;
+        if (value >= SUB_BUCKETS)
+        {
+            final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            bucket = ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        }
+        return bucket;
+    }
+
+    static long highestValue(
+        int bucket)
+    {
+        long value = bucket;
+        if (bucket >= SUB_BUCKETS)
+        {
+            final int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+            final long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+            value = lowest + (1L << shift) - 1;
+        }
+        return value;
+    }
+}
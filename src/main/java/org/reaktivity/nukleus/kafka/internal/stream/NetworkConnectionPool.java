@@ -38,7 +38,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
-import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.BiConsumer;
@@ -46,12 +46,12 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntSupplier;
 import java.util.function.IntToLongFunction;
+import java.util.function.LongConsumer;
 import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
-import org.agrona.TimerWheel.Timer;
 import org.agrona.collections.ArrayUtil;
 import org.agrona.collections.Int2ObjectHashMap;
 import org.agrona.collections.IntArrayList;
@@ -63,6 +63,7 @@ import org.reaktivity.nukleus.buffer.BufferPool;
 import org.reaktivity.nukleus.function.MessageConsumer;
 import org.reaktivity.nukleus.kafka.internal.KafkaRefCounters;
 import org.reaktivity.nukleus.kafka.internal.cache.CompactedTopicCache;
+import org.reaktivity.nukleus.kafka.internal.cache.StreamingTailTopicCache;
 import org.reaktivity.nukleus.kafka.internal.cache.StreamingTopicCache;
 import org.reaktivity.nukleus.kafka.internal.cache.MessageCache;
 import org.reaktivity.nukleus.kafka.internal.cache.TopicCache;
@@ -82,14 +83,18 @@ import org.reaktivity.nukleus.kafka.internal.types.codec.config.DescribeConfigsR
 import org.reaktivity.nukleus.kafka.internal.types.codec.config.ResourceRequestFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.config.ResourceResponseFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.FetchRequestFW;
+import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.FetchRequestV11FW;
+import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.FetchRequestV11Part2FW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.FetchResponseFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.PartitionRequestFW;
+import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.PartitionRequestV11FW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.PartitionResponseFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.RecordSetFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.TopicRequestFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.TopicResponseFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.metadata.BrokerMetadataFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.metadata.MetadataRequestFW;
+import org.reaktivity.nukleus.kafka.internal.types.codec.metadata.MetadataRequestPart2FW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.metadata.MetadataResponseFW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.metadata.MetadataResponsePart2FW;
 import org.reaktivity.nukleus.kafka.internal.types.codec.metadata.PartitionMetadataFW;
@@ -109,6 +114,7 @@ import org.reaktivity.nukleus.kafka.internal.types.stream.ResetFW;
 import org.reaktivity.nukleus.kafka.internal.types.stream.TcpBeginExFW;
 import org.reaktivity.nukleus.kafka.internal.types.stream.WindowFW;
 import org.reaktivity.nukleus.kafka.internal.util.DelayedTaskScheduler;
+import org.reaktivity.nukleus.kafka.internal.util.DelayedTaskScheduler.Timer;
 
 public final class NetworkConnectionPool
 {
@@ -117,6 +123,7 @@ public final class NetworkConnectionPool
     static final long MAX_OFFSET = Long.MAX_VALUE;
 
     private static final short FETCH_API_VERSION = 5;
+    private static final short FETCH_RACK_AWARE_API_VERSION = 11;
     private static final short FETCH_API_KEY = 1;
     private static final short LIST_OFFSETS_API_KEY = 2;
     private static final short LIST_OFFSETS_API_VERSION = 2;
@@ -149,6 +156,15 @@ public final class NetworkConnectionPool
         {
         }
 
+        @Override
+        public void startBatch(
+            int partition,
+            long requestOffset,
+            long firstOffset,
+            long lastOffset)
+        {
+        }
+
         @Override
         public int dispatch(
             int partition,
@@ -216,13 +232,23 @@ public final class NetworkConnectionPool
         METADATA, DESCRIBE_CONFIGS
     };
 
+    enum FetchPriority
+    {
+        ANY, LIVE_EDGE, CATCHING_UP
+    };
+
     final RequestHeaderFW.Builder requestRW = new RequestHeaderFW.Builder();
     final FetchRequestFW.Builder fetchRequestRW = new FetchRequestFW.Builder();
     final TopicRequestFW.Builder topicRequestRW = new TopicRequestFW.Builder();
     final PartitionRequestFW.Builder partitionRequestRW = new PartitionRequestFW.Builder();
     final PartitionRequestFW partitionRequestRO = new PartitionRequestFW();
+    final FetchRequestV11FW.Builder fetchRequestV11RW = new FetchRequestV11FW.Builder();
+    final PartitionRequestV11FW.Builder partitionRequestV11RW = new PartitionRequestV11FW.Builder();
+    final FetchRequestV11Part2FW.Builder fetchRequestV11Part2RW = new FetchRequestV11Part2FW.Builder();
 
     final MetadataRequestFW.Builder metadataRequestRW = new MetadataRequestFW.Builder();
+    final MetadataRequestPart2FW.Builder metadataRequestPart2RW = new MetadataRequestPart2FW.Builder();
+    final String16FW.Builder topicNameRW = new String16FW.Builder(ByteOrder.BIG_ENDIAN);
     final DescribeConfigsRequestFW.Builder describeConfigsRequestRW = new DescribeConfigsRequestFW.Builder();
     final ListOffsetsRequestFW.Builder listOffsetsRequestRW = new ListOffsetsRequestFW.Builder();
     final ListOffsetsPartitionRequestFW.Builder listOffsetsPartitionRequestRW = new ListOffsetsPartitionRequestFW.Builder();
@@ -260,6 +286,7 @@ public final class NetworkConnectionPool
     private final int fetchMaxBytes;
     private final int fetchPartitionMaxBytes;
     private final int readIdleTimeout;
+    private final IsolationLevel isolationLevel;
     private final BufferPool bufferPool;
 
     private final MessageCache messageCache;
@@ -268,8 +295,16 @@ public final class NetworkConnectionPool
 
     private AbstractFetchConnection[] connections = new LiveFetchConnection[0];
     private HistoricalFetchConnection[] historicalConnections = new HistoricalFetchConnection[0];
+    private final BootstrapFetchConnection[][] bootstrapConnections;
+    private ClusterMetadata clusterMetadata;
     private MetadataConnection metadataConnection;
     private final Backoff metadataBackoffMillis;
+    private final Timer metadataRefreshTimer;
+    private final LatencyHistogram appendToDecodeLatency;
+    private final LatencyHistogram decodeToDispatchLatency;
+    private final LatencyHistogram cacheReplayLatency;
+    private final Timer latencyTimer;
+    private final Random reconnectRandom;
 
     private final Map<String, TopicMetadata> topicMetadataByName;
     private final Map<String, NetworkTopic> topicsByName;
@@ -281,6 +316,7 @@ public final class NetworkConnectionPool
 
     private int nextAttachId;
     private int nestedDoFlushCalls = 0;
+    private int lagMetricsTopics;
 
     NetworkConnectionPool(
         ClientStreamFactory clientStreamFactory,
@@ -308,7 +344,28 @@ public final class NetworkConnectionPool
         this.topicMetadataByName = new HashMap<>();
         this.routeHeadersByTopic = new HashMap<>();
         this.readIdleTimeout = readIdleTimeout;
+        this.isolationLevel = clientStreamFactory.readCommitted ? IsolationLevel.READ_COMMITTED : IsolationLevel.READ_UNCOMMITTED;
         this.metadataBackoffMillis = new Backoff(10, 10_000);
+        this.reconnectRandom = new Random();
+        this.metadataRefreshTimer = clientStreamFactory.metadataRefreshIntervalMillis > 0L ?
+                clientStreamFactory.scheduler.newBlankTimer() : null;
+        if (clientStreamFactory.latencyHistogramIntervalMillis > 0L)
+        {
+            this.appendToDecodeLatency = new LatencyHistogram(s -> routeCounters.latencyMicros("append.to.decode", s));
+            this.decodeToDispatchLatency = new LatencyHistogram(s -> routeCounters.latencyMicros("decode.to.dispatch", s));
+            this.cacheReplayLatency = new LatencyHistogram(s -> routeCounters.latencyMicros("cache.replay", s));
+            this.latencyTimer = clientStreamFactory.scheduler.newTimeout(clientStreamFactory.latencyHistogramIntervalMillis,
+                    this::publishLatencies);
+        }
+        else
+        {
+            this.appendToDecodeLatency = null;
+            this.decodeToDispatchLatency = null;
+            this.cacheReplayLatency = null;
+            this.latencyTimer = null;
+        }
+        this.bootstrapConnections = new BootstrapFetchConnection[clientStreamFactory.topicBootstrapParallelism][];
+        Arrays.fill(bootstrapConnections, new BootstrapFetchConnection[0]);
     }
 
     int doAttach(
@@ -317,6 +374,7 @@ public final class NetworkConnectionPool
         Consumer<KafkaError> onMetadataError)
     {
         final TopicMetadata metadata = topicMetadataByName.computeIfAbsent(topicName, TopicMetadata::new);
+        scheduleMetadataRefresh();
         final int newAttachId = nextAttachId++;
         metadata.doAttach(
                 newAttachId,
@@ -331,6 +389,28 @@ public final class NetworkConnectionPool
         return newAttachId;
     }
 
+    void doSeek(
+        String topicName,
+        int partition,
+        long timestamp,
+        LongConsumer onOffset)
+    {
+        final TopicMetadata metadata = topicMetadataByName.get(topicName);
+        if (metadata != null)
+        {
+            metadata.addSeek(partition, timestamp, onOffset);
+            final int nodeId = metadata.nodeIdsByPartition[partition];
+            for (AbstractFetchConnection connection : connections)
+            {
+                if (connection.broker != null && connection.broker.nodeId == nodeId)
+                {
+                    connection.offsetsNeeded = true;
+                }
+            }
+            doFlush();
+        }
+    }
+
     private void doAttach(
         String topicName,
         Attachable attachable,
@@ -371,6 +451,7 @@ public final class NetworkConnectionPool
         BiConsumer<KafkaError, String> onMetadataError)
     {
         final TopicMetadata metadata = topicMetadataByName.computeIfAbsent(topicName, TopicMetadata::new);
+        scheduleMetadataRefresh();
 
         if (proactive)
         {
@@ -423,6 +504,39 @@ public final class NetworkConnectionPool
         }
     }
 
+    private void scheduleMetadataRefresh()
+    {
+        if (metadataRefreshTimer != null && !metadataRefreshTimer.isActive())
+        {
+            clientStreamFactory.scheduler.rescheduleTimeout(clientStreamFactory.metadataRefreshIntervalMillis,
+                    metadataRefreshTimer, this::refreshMetadata);
+        }
+    }
+
+    private void refreshMetadata()
+    {
+        for (TopicMetadata metadata : topicMetadataByName.values())
+        {
+            metadata.requestLeadersRefresh();
+        }
+        if (metadataConnection != null)
+        {
+            metadataConnection.doRequestIfNeeded();
+        }
+        if (!topicMetadataByName.isEmpty())
+        {
+            scheduleMetadataRefresh();
+        }
+    }
+
+    private void publishLatencies()
+    {
+        appendToDecodeLatency.publish();
+        decodeToDispatchLatency.publish();
+        cacheReplayLatency.publish();
+        clientStreamFactory.scheduler.rescheduleTimeout(clientStreamFactory.latencyHistogramIntervalMillis, latencyTimer);
+    }
+
     private void doConnections(TopicMetadata topicMetadata)
     {
         topicMetadata.visitBrokers(broker ->
@@ -433,6 +547,15 @@ public final class NetworkConnectionPool
         {
             historicalConnections = applyBrokerMetadata(historicalConnections, broker,  HistoricalFetchConnection::new);
         });
+        for (int i = 0; i < bootstrapConnections.length; i++)
+        {
+            final int lane = i;
+            topicMetadata.visitBrokers(broker ->
+            {
+                bootstrapConnections[lane] = applyBrokerMetadata(bootstrapConnections[lane], broker,
+                        BootstrapFetchConnection::new);
+            });
+        }
     }
 
     private <T extends AbstractFetchConnection> T[] applyBrokerMetadata(
@@ -493,6 +616,13 @@ public final class NetworkConnectionPool
             {
                 connection.doRequestIfNeeded();
             }
+            for (BootstrapFetchConnection[] lane : bootstrapConnections)
+            {
+                for (AbstractFetchConnection connection : lane)
+                {
+                    connection.doRequestIfNeeded();
+                }
+            }
 
             // Repeat the loop once if there were any nested calls to this method
             nestedDoFlushCalls = nestedDoFlushCalls > 1 ? 1 : 0;
@@ -509,12 +639,38 @@ public final class NetworkConnectionPool
             metadata.doDetach(attachId);
             if (!metadata.hasConsumers())
             {
-                topicMetadataByName.remove(topicName);
-                topicsByName.remove(topicName);
+                removeTopicMetadata(topicName);
+                removeTopic(topicName);
             }
         }
     }
 
+    private void removeTopicMetadata(
+        String topicName)
+    {
+        topicMetadataByName.remove(topicName);
+        if (metadataRefreshTimer != null && topicMetadataByName.isEmpty())
+        {
+            metadataRefreshTimer.cancel();
+        }
+    }
+
+    private void removeTopic(
+        String topicName)
+    {
+        final NetworkTopic topic = topicsByName.remove(topicName);
+        if (topic != null && topic.lagMetrics != null)
+        {
+            topic.lagMetrics.close();
+            lagMetricsTopics--;
+        }
+    }
+
+    LatencyHistogram getCacheReplayLatency()
+    {
+        return cacheReplayLatency;
+    }
+
     KafkaRefCounters getRouteCounters()
     {
         return routeCounters;
@@ -556,11 +712,18 @@ public final class NetworkConnectionPool
 
         final MutableDirectBuffer localDecodeBuffer;
 
+        private final ReconnectBackoff reconnectBackoffMillis;
+        private final Timer reconnectTimer;
+        private boolean reconnectDelayed;
+        private boolean reconnecting;
+
         private AbstractNetworkConnection()
         {
             this.networkTarget = NetworkConnectionPool.this.clientStreamFactory.router.supplyTarget(networkName);
             localDecodeBuffer = new UnsafeBuffer(allocateDirect(fetchPartitionMaxBytes));
             timer = clientStreamFactory.scheduler.newBlankTimer();
+            reconnectBackoffMillis = new ReconnectBackoff(100, 10_000, 60_000L, reconnectRandom);
+            reconnectTimer = clientStreamFactory.scheduler.newBlankTimer();
         }
 
         @Override
@@ -590,11 +753,15 @@ public final class NetworkConnectionPool
         final void doBeginIfNotConnected(
             Flyweight.Builder.Visitor extensionVisitor)
         {
-            if (networkId == 0L && networkReplyId == 0L)
+            if (networkId == 0L && networkReplyId == 0L && !reconnectDelayed)
             {
-                // TODO: progressive back-off before reconnect
-                //       if choose to give up, say after maximum retry attempts,
+                // TODO: if choose to give up, say after maximum retry attempts,
                 //       then send END to each consumer to clean up
+                if (reconnecting)
+                {
+                    routeCounters.reconnects.getAsLong();
+                    reconnecting = false;
+                }
 
                 final long newNetworkId = NetworkConnectionPool.this.clientStreamFactory.supplyStreamId.getAsLong();
                 final long newCorrelationId = NetworkConnectionPool.this.clientStreamFactory.supplyCorrelationId.getAsLong();
@@ -613,6 +780,21 @@ public final class NetworkConnectionPool
 
         abstract void doRequestIfNeeded();
 
+        private void delayReconnect()
+        {
+            final int delay = reconnectBackoffMillis.next(System.currentTimeMillis());
+            reconnectDelayed = true;
+            reconnecting = true;
+            reconnectTimer.cancel();
+            clientStreamFactory.scheduler.rescheduleTimeout(delay, reconnectTimer, this::reconnect);
+        }
+
+        private void reconnect()
+        {
+            reconnectDelayed = false;
+            doRequestIfNeeded();
+        }
+
         final void metadataRequestIdle()
         {
             routeCounters.metadataRequestIdleTimeouts.getAsLong();
@@ -640,6 +822,7 @@ public final class NetworkConnectionPool
         final void idle()
         {
             abort();
+            delayReconnect();
             handleConnectionFailed();
         }
 
@@ -707,6 +890,7 @@ public final class NetworkConnectionPool
                 clientStreamFactory.doReset(networkReplyThrottle, networkReplyId);
                 networkReplyId = 0L;
             }
+            delayReconnect();
             handleConnectionFailed();
             timer.cancel();
         }
@@ -840,7 +1024,12 @@ public final class NetworkConnectionPool
                     }
 
                     ResponseHeaderFW response = responseRO.tryWrap(networkBuffer, networkOffset, networkLimit);
-                    if (response == null || response.limit() + response.size() > networkLimit)
+                    if (response != null && response.sizeof() + response.size() > localDecodeBuffer.capacity() &&
+                        handleResponseOverflow())
+                    {
+                        networkSlotOffset = 0;
+                    }
+                    else if (response == null || response.limit() + response.size() > networkLimit)
                     {
                         if (networkSlot == NO_SLOT)
                         {
@@ -903,6 +1092,11 @@ public final class NetworkConnectionPool
             int networkOffset,
             int networkLimit);
 
+        boolean handleResponseOverflow()
+        {
+            return false;
+        }
+
         abstract void handleConnectionFailed();
 
         private void handleEnd(
@@ -926,6 +1120,7 @@ public final class NetworkConnectionPool
                 clientStreamFactory.doAbort(networkTarget, networkId);
                 this.networkId = 0L;
             }
+            delayReconnect();
             handleConnectionFailed();
             timer.cancel();
         }
@@ -973,19 +1168,33 @@ public final class NetworkConnectionPool
         final ResponseDecoder fetchResponseDecoder;
 
         private final LongSupplier fetches;
+        private final String clientRack;
+        private final short fetchApiVersion;
         private boolean inFetch;
+        private FetchPriority fetchPriority = FetchPriority.ANY;
 
         private AbstractFetchConnection(
-            LongSupplier fetches)
+            LongSupplier fetches,
+            boolean recordsLatency)
         {
             super();
             this.fetches = fetches;
+            this.clientRack = clientStreamFactory.clientRack;
+            this.fetchApiVersion = clientRack != null ? FETCH_RACK_AWARE_API_VERSION : FETCH_API_VERSION;
             fetchResponseDecoder = new FetchResponseDecoder(
                     this::getTopicDispatcher,
                     this::getRequestedOffset,
                     this::updateStartOffset,
+                    this::handleHighWatermark,
                     this::handlePartitionResponseError,
-                    localDecodeBuffer);
+                    this::handleOversizedMessage,
+                    this::handlePreferredReplica,
+                    clientRack != null,
+                    clientStreamFactory.fetchMessageMaxBytes,
+                    localDecodeBuffer,
+                    clientStreamFactory.counters.fetchBytesCopied,
+                    recordsLatency ? appendToDecodeLatency : null,
+                    recordsLatency ? decodeToDispatchLatency : null);
         }
 
         @Override
@@ -1028,6 +1237,71 @@ public final class NetworkConnectionPool
             }
         }
 
+        private int encodeFetchRequest(
+            int offset,
+            int topicCount)
+        {
+            final int limit;
+            if (clientRack != null)
+            {
+                limit = fetchRequestV11RW.wrap(
+                        NetworkConnectionPool.this.encodeBuffer, offset,
+                        NetworkConnectionPool.this.encodeBuffer.capacity())
+                        .maxWaitTimeMillis(500)
+                        .minBytes(1)
+                        .maxBytes(fetchMaxBytes)
+                        .isolationLevel(b -> b.set(isolationLevel))
+                        .topicCount(topicCount)
+                        .build()
+                        .limit();
+            }
+            else
+            {
+                limit = fetchRequestRW.wrap(
+                        NetworkConnectionPool.this.encodeBuffer, offset,
+                        NetworkConnectionPool.this.encodeBuffer.capacity())
+                        .maxWaitTimeMillis(500)
+                        .minBytes(1)
+                        .maxBytes(fetchMaxBytes)
+                        .isolationLevel(b -> b.set(isolationLevel))
+                        .topicCount(topicCount)
+                        .build()
+                        .limit();
+            }
+            return limit;
+        }
+
+        int encodePartitionRequest(
+            int partitionId,
+            long fetchOffset,
+            int maxBytes)
+        {
+            final int limit;
+            if (clientRack != null)
+            {
+                limit = partitionRequestV11RW.wrap(
+                        NetworkConnectionPool.this.encodeBuffer, encodeLimit,
+                        NetworkConnectionPool.this.encodeBuffer.capacity())
+                        .partitionId(partitionId)
+                        .fetchOffset(fetchOffset)
+                        .maxBytes(maxBytes)
+                        .build()
+                        .limit();
+            }
+            else
+            {
+                limit = partitionRequestRW.wrap(
+                        NetworkConnectionPool.this.encodeBuffer, encodeLimit,
+                        NetworkConnectionPool.this.encodeBuffer.capacity())
+                        .partitionId(partitionId)
+                        .fetchOffset(fetchOffset)
+                        .maxBytes(maxBytes)
+                        .build()
+                        .limit();
+            }
+            return limit;
+        }
+
         private void doFetchRequest()
         {
             final int encodeOffset = 0;
@@ -1037,69 +1311,42 @@ public final class NetworkConnectionPool
                     NetworkConnectionPool.this.encodeBuffer.capacity())
                     .size(0)
                     .apiKey(FETCH_API_KEY)
-                    .apiVersion(FETCH_API_VERSION)
+                    .apiVersion(fetchApiVersion)
                     .correlationId(0)
                     .clientId((String) null)
                     .build();
 
-            encodeLimit = request.limit();
-            FetchRequestFW fetchRequest = fetchRequestRW.wrap(
-                    NetworkConnectionPool.this.encodeBuffer, encodeLimit,
-                    NetworkConnectionPool.this.encodeBuffer.capacity())
-                    .maxWaitTimeMillis(500)
-                    .minBytes(1)
-                    .maxBytes(fetchMaxBytes)
-                    .isolationLevel((byte) 0)
-                    .topicCount(0)
-                    .build();
+            final int fetchRequestOffset = request.limit();
+            encodeLimit = encodeFetchRequest(fetchRequestOffset, 0);
+            int topicCount;
+            if (prioritizesLiveEdge())
+            {
+                // Kafka fills fetch responses in request order, so request partitions at the live edge first
+                fetchPriority = FetchPriority.LIVE_EDGE;
+                topicCount = addTopicsToRequest();
+                fetchPriority = FetchPriority.CATCHING_UP;
+                topicCount += addTopicsToRequest();
+                fetchPriority = FetchPriority.ANY;
+            }
+            else
+            {
+                topicCount = addTopicsToRequest();
+            }
 
-            encodeLimit = fetchRequest.limit();
-            int topicCount = 0;
-            for (String topicName : topicsByName.keySet())
+            if (clientRack != null)
             {
-                final int originalEncodeLimit = encodeLimit;
-                TopicRequestFW topicRequest = topicRequestRW.wrap(
+                encodeLimit = fetchRequestV11Part2RW.wrap(
                         NetworkConnectionPool.this.encodeBuffer, encodeLimit,
                         NetworkConnectionPool.this.encodeBuffer.capacity())
-                        .name(topicName)
-                        .partitionCount(0)
-                        .build();
-
-                encodeLimit = topicRequest.limit();
-
-                long[] requestedOffsets = requestedFetchOffsetsByTopic.computeIfAbsent(
-                        topicName,
-                        k  ->  new long[topicMetadataByName.get(topicName).partitionCount()]);
-                int partitionCount = addTopicToRequest(topicName,
-                        (p, o) -> requestedOffsets[p] = o,
-                        (p) -> requestedOffsets[p]);
-
-                if (partitionCount > 0)
-                {
-                    NetworkConnectionPool.this.topicRequestRW
-                          .wrap(NetworkConnectionPool.this.encodeBuffer, topicRequest.offset(), topicRequest.limit())
-                          .name(topicRequest.name())
-                          .partitionCount(partitionCount)
-                          .build();
-                    topicCount++;
-                }
-                else
-                {
-                    encodeLimit = originalEncodeLimit;
-                }
+                        .rackId(clientRack)
+                        .build()
+                        .limit();
             }
 
             // TODO: stream large requests in multiple DATA frames as needed
             if (topicCount > 0 && encodeLimit - encodeOffset + networkRequestPadding <= networkRequestBudget)
             {
-                NetworkConnectionPool.this.fetchRequestRW
-                    .wrap(NetworkConnectionPool.this.encodeBuffer, fetchRequest.offset(), fetchRequest.limit())
-                    .maxWaitTimeMillis(fetchRequest.maxWaitTimeMillis())
-                    .minBytes(fetchRequest.minBytes())
-                    .maxBytes(fetchRequest.maxBytes())
-                    .isolationLevel(fetchRequest.isolationLevel())
-                    .topicCount(topicCount)
-                    .build();
+                encodeFetchRequest(fetchRequestOffset, topicCount);
 
                 assert nextRequestId == nextResponseId :
                         format("nextRequestId = %d nextResponseId = %d", nextRequestId, nextResponseId);
@@ -1108,7 +1355,7 @@ public final class NetworkConnectionPool
                     .wrap(NetworkConnectionPool.this.encodeBuffer, request.offset(), request.limit())
                     .size(encodeLimit - encodeOffset - RequestHeaderFW.FIELD_OFFSET_API_KEY)
                     .apiKey(FETCH_API_KEY)
-                    .apiVersion(FETCH_API_VERSION)
+                    .apiVersion(fetchApiVersion)
                     .correlationId(newCorrelationId)
                     .clientId((String) null)
                     .build();
@@ -1150,7 +1397,7 @@ public final class NetworkConnectionPool
             ListOffsetsRequestFW listOffsetsRequest = listOffsetsRequestRW.wrap(
                     NetworkConnectionPool.this.encodeBuffer, encodeLimit,
                     NetworkConnectionPool.this.encodeBuffer.capacity())
-                    .isolationLevel(b -> b.set(IsolationLevel.READ_UNCOMMITTED))
+                    .isolationLevel(b -> b.set(isolationLevel))
                     .topicCount(0)
                     .build();
 
@@ -1176,10 +1423,12 @@ public final class NetworkConnectionPool
                     for (int partitionId=0; partitionId <  topicMetadata.nodeIdsByPartition.length; partitionId++)
                     {
                         if (topicMetadata.nodeIdsByPartition[partitionId] == broker.nodeId &&
-                            topicMetadata.offsetsOutOfRangeByPartition[partitionId] != NO_OFFSET)
+                            (topicMetadata.offsetsOutOfRangeByPartition[partitionId] != NO_OFFSET ||
+                             topicMetadata.seekRequired(partitionId)))
                         {
-                            long requestedTimestamp = topicMetadata.offsetsOutOfRangeByPartition[partitionId] == MAX_OFFSET
-                                    ? NEXT_OFFSET
+                            long outOfRangeOffset = topicMetadata.offsetsOutOfRangeByPartition[partitionId];
+                            long requestedTimestamp = outOfRangeOffset == MAX_OFFSET ? NEXT_OFFSET
+                                    : outOfRangeOffset == NO_OFFSET ? topicMetadata.seekTimestamp(partitionId)
                                     : EARLIEST_AVAILABLE_OFFSET;
                             ListOffsetsPartitionRequestFW listOffsetsPartitionRequest = listOffsetsPartitionRequestRW.wrap(
                                     NetworkConnectionPool.this.encodeBuffer, encodeLimit,
@@ -1209,7 +1458,7 @@ public final class NetworkConnectionPool
                          .build();
 
                 listOffsetsRequestRW.wrap(encodeBuffer, listOffsetsRequest.offset(), listOffsetsRequest.limit())
-                        .isolationLevel(b -> b.set(IsolationLevel.READ_UNCOMMITTED))
+                        .isolationLevel(b -> b.set(isolationLevel))
                         .topicCount(topicCount)
                         .build();
 
@@ -1227,91 +1476,243 @@ public final class NetworkConnectionPool
             }
         }
 
-        abstract int addTopicToRequest(
-            String topicName,
-            IntLongConsumer setRequestedOffset,
-            IntToLongFunction getRequestedOffset);
-
-        @Override
-        void handleData(
-            DataFW data)
+        private int addTopicsToRequest()
         {
-            if (offsetsRequested)
-            {
-                super.handleData(data);
-            }
-            else
+            int topicCount = 0;
+            for (String topicName : topicsByName.keySet())
             {
-                timer.cancel();
-                clientStreamFactory.scheduler.rescheduleTimeout(readIdleTimeout, timer);
+                final int originalEncodeLimit = encodeLimit;
+                TopicRequestFW topicRequest = topicRequestRW.wrap(
+                        NetworkConnectionPool.this.encodeBuffer, encodeLimit,
+                        NetworkConnectionPool.this.encodeBuffer.capacity())
+                        .name(topicName)
+                        .partitionCount(0)
+                        .build();
 
-                final OctetsFW payload = data.payload();
-                networkResponseBudget -= payload.sizeof() + data.padding();
-                if (networkResponseBudget < 0)
+                encodeLimit = topicRequest.limit();
+
+                long[] requestedOffsets = requestedFetchOffsetsByTopic.computeIfAbsent(
+                        topicName,
+                        k  ->  new long[topicMetadataByName.get(topicName).partitionCount()]);
+                int partitionCount = addTopicToRequest(topicName,
+                        (p, o) -> requestedOffsets[p] = o,
+                        (p) -> requestedOffsets[p]);
+
+                if (partitionCount > 0)
                 {
-                    NetworkConnectionPool.this.clientStreamFactory.doReset(networkReplyThrottle, networkReplyId);
+                    NetworkConnectionPool.this.topicRequestRW
+                          .wrap(NetworkConnectionPool.this.encodeBuffer, topicRequest.offset(), topicRequest.limit())
+                          .name(topicRequest.name())
+                          .partitionCount(partitionCount)
+                          .build();
+                    topicCount++;
                 }
-                int excessBytes = fetchResponseDecoder.decode(payload, data.trace());
-                doOfferResponseBudget();
-                if (excessBytes >= 0) // response complete
+                else
                 {
-                    timer.cancel();
-                    assert excessBytes == 0 :
-                            format("%s: %d bytes remaining after fetch response, pipelined requests are not being used",
-                                    this, excessBytes);
-                    nextResponseId++;
-                    doRequestIfNeeded();
+                    encodeLimit = originalEncodeLimit;
                 }
             }
+            return topicCount;
         }
 
-        @Override
-        final void handleResponse(
-            long networkTraceId,
-            DirectBuffer networkBuffer,
-            int networkOffset,
-            int networkLimit)
+        boolean prioritizesLiveEdge()
         {
-            assert offsetsNeeded;
-            handleListOffsetsResponse(networkTraceId, networkBuffer, networkOffset, networkLimit);
-            offsetsNeeded = false;
-            offsetsRequested = false;
+            return false;
         }
 
-        final void handleListOffsetsResponse(
-            long networkTraceId,
-            DirectBuffer networkBuffer,
-            int networkOffset,
-            int networkLimit)
+        abstract int addTopicToRequest(
+            String topicName,
+            IntLongConsumer setRequestedOffset,
+            IntToLongFunction getRequestedOffset);
+
+        final int addHighestOffsetsToRequest(
+            String topicName,
+            IntLongConsumer setRequestedOffset,
+            boolean bootstrap)
         {
-            timer.cancel();
+            final NetworkTopic topic = topicsByName.get(topicName);
+            final int writableBytes = topic.writableBytes(true);
+            final int maxPartitionBytes = fetchPriority == FetchPriority.CATCHING_UP ?
+                    (int) ((long) writableBytes * clientStreamFactory.fetchCatchUpWeight / 100) : writableBytes;
+            final TopicMetadata metadata = topicMetadataByName.get(topicName);
 
-            final ListOffsetsResponseFW response = listOffsetsResponseRO.tryWrap(networkBuffer, networkOffset, networkLimit);
-            if (response == null)
+            int partitionCount = 0;
+
+            if (!bootstrap && metadata != null && metadata.seeksPending(broker.nodeId))
             {
-                abort();
-                return;
+                offsetsNeeded = true;
             }
 
-            int topicCount = response.topicCount();
-            networkOffset = response.limit();
-
-            KafkaError errorCode = NONE;
-            for (int topicIndex = 0; topicIndex < topicCount && errorCode == NONE; topicIndex++)
+            if (maxPartitionBytes > 0 && metadata != null)
             {
-                final ListOffsetsTopicFW topic = listOffsetsTopicRO.tryWrap(networkBuffer, networkOffset, networkLimit);
-                if (topic == null)
-                {
-                    abort();
-                    return;
-                }
+                final int[] nodeIdsByPartition = metadata.nodeIdsByPartition;
 
-                final String16FW name = topic.name();
-                String topicName = name.asString();
-                TopicMetadata topicMetadata = topicMetadataByName.get(topicName);
-                networkOffset = topic.limit();
+                // TODO: eliminate iterator allocation
+                Iterator<NetworkTopicPartition> iterator = topic.partitions.iterator();
+                NetworkTopicPartition candidate = iterator.hasNext() ? iterator.next() : null;
+                NetworkTopicPartition next;
 
-                final int partitionCount = topic.partitionCount();
+                while (candidate != null)
+                {
+                    next = iterator.hasNext() ? iterator.next() : null;
+                    boolean isHighestOffset = next == null || next.id != candidate.id;
+
+                    // Offsets are only listed by the leader, so fetches needing them are not sent to a preferred replica
+                    final int nodeId = candidate.offset == MAX_OFFSET ?
+                            nodeIdsByPartition[candidate.id] : metadata.fetchNodeId(candidate.id);
+                    if (isHighestOffset && nodeId == broker.nodeId &&
+                        topic.fetchesOnBootstrapConnection(candidate.id) == bootstrap &&
+                        matchesFetchPriority(topic, candidate))
+                    {
+                        if (candidate.offset == MAX_OFFSET)
+                        {
+                            // Trigger list offsets request to get the high water mark offset
+                            offsetsNeeded = true;
+                            metadata.offsetsOutOfRangeByPartition[candidate.id] = MAX_OFFSET;
+                        }
+                        else
+                        {
+                            long offset = metadata.ensureOffsetInRange(candidate.id, candidate.offset);
+                            metadata.releaseOversizedMessage(candidate.id, offset);
+                            final int partitionRequestLimit = encodePartitionRequest(candidate.id, offset,
+                                    metadata.maxPartitionBytes(candidate.id, offset, maxPartitionBytes));
+
+                            long requestedOffset = candidate.offset;
+
+                            if (offset < candidate.offset)
+                            {
+                                // Topic was recreated, we have to go back to an earlier offset
+                                topic.dispatcher.adjustOffset(candidate.id, candidate.offset, offset);
+                                requestedOffset = offset;
+
+                                // Prepare to update the partition offset later
+                                NetworkTopicPartition partition = candidate.clone();
+                                partitionsWorkList.add(partition);
+                                offsetsWorkList.addLong(offset);
+                            }
+
+                            setRequestedOffset.accept(candidate.id, requestedOffset);
+                            encodeLimit = partitionRequestLimit;
+                            partitionCount++;
+                        }
+                    }
+
+                    candidate = next;
+                }
+
+                if (!partitionsWorkList.isEmpty())
+                {
+                    // Update the partition offsets. We must remove and add to preserve ordering.
+                    for (int i=0; i < partitionsWorkList.size(); i++)
+                    {
+                        NetworkTopicPartition partition = partitionsWorkList.get(i);
+                        boolean removed = topic.partitions.remove(partition);
+                        assert removed;
+                        partition.offset = offsetsWorkList.getLong(i);
+                        topic.partitions.add(partition);
+                    }
+
+                    partitionsWorkList.clear();
+                    offsetsWorkList.clear();
+                }
+            }
+
+            return partitionCount;
+        }
+
+        private boolean matchesFetchPriority(
+            NetworkTopic topic,
+            NetworkTopicPartition partition)
+        {
+            boolean matches = true;
+            if (fetchPriority != FetchPriority.ANY)
+            {
+                matches = topic.isLiveEdge(partition.id, partition.offset) == (fetchPriority == FetchPriority.LIVE_EDGE);
+            }
+            return matches;
+        }
+
+        @Override
+        void handleData(
+            DataFW data)
+        {
+            if (offsetsRequested)
+            {
+                super.handleData(data);
+            }
+            else
+            {
+                timer.cancel();
+                clientStreamFactory.scheduler.rescheduleTimeout(readIdleTimeout, timer);
+
+                final OctetsFW payload = data.payload();
+                networkResponseBudget -= payload.sizeof() + data.padding();
+                if (networkResponseBudget < 0)
+                {
+                    NetworkConnectionPool.this.clientStreamFactory.doReset(networkReplyThrottle, networkReplyId);
+                }
+                clientStreamFactory.counters.fetchBytesReceived.accept(payload.sizeof());
+                int excessBytes = fetchResponseDecoder.decode(payload, data.trace());
+                doOfferResponseBudget();
+                if (excessBytes >= 0) // response complete
+                {
+                    timer.cancel();
+                    assert excessBytes == 0 :
+                            format("%s: %d bytes remaining after fetch response, pipelined requests are not being used",
+                                    this, excessBytes);
+                    nextResponseId++;
+                    doRequestIfNeeded();
+                }
+            }
+        }
+
+        @Override
+        final void handleResponse(
+            long networkTraceId,
+            DirectBuffer networkBuffer,
+            int networkOffset,
+            int networkLimit)
+        {
+            assert offsetsNeeded;
+            handleListOffsetsResponse(networkTraceId, networkBuffer, networkOffset, networkLimit);
+            offsetsNeeded = false;
+            offsetsRequested = false;
+        }
+
+        final void handleListOffsetsResponse(
+            long networkTraceId,
+            DirectBuffer networkBuffer,
+            int networkOffset,
+            int networkLimit)
+        {
+            timer.cancel();
+
+            final ListOffsetsResponseFW response = listOffsetsResponseRO.tryWrap(networkBuffer, networkOffset, networkLimit);
+            if (response == null)
+            {
+                abort();
+                return;
+            }
+
+            int topicCount = response.topicCount();
+            networkOffset = response.limit();
+
+            KafkaError errorCode = NONE;
+            for (int topicIndex = 0; topicIndex < topicCount && errorCode == NONE; topicIndex++)
+            {
+                final ListOffsetsTopicFW topic = listOffsetsTopicRO.tryWrap(networkBuffer, networkOffset, networkLimit);
+                if (topic == null)
+                {
+                    abort();
+                    return;
+                }
+
+                final String16FW name = topic.name();
+                String topicName = name.asString();
+                TopicMetadata topicMetadata = topicMetadataByName.get(topicName);
+                networkOffset = topic.limit();
+
+                final int partitionCount = topic.partitionCount();
 
                 for (int i = 0; i < partitionCount && errorCode == NONE; i++)
                 {
@@ -1332,7 +1733,7 @@ public final class NetworkConnectionPool
                     errorCode = asKafkaError(partition.errorCode());
                     if (errorCode != NONE)
                     {
-                        handlePartitionResponseError(name.asString(), i, errorCode);
+                        handlePartitionResponseError(name.asString(), partition.partitionId(), errorCode);
                         break;
                     }
 
@@ -1340,7 +1741,12 @@ public final class NetworkConnectionPool
                     final int partitionId = partition.partitionId();
 
                     long outOfRangeOffset = topicMetadata.offsetsOutOfRangeByPartition[partitionId];
-                    if (offset > outOfRangeOffset)
+                    if (outOfRangeOffset == NO_OFFSET)
+                    {
+                        // timestamp lookup, offset is NO_OFFSET if there is no message at or after the timestamp
+                        topicMetadata.completeSeek(partitionId, offset);
+                    }
+                    else if (offset > outOfRangeOffset)
                     {
                         // offset was too low, adjust higher and leave offsetsOutOfRangeByPartition set
                         // for use in ensureOffsetInRange
@@ -1389,6 +1795,19 @@ public final class NetworkConnectionPool
             return topicMetadata != null ? topicMetadata.tryAdvanceFirstOffset(partitionId, startOffset) : 0L;
         }
 
+        void handleHighWatermark(
+            String topicName,
+            int partitionId,
+            long requestedOffset,
+            long highWatermark)
+        {
+            final NetworkTopic topic = topicsByName.get(topicName);
+            if (topic != null)
+            {
+                topic.handleHighWatermark(partitionId, requestedOffset, highWatermark);
+            }
+        }
+
         @Override
         void doReinitialize()
         {
@@ -1437,6 +1856,20 @@ public final class NetworkConnectionPool
             return topic == null ? NOOP_DISPATCHER : topic.dispatcher;
         }
 
+        private void handleOversizedMessage(
+            String topicName,
+            int partition,
+            long offset,
+            int messageBytes)
+        {
+            final TopicMetadata metadata = topicMetadataByName.get(topicName);
+            if (metadata != null)
+            {
+                metadata.setOversizedMessage(partition, offset, messageBytes);
+                routeCounters.oversizedMessageFetches.getAsLong();
+            }
+        }
+
         private void handlePartitionResponseError(
             String topicName,
             int partition,
@@ -1444,6 +1877,25 @@ public final class NetworkConnectionPool
         {
             TopicMetadata metadata = topicMetadataByName.get(topicName);
 
+            if (metadata != null && metadata.isPreferredReplica(partition, broker.nodeId))
+            {
+                // Fall back to the leader, which either serves the fetch or reports the error itself
+                metadata.clearPreferredReplica(partition);
+                routeCounters.replicaFallbacks.getAsLong();
+                doFlush();
+            }
+            else
+            {
+                handleLeaderResponseError(metadata, topicName, partition, errorCode);
+            }
+        }
+
+        private void handleLeaderResponseError(
+            TopicMetadata metadata,
+            String topicName,
+            int partition,
+            KafkaError errorCode)
+        {
             switch(errorCode)
             {
             case OFFSET_OUT_OF_RANGE:
@@ -1461,7 +1913,15 @@ public final class NetworkConnectionPool
             case LEADER_NOT_AVAILABLE:
             case NOT_LEADER_FOR_PARTITION:
                 // metadata may be null if all clients have detached
-                if (metadata != null)
+                if (metadata != null && clientStreamFactory.metadataPartitionRefresh &&
+                    errorCode != KafkaError.UNKNOWN_TOPIC_OR_PARTITION && metadata.isComplete())
+                {
+                    // Only this partition moved, so keep fetching the others while its new leader is looked up
+                    metadata.invalidateLeader(partition);
+                    routeCounters.leaderRefreshes.getAsLong();
+                    metadataConnection.doRequestIfNeeded();
+                }
+                else if (metadata != null)
                 {
                     metadata.setErrorCode(errorCode);
                     metadata.scheduleRefresh(
@@ -1483,6 +1943,19 @@ public final class NetworkConnectionPool
             }
         }
 
+        private void handlePreferredReplica(
+            String topicName,
+            int partition,
+            int replicaId)
+        {
+            final TopicMetadata metadata = topicMetadataByName.get(topicName);
+            if (metadata != null && metadata.isComplete() && metadata.nodeIdsByPartition[partition] == broker.nodeId &&
+                metadata.setPreferredReplica(partition, replicaId))
+            {
+                doFlush();
+            }
+        }
+
         @Override
         public String toString()
         {
@@ -1497,7 +1970,13 @@ public final class NetworkConnectionPool
     {
         LiveFetchConnection()
         {
-            super(NO_COUNTER);
+            super(NO_COUNTER, true);
+        }
+
+        @Override
+        boolean prioritizesLiveEdge()
+        {
+            return clientStreamFactory.fetchLiveEdgeOffsets > 0L;
         }
 
         @Override
@@ -1506,83 +1985,7 @@ public final class NetworkConnectionPool
             IntLongConsumer setRequestedOffset,
             IntToLongFunction getRequestedOffset)
         {
-            final NetworkTopic topic = topicsByName.get(topicName);
-            final int maxPartitionBytes = topic.writableBytes(true);
-            final TopicMetadata metadata = topicMetadataByName.get(topicName);
-
-            int partitionCount = 0;
-
-            if (maxPartitionBytes > 0 && metadata != null)
-            {
-                final int[] nodeIdsByPartition = metadata.nodeIdsByPartition;
-
-                // TODO: eliminate iterator allocation
-                Iterator<NetworkTopicPartition> iterator = topic.partitions.iterator();
-                NetworkTopicPartition candidate = iterator.hasNext() ? iterator.next() : null;
-                NetworkTopicPartition next;
-
-                while (candidate != null)
-                {
-                    next = iterator.hasNext() ? iterator.next() : null;
-                    boolean isHighestOffset = next == null || next.id != candidate.id;
-
-                    if (isHighestOffset && nodeIdsByPartition[candidate.id] == broker.nodeId)
-                    {
-                        if (candidate.offset == MAX_OFFSET)
-                        {
-                            // Trigger list offsets request to get the high water mark offset
-                            offsetsNeeded = true;
-                            metadata.offsetsOutOfRangeByPartition[candidate.id] = MAX_OFFSET;
-                        }
-                        else
-                        {
-                            long offset = metadata.ensureOffsetInRange(candidate.id, candidate.offset);
-                            PartitionRequestFW partitionRequest = NetworkConnectionPool.this.partitionRequestRW
-                                    .wrap(NetworkConnectionPool.this.encodeBuffer, encodeLimit,
-                                            NetworkConnectionPool.this.encodeBuffer.capacity())
-                                    .partitionId(candidate.id).fetchOffset(offset).maxBytes(maxPartitionBytes).build();
-
-                            long requestedOffset = candidate.offset;
-
-                            if (offset < candidate.offset)
-                            {
-                                // Topic was recreated, we have to go back to an earlier offset
-                                topic.dispatcher.adjustOffset(candidate.id, candidate.offset, offset);
-                                requestedOffset = offset;
-
-                                // Prepare to update the partition offset later
-                                NetworkTopicPartition partition = candidate.clone();
-                                partitionsWorkList.add(partition);
-                                offsetsWorkList.addLong(offset);
-                            }
-
-                            setRequestedOffset.accept(candidate.id, requestedOffset);
-                            encodeLimit = partitionRequest.limit();
-                            partitionCount++;
-                        }
-                    }
-
-                    candidate = next;
-                }
-
-                if (!partitionsWorkList.isEmpty())
-                {
-                    // Update the partition offsets. We must remove and add to preserve ordering.
-                    for (int i=0; i < partitionsWorkList.size(); i++)
-                    {
-                        NetworkTopicPartition partition = partitionsWorkList.get(i);
-                        boolean removed = topic.partitions.remove(partition);
-                        assert removed;
-                        partition.offset = offsetsWorkList.getLong(i);
-                        topic.partitions.add(partition);
-                    }
-
-                    partitionsWorkList.clear();
-                    offsetsWorkList.clear();
-                }
-            }
-
-            return partitionCount;
+            return addHighestOffsetsToRequest(topicName, setRequestedOffset, false);
         }
     }
 
@@ -1590,7 +1993,17 @@ public final class NetworkConnectionPool
     {
         private HistoricalFetchConnection()
         {
-            super(routeCounters.historicalFetches);
+            super(routeCounters.historicalFetches, false);
+        }
+
+        @Override
+        void handleHighWatermark(
+            String topicName,
+            int partitionId,
+            long requestedOffset,
+            long highWatermark)
+        {
+            // historical fetches trail the bootstrap cursor, so do not report bootstrap progress
         }
 
         @Override
@@ -1621,16 +2034,12 @@ public final class NetworkConnectionPool
                         NetworkTopicPartition partition = partitions.next();
 
                         if (topic.needsHistorical(partition.id) &&
-                                partitionId < partition.id && nodeIdsByPartition[partition.id] == broker.nodeId)
+                                partitionId < partition.id && metadata.fetchNodeId(partition.id) == broker.nodeId)
                         {
                             long offset = metadata.ensureOffsetInRange(partition.id, partition.offset);
-                            PartitionRequestFW partitionRequest = NetworkConnectionPool.this.partitionRequestRW
-                                .wrap(NetworkConnectionPool.this.encodeBuffer, encodeLimit,
-                                        NetworkConnectionPool.this.encodeBuffer.capacity())
-                                .partitionId(partition.id)
-                                .fetchOffset(offset)
-                                .maxBytes(maxPartitionBytes)
-                                .build();
+                            metadata.releaseOversizedMessage(partition.id, offset);
+                            final int partitionRequestLimit = encodePartitionRequest(partition.id, offset,
+                                    metadata.maxPartitionBytes(partition.id, offset, maxPartitionBytes));
 
                             if (offset < partition.offset)
                             {
@@ -1642,7 +2051,7 @@ public final class NetworkConnectionPool
                                 partitionsWorkList.add(partition);
                             }
                             setRequestedOffset.accept(partition.id,  partition.offset);
-                            encodeLimit = partitionRequest.limit();
+                            encodeLimit = partitionRequestLimit;
                             partitionId = partition.id;
                             partitionCount++;
                         }
@@ -1661,26 +2070,111 @@ public final class NetworkConnectionPool
         }
     }
 
+    private final class BootstrapFetchConnection extends AbstractFetchConnection
+    {
+        private NetworkTopic bootstrapTopic;
+
+        private BootstrapFetchConnection()
+        {
+            super(NO_COUNTER, false);
+        }
+
+        @Override
+        int addTopicToRequest(
+            String topicName,
+            IntLongConsumer setRequestedOffset,
+            IntToLongFunction getRequestedOffset)
+        {
+            if (bootstrapTopic == null ||
+                topicsByName.get(bootstrapTopic.topicName) != bootstrapTopic ||
+                !bootstrapTopic.isBootstrapping(broker.nodeId))
+            {
+                bootstrapTopic = nextBootstrapTopic();
+            }
+
+            return bootstrapTopic != null && bootstrapTopic.topicName.equals(topicName) ?
+                    addHighestOffsetsToRequest(topicName, setRequestedOffset, true) : 0;
+        }
+
+        private NetworkTopic nextBootstrapTopic()
+        {
+            NetworkTopic result = null;
+            for (NetworkTopic topic : topicsByName.values())
+            {
+                if (topic.isBootstrapping(broker.nodeId) && !isClaimed(topic) &&
+                    (result == null || topic.hasSubscribers() && !result.hasSubscribers()))
+                {
+                    // topics with waiting subscribers are bootstrapped first
+                    result = topic;
+                }
+            }
+            return result;
+        }
+
+        private boolean isClaimed(
+            NetworkTopic topic)
+        {
+            boolean claimed = false;
+            for (int i = 0; i < bootstrapConnections.length && !claimed; i++)
+            {
+                for (BootstrapFetchConnection connection : bootstrapConnections[i])
+                {
+                    if (connection != this && connection.bootstrapTopic == topic &&
+                        connection.broker != null && connection.broker.nodeId == broker.nodeId)
+                    {
+                        claimed = true;
+                        break;
+                    }
+                }
+            }
+            return claimed;
+        }
+    }
+
     private final class MetadataConnection extends AbstractNetworkConnection
     {
-        TopicMetadata pendingTopicMetadata;
+        final List<TopicMetadata> pendingTopicMetadata = new ArrayList<>();
+        final List<TopicMetadata> sharedTopicMetadata = new ArrayList<>();
         MetadataRequestType pendingRequest = MetadataRequestType.METADATA;
+        int maxRequestTopics = clientStreamFactory.metadataRequestMaxTopics;
 
         @Override
         void doRequestIfNeeded()
         {
-            Optional<TopicMetadata> topicMetadata;
             if (nextRequestId == nextResponseId)
             {
-                if (pendingTopicMetadata == null &&
-                    ((topicMetadata = topicMetadataByName.values().stream()
-                      .filter(m -> m.isGetRequired()).findFirst()).isPresent()))
+                if (clusterMetadata != null)
                 {
-                    pendingTopicMetadata = topicMetadata.get();
+                    resolveSharedTopicMetadata();
                 }
-                if (pendingTopicMetadata != null)
+
+                // gather all topics awaiting the same request type, so they share a single round trip
+                pendingTopicMetadata.clear();
+                MetadataRequestType requestType = null;
+                for (TopicMetadata metadata : topicMetadataByName.values())
                 {
-                    switch(pendingTopicMetadata.nextRequiredRequestType())
+                    if (pendingTopicMetadata.size() == maxRequestTopics)
+                    {
+                        break;
+                    }
+                    final MetadataRequestType topicRequestType = metadata.isGetRequired() ?
+                            metadata.nextRequiredRequestType() :
+                            metadata.isLeadersRefreshRequired() ? MetadataRequestType.METADATA : null;
+                    if (topicRequestType != null)
+                    {
+                        if (requestType == null)
+                        {
+                            requestType = topicRequestType;
+                        }
+                        if (topicRequestType == requestType)
+                        {
+                            pendingTopicMetadata.add(metadata);
+                        }
+                    }
+                }
+                if (requestType != null)
+                {
+                    switch(requestType)
                     {
                     case DESCRIBE_CONFIGS:
                         doDescribeConfigsRequest();
@@ -1693,6 +2187,44 @@ public final class NetworkConnectionPool
             }
         }
 
+        private void resolveSharedTopicMetadata()
+        {
+            final long now = System.currentTimeMillis();
+            for (TopicMetadata metadata : topicMetadataByName.values())
+            {
+                if (metadata.isGetRequired() && metadata.nextRequiredRequestType() == MetadataRequestType.METADATA)
+                {
+                    if (metadata.nodeIdsByPartition != null)
+                    {
+                        // Refreshing after an error, so the shared metadata is likely stale too
+                        clusterMetadata.invalidate(metadata.topicName);
+                    }
+                    else if (clusterMetadata.get(metadata.topicName, now) != null)
+                    {
+                        sharedTopicMetadata.add(metadata);
+                    }
+                }
+            }
+
+            for (TopicMetadata metadata : sharedTopicMetadata)
+            {
+                final ClusterMetadata.TopicEntry entry = clusterMetadata.get(metadata.topicName, now);
+                metadata.initializeBrokers(entry.brokers.length);
+                for (BrokerMetadata broker : entry.brokers)
+                {
+                    metadata.addBroker(broker);
+                }
+                metadata.initializePartitions(entry.nodeIdsByPartition.length);
+                for (int partitionId = 0; partitionId < entry.nodeIdsByPartition.length; partitionId++)
+                {
+                    metadata.addPartition(partitionId, entry.nodeIdsByPartition[partitionId]);
+                }
+                completeTopicMetadata(metadata, entry.compacted, entry.deleteRetentionMs);
+                routeCounters.metadataLookupsShared.getAsLong();
+            }
+            sharedTopicMetadata.clear();
+        }
+
         private void doDescribeConfigsRequest()
         {
             doBeginIfNotConnected();
@@ -1701,6 +2233,7 @@ public final class NetworkConnectionPool
             {
                 final int encodeOffset = 0;
                 final MutableDirectBuffer buffer = NetworkConnectionPool.this.encodeBuffer;
+                final int maxLimit = Math.min(buffer.capacity(), encodeOffset + networkRequestBudget - networkRequestPadding);
                 int encodeLimit = encodeOffset;
 
                 RequestHeaderFW request = requestRW.wrap(
@@ -1716,36 +2249,48 @@ public final class NetworkConnectionPool
 
                 DescribeConfigsRequestFW describeRequest = describeConfigsRequestRW.wrap(
                         buffer, encodeLimit, buffer.capacity())
-                        .resourceCount(1)
+                        .resourceCount(0)
                         .build();
 
                 encodeLimit = describeRequest.limit();
 
-                ResourceRequestFW resourceRequest = resourceRequestRW.wrap(
-                        buffer, encodeLimit, buffer.capacity())
-                        .type(RESOURCE_TYPE_TOPIC)
-                        .name(pendingTopicMetadata.topicName)
-                        .configNamesCount(2)
-                        .build();
+                int resourceCount = 0;
+                for (TopicMetadata metadata : pendingTopicMetadata)
+                {
+                    ResourceRequestFW resourceRequest = resourceRequestRW.wrap(
+                            buffer, encodeLimit, buffer.capacity())
+                            .type(RESOURCE_TYPE_TOPIC)
+                            .name(metadata.topicName)
+                            .configNamesCount(2)
+                            .build();
 
-                encodeLimit = resourceRequest.limit();
+                    String16FW configName = configNameRW.wrap(
+                            buffer, resourceRequest.limit(), buffer.capacity())
+                            .set(CLEANUP_POLICY, UTF_8)
+                            .build();
 
-                String16FW configName = configNameRW.wrap(
-                        buffer, encodeLimit, buffer.capacity())
-                        .set(CLEANUP_POLICY, UTF_8)
-                        .build();
+                    configName = configNameRW.wrap(
+                            buffer, configName.limit(), buffer.capacity())
+                            .set(DELETE_RETENTION_MS, UTF_8)
+                            .build();
 
-                encodeLimit = configName.limit();
+                    if (configName.limit() > maxLimit)
+                    {
+                        break;
+                    }
 
-                configName = configNameRW.wrap(
-                        buffer, encodeLimit, buffer.capacity())
-                        .set(DELETE_RETENTION_MS, UTF_8)
-                        .build();
+                    encodeLimit = configName.limit();
+                    resourceCount++;
+                }
 
-                encodeLimit = configName.limit();
+                pendingTopicMetadata.subList(resourceCount, pendingTopicMetadata.size()).clear();
+
+                describeConfigsRequestRW.wrap(buffer, describeRequest.offset(), describeRequest.limit())
+                        .resourceCount(resourceCount)
+                        .build();
 
                 // TODO: stream large requests in multiple DATA frames as needed
-                if (encodeLimit - encodeOffset + networkRequestPadding <= networkRequestBudget)
+                if (resourceCount > 0 && encodeLimit - encodeOffset + networkRequestPadding <= networkRequestBudget)
                 {
                     int newCorrelationId = nextRequestId++;
 
@@ -1781,11 +2326,12 @@ public final class NetworkConnectionPool
             if (networkRequestBudget > networkRequestPadding)
             {
                 final int encodeOffset = 0;
+                final MutableDirectBuffer buffer = NetworkConnectionPool.this.encodeBuffer;
+                final int maxLimit = Math.min(buffer.capacity(), encodeOffset + networkRequestBudget - networkRequestPadding);
                 int encodeLimit = encodeOffset;
 
                 RequestHeaderFW request = requestRW.wrap(
-                        NetworkConnectionPool.this.encodeBuffer, encodeLimit,
-                        NetworkConnectionPool.this.encodeBuffer.capacity())
+                        buffer, encodeLimit, buffer.capacity())
                         .size(0)
                         .apiKey(METADATA_API_KEY)
                         .apiVersion(METADATA_API_VERSION)
@@ -1796,21 +2342,48 @@ public final class NetworkConnectionPool
                 encodeLimit = request.limit();
 
                 MetadataRequestFW metadataRequest = metadataRequestRW.wrap(
-                        NetworkConnectionPool.this.encodeBuffer, encodeLimit,
-                        NetworkConnectionPool.this.encodeBuffer.capacity())
-                        .topicCount(1)
-                        .topicName(pendingTopicMetadata.topicName)
+                        buffer, encodeLimit, buffer.capacity())
+                        .topicCount(0)
                         .build();
 
                 encodeLimit = metadataRequest.limit();
 
+                int topicCount = 0;
+                for (TopicMetadata metadata : pendingTopicMetadata)
+                {
+                    String16FW topicName = topicNameRW.wrap(
+                            buffer, encodeLimit, buffer.capacity())
+                            .set(metadata.topicName, UTF_8)
+                            .build();
+
+                    if (topicName.limit() + Byte.BYTES > maxLimit)
+                    {
+                        break;
+                    }
+
+                    encodeLimit = topicName.limit();
+                    topicCount++;
+                }
+
+                pendingTopicMetadata.subList(topicCount, pendingTopicMetadata.size()).clear();
+
+                metadataRequestRW.wrap(buffer, metadataRequest.offset(), metadataRequest.limit())
+                        .topicCount(topicCount)
+                        .build();
+
+                MetadataRequestPart2FW metadataRequestPart2 = metadataRequestPart2RW.wrap(
+                        buffer, encodeLimit, buffer.capacity())
+                        .build();
+
+                encodeLimit = metadataRequestPart2.limit();
+
                 // TODO: stream large requests in multiple DATA frames as needed
-                if (encodeLimit - encodeOffset + networkRequestPadding <= networkRequestBudget)
+                if (topicCount > 0 && encodeLimit - encodeOffset + networkRequestPadding <= networkRequestBudget)
                 {
                     int newCorrelationId = nextRequestId++;
 
                     NetworkConnectionPool.this.requestRW
-                             .wrap(NetworkConnectionPool.this.encodeBuffer, request.offset(), request.limit())
+                             .wrap(buffer, request.offset(), request.limit())
                              .size(encodeLimit - encodeOffset - RequestHeaderFW.FIELD_OFFSET_API_KEY)
                              .apiKey(METADATA_API_KEY)
                              .apiVersion(METADATA_API_VERSION)
@@ -1819,7 +2392,7 @@ public final class NetworkConnectionPool
                              .build();
 
                     OctetsFW payload = NetworkConnectionPool.this.payloadRW
-                            .wrap(NetworkConnectionPool.this.encodeBuffer, encodeOffset, encodeLimit)
+                            .wrap(buffer, encodeOffset, encodeLimit)
                             .set((b, o, m) -> m - o)
                             .build();
 
@@ -1860,110 +2433,163 @@ public final class NetworkConnectionPool
         {
             timer.cancel();
 
+            KafkaError error = decodeDescribeConfigsResponse(networkBuffer, networkOffset, networkLimit);
+            handleResponseError(error);
+        }
+
+        private KafkaError decodeDescribeConfigsResponse(
+            DirectBuffer networkBuffer,
+            int networkOffset,
+            int networkLimit)
+        {
             final DescribeConfigsResponseFW describeConfigsResponse =
                     describeConfigsResponseRO.tryWrap(networkBuffer, networkOffset, networkLimit);
-
-            KafkaError error = NONE;
-            boolean compacted = false;
-            int deleteRetentionMs = KAFKA_SERVER_DEFAULT_DELETE_RETENTION_MS;
-
             if (describeConfigsResponse == null)
             {
-                error = UNEXPECTED_SERVER_ERROR;
+                return UNEXPECTED_SERVER_ERROR;
             }
-            else
+
+            KafkaError result = NONE;
+            int resourceCount = describeConfigsResponse.resourceCount();
+            networkOffset = describeConfigsResponse.limit();
+
+            for (int resourceIndex = 0; resourceIndex < resourceCount; resourceIndex++)
             {
-                int resourceCount = describeConfigsResponse.resourceCount();
-                networkOffset = describeConfigsResponse.limit();
+                final ResourceResponseFW resource = resourceResponseRO.tryWrap(networkBuffer, networkOffset, networkLimit);
+                if (resource == null)
+                {
+                    return UNEXPECTED_SERVER_ERROR;
+                }
 
-                loop:
-                for (int resourceIndex = 0; resourceIndex < resourceCount && error == NONE; resourceIndex++)
+                final TopicMetadata metadata = pendingTopicMetadata(resource.name().asString());
+                final KafkaError error = asKafkaError(resource.errorCode());
+                final int configCount = resource.configCount();
+                networkOffset = resource.limit();
+
+                boolean compacted = false;
+                int deleteRetentionMs = KAFKA_SERVER_DEFAULT_DELETE_RETENTION_MS;
+                for (int configIndex = 0; configIndex < configCount; configIndex++)
                 {
-                    final ResourceResponseFW resource = resourceResponseRO.tryWrap(networkBuffer, networkOffset, networkLimit);
-                    if (resource == null)
+                    final ConfigResponseFW configResponse =
+                            configResponseRO.tryWrap(networkBuffer, networkOffset, networkLimit);
+                    if (configResponse == null)
                     {
-                        error = UNEXPECTED_SERVER_ERROR;
-                        break loop;
+                        return UNEXPECTED_SERVER_ERROR;
                     }
 
-                    final String16FW name = resource.name();
-                    assert name.asString().equals(pendingTopicMetadata.topicName);
-                    error = asKafkaError(resource.errorCode());
-                    if (error != NONE)
+                    String configName = configResponse.name().asString();
+                    switch (configName)
                     {
+                    case CLEANUP_POLICY:
+                        compacted = configResponse.value() != null && configResponse.value().asString().equals(COMPACT);
+                        break;
+                    case DELETE_RETENTION_MS:
+                        deleteRetentionMs = configResponse.value() == null ? KAFKA_SERVER_DEFAULT_DELETE_RETENTION_MS :
+                            parseInt(configResponse.value().asString());
                         break;
+                    default:
+                        assert false : format("Unexpected config name %s in describe configs response", configName);
                     }
-                    final int configCount = resource.configCount();
-                    networkOffset = resource.limit();
-
-                    for (int configIndex = 0; configIndex < configCount && error == NONE; configIndex++)
-                    {
-                        final ConfigResponseFW configResponse =
-                                configResponseRO.tryWrap(networkBuffer, networkOffset, networkLimit);
-                        if (configResponse == null)
-                        {
-                            error = UNEXPECTED_SERVER_ERROR;
-                            break loop;
-                        }
+                    networkOffset = configResponse.limit();
+                }
 
-                        String configName = configResponse.name().asString();
-                        switch (configName)
-                        {
-                        case CLEANUP_POLICY:
-                            compacted = configResponse.value() != null && configResponse.value().asString().equals(COMPACT);
-                            networkOffset = configResponse.limit();
-                            break;
-                        case DELETE_RETENTION_MS:
-                            deleteRetentionMs = configResponse.value() == null ? KAFKA_SERVER_DEFAULT_DELETE_RETENTION_MS :
-                                parseInt(configResponse.value().asString());
-                            break;
-                        default:
-                            assert false : format("Unexpected config name %s in describe configs response", configName);
-                        }
+                if (metadata != null)
+                {
+                    if (handleDescribeConfigsResult(metadata, error, compacted, deleteRetentionMs))
+                    {
+                        pendingTopicMetadata.remove(metadata);
+                    }
+                    else
+                    {
+                        result = error;
                     }
                 }
             }
 
+            return result;
+        }
+
+        private boolean handleDescribeConfigsResult(
+            TopicMetadata metadata,
+            KafkaError error,
+            boolean compacted,
+            int deleteRetentionMs)
+        {
+            boolean handled = true;
             if (error.isRecoverable())
             {
-                pendingTopicMetadata.scheduleRefresh(
+                metadata.scheduleRefresh(
                         clientStreamFactory.scheduler,
                         metadataBackoffMillis,
                         metadataConnection);
-                pendingTopicMetadata = null;
             }
             else if (error != NONE)
             {
-                // kafka error, trigger connection failed and reconnect
-                pendingTopicMetadata.invalidate();
-                abort();
+                handled = false;
             }
             else
             {
                 // Guard against a possible race with invalidateBroker called due to fetch connection failure
-                if (pendingTopicMetadata.nextRequiredRequestType == MetadataRequestType.DESCRIBE_CONFIGS)
-                {
-                    TopicMetadata metadata = pendingTopicMetadata;
-                    pendingTopicMetadata = null;
-                    metadata.setCompacted(compacted);
-                    metadata.setDeleteRetentionMs(deleteRetentionMs);
-                    KafkaError priorError = metadata.setComplete(error);
-                    metadata.flush();
-                    switch (priorError)
+                if (metadata.nextRequiredRequestType == MetadataRequestType.DESCRIBE_CONFIGS)
+                {
+                    if (clusterMetadata != null)
                     {
-                    case UNKNOWN_TOPIC_OR_PARTITION:
-                        // Topic was re-created, force clients to re-attach at offset zero
-                        NetworkTopic topic = topicsByName.get(metadata.topicName);
-                        if (topic != null)
-                        {
-                            topic.dispatcher.detach(true);
-                        }
-                        break;
-                    default:
-                        break;
+                        clusterMetadata.put(metadata.topicName, metadata.brokers, metadata.nodeIdsByPartition,
+                                compacted, deleteRetentionMs, System.currentTimeMillis());
                     }
+                    completeTopicMetadata(metadata, compacted, deleteRetentionMs);
+                }
+            }
+            return handled;
+        }
+
+        private void completeTopicMetadata(
+            TopicMetadata metadata,
+            boolean compacted,
+            int deleteRetentionMs)
+        {
+            metadata.setCompacted(compacted);
+            metadata.setDeleteRetentionMs(deleteRetentionMs);
+            KafkaError priorError = metadata.setComplete(NONE);
+            metadata.flush();
+            switch (priorError)
+            {
+            case UNKNOWN_TOPIC_OR_PARTITION:
+                // Topic was re-created, force clients to re-attach at offset zero
+                NetworkTopic topic = topicsByName.get(metadata.topicName);
+                if (topic != null)
+                {
+                    topic.dispatcher.detach(true);
                 }
+                break;
+            default:
+                break;
+            }
+
+            if (metadata.hasPendingSeeks())
+            {
+                // Subscribers waiting for timestamp lookups are not fetching yet, so look them up on the new leaders
+                doConnections(metadata);
+                doFlush();
+            }
+        }
+
+        @Override
+        boolean handleResponseOverflow()
+        {
+            // already aborted, so drop the remainder of the response
+            boolean handled = networkId == 0L;
+            if (!handled && pendingTopicMetadata.size() > 1)
+            {
+                // the response for this batch does not fit the decode buffer, so request the topics again
+                // in smaller batches on a new connection
+                maxRequestTopics = Math.max(pendingTopicMetadata.size() >> 1, 1);
+                routeCounters.metadataResponseOverflows.getAsLong();
+                pendingTopicMetadata.clear();
+                abort();
+                handled = true;
             }
+            return handled;
         }
 
         private void handleMetadataResponse(
@@ -1975,7 +2601,29 @@ public final class NetworkConnectionPool
             timer.cancel();
 
             KafkaError error = decodeMetadataResponse(networkBuffer, networkOffset, networkLimit);
-            final TopicMetadata topicMetadata = pendingTopicMetadata;
+            handleResponseError(error);
+        }
+
+        private void handleResponseError(
+            KafkaError error)
+        {
+            if (error != NONE)
+            {
+                // kafka error, trigger connection failed and reconnect
+                for (TopicMetadata metadata : pendingTopicMetadata)
+                {
+                    metadata.invalidate();
+                }
+                abort();
+            }
+            pendingTopicMetadata.clear();
+        }
+
+        private boolean handleTopicMetadataResult(
+            TopicMetadata topicMetadata,
+            KafkaError error)
+        {
+            boolean handled = true;
             switch(error)
             {
             case NONE:
@@ -2003,7 +2651,6 @@ public final class NetworkConnectionPool
                             metadataBackoffMillis,
                             metadataConnection);
                 }
-                pendingTopicMetadata = null;
                 break;
             case INVALID_TOPIC_EXCEPTION:
             case PARTITION_COUNT_CHANGED:
@@ -2014,16 +2661,48 @@ public final class NetworkConnectionPool
                 detachSubscribers(topicName, false);
                 topicMetadata.setErrorCode(error);
                 topicMetadata.flush();
-                topicsByName.remove(topicName);
-                topicMetadataByName.remove(topicName);
-                pendingTopicMetadata = null;
+                removeTopic(topicName);
+                removeTopicMetadata(topicName);
                 break;
             default:
                 // internal Kafka error, trigger connection failed and reconnect
-                topicMetadata.invalidate();
-                abort();
+                handled = false;
+                break;
+            }
+            return handled;
+        }
+
+        private boolean handleLeadersRefreshResult(
+            TopicMetadata topicMetadata,
+            KafkaError error)
+        {
+            boolean handled = true;
+            switch(error)
+            {
+            case NONE:
+                topicMetadata.leadersRefreshed();
+                if (clusterMetadata != null)
+                {
+                    clusterMetadata.put(topicMetadata.topicName, topicMetadata.brokers, topicMetadata.nodeIdsByPartition,
+                            topicMetadata.compacted, topicMetadata.deleteRetentionMs, System.currentTimeMillis());
+                }
+                doConnections(topicMetadata);
+                doFlush();
+                break;
+            case LEADER_NOT_AVAILABLE:
+            case NOT_LEADER_FOR_PARTITION:
+                // Leader election still in progress, partitions with a known leader have already been updated
+                topicMetadata.scheduleLeadersRefresh(
+                        clientStreamFactory.scheduler,
+                        metadataBackoffMillis,
+                        metadataConnection);
+                break;
+            default:
+                topicMetadata.leadersRefreshed();
+                handled = handleTopicMetadataResult(topicMetadata, error);
                 break;
             }
+            return handled;
         }
 
         private KafkaError decodeMetadataResponse(
@@ -2038,9 +2717,11 @@ public final class NetworkConnectionPool
             }
 
             final int brokerCount = metadataResponse.brokerCount();
-            pendingTopicMetadata.initializeBrokers(brokerCount);
+            for (TopicMetadata metadata : pendingTopicMetadata)
+            {
+                metadata.initializeBrokers(brokerCount);
+            }
             networkOffset = metadataResponse.limit();
-            KafkaError error = NONE;
             for (int brokerIndex=0; brokerIndex < brokerCount; brokerIndex++)
             {
                 final BrokerMetadataFW broker = brokerMetadataRO.tryWrap(networkBuffer, networkOffset, networkLimit);
@@ -2049,7 +2730,12 @@ public final class NetworkConnectionPool
                     return UNEXPECTED_SERVER_ERROR;
                 }
 
-                pendingTopicMetadata.addBroker(broker.nodeId(), broker.host().asString(), broker.port());
+                final BrokerMetadata brokerMetadata =
+                        new BrokerMetadata(broker.nodeId(), broker.host().asString(), broker.port());
+                for (TopicMetadata metadata : pendingTopicMetadata)
+                {
+                    metadata.addBroker(brokerMetadata);
+                }
                 networkOffset = broker.limit();
             }
 
@@ -2060,10 +2746,15 @@ public final class NetworkConnectionPool
                 return UNEXPECTED_SERVER_ERROR;
             }
 
+            if (clusterMetadata == null)
+            {
+                clusterMetadata = clientStreamFactory.supplyClusterMetadata(metadataResponsePart2.clusterId().asString());
+            }
+
+            KafkaError result = NONE;
             final int topicCount = metadataResponsePart2.topicCount();
-            assert topicCount == 1;
             networkOffset = metadataResponsePart2.limit();
-            for (int topicIndex = 0; topicIndex < topicCount && error == NONE; topicIndex++)
+            for (int topicIndex = 0; topicIndex < topicCount; topicIndex++)
             {
                 final TopicMetadataFW topicMetadata = topicMetadataRO.tryWrap(networkBuffer, networkOffset, networkLimit);
                 if (topicMetadata == null)
@@ -2071,39 +2762,69 @@ public final class NetworkConnectionPool
                     return UNEXPECTED_SERVER_ERROR;
                 }
 
-                String16FW topicName = topicMetadata.topic();
-                assert topicName.asString().equals(pendingTopicMetadata.topicName);
-                error = asKafkaError(topicMetadata.errorCode());
-                if (error != NONE)
-                {
-                    break;
-                }
+                final TopicMetadata metadata = pendingTopicMetadata(topicMetadata.topic().asString());
                 final int partitionCount = topicMetadata.partitionCount();
+                KafkaError error = asKafkaError(topicMetadata.errorCode());
                 networkOffset = topicMetadata.limit();
 
-                if (pendingTopicMetadata.initializePartitions(partitionCount))
+                final boolean addPartitions = metadata != null && error == NONE && metadata.initializePartitions(partitionCount);
+                if (metadata != null && error == NONE && !addPartitions)
+                {
+                    error = KafkaError.PARTITION_COUNT_CHANGED;
+                }
+
+                for (int partitionIndex = 0; partitionIndex < partitionCount; partitionIndex++)
                 {
-                    for (int partitionIndex = 0; partitionIndex < partitionCount && error == NONE; partitionIndex++)
+                    final PartitionMetadataFW partition =
+                            partitionMetadataRO.tryWrap(networkBuffer, networkOffset, networkLimit);
+                    if (partition == null)
                     {
-                        final PartitionMetadataFW partition =
-                                partitionMetadataRO.tryWrap(networkBuffer, networkOffset, networkLimit);
-                        if (partition == null)
+                        return UNEXPECTED_SERVER_ERROR;
+                    }
+
+                    if (addPartitions)
+                    {
+                        if (error == NONE)
                         {
-                            return UNEXPECTED_SERVER_ERROR;
+                            error = KafkaError.asKafkaError(partition.errorCode());
                         }
-
-                        error = KafkaError.asKafkaError(partition.errorCode());
-                        pendingTopicMetadata.addPartition(partition.partitionId(), partition.leader());
-                        networkOffset = partition.limit();
+                        metadata.addPartition(partition.partitionId(), partition.leader());
                     }
+                    networkOffset = partition.limit();
                 }
-                else
+
+                if (metadata != null)
                 {
-                    error = KafkaError.PARTITION_COUNT_CHANGED;
+                    final boolean handled = metadata.isLeadersRefreshRequired() ?
+                            handleLeadersRefreshResult(metadata, error) :
+                            handleTopicMetadataResult(metadata, error);
+                    if (handled)
+                    {
+                        pendingTopicMetadata.remove(metadata);
+                    }
+                    else
+                    {
+                        result = error;
+                    }
                 }
             }
 
-            return error;
+            return result;
+        }
+
+        private TopicMetadata pendingTopicMetadata(
+            String topicName)
+        {
+            TopicMetadata result = null;
+            for (int i = 0; i < pendingTopicMetadata.size() && result == null; i++)
+            {
+                TopicMetadata metadata = pendingTopicMetadata.get(i);
+                if (metadata.topicName.equals(topicName))
+                {
+                    result = metadata;
+                }
+            }
+            return result;
         }
 
         private void detachSubscribers(
@@ -2140,6 +2861,12 @@ public final class NetworkConnectionPool
         private BitSet needsHistoricalByPartition = new BitSet();
         private BitSet isLiveByPartition = new BitSet();
         private final boolean proactive;
+        private TopicBootstrapProgress bootstrapProgress;
+        private final long[] highWatermarks;
+        private final TopicLagMetrics lagMetrics;
+
+        // live messages are retained in the cache, so subscribers can drain them at their own pace
+        private final boolean bufferLive;
 
         @Override
         public String toString()
@@ -2163,6 +2890,23 @@ public final class NetworkConnectionPool
             this.partitions = new TreeSet<>();
             this.candidate = new NetworkTopicPartition();
             this.progressHandler = this::handleProgress;
+            this.bufferLive = !compacted && clientStreamFactory.streamingCachePartitionCapacity > 0;
+            this.highWatermarks = new long[partitionCount];
+            if (lagMetricsTopics < clientStreamFactory.lagMetricsTopics)
+            {
+                this.lagMetrics = new TopicLagMetrics(
+                        partitionCount,
+                        clientStreamFactory.lagMetricsPartitions,
+                        routeCounters.topicLagOffsets(topicName),
+                        routeCounters.topicLagMillis(topicName),
+                        p -> routeCounters.partitionLagOffsets(topicName, p),
+                        p -> routeCounters.partitionLagMillis(topicName, p));
+                lagMetricsTopics++;
+            }
+            else
+            {
+                this.lagMetrics = null;
+            }
 
             if (compacted)
             {
@@ -2173,6 +2917,16 @@ public final class NetworkConnectionPool
                                 clientStreamFactory.counters.cacheHits,
                                 clientStreamFactory.counters.cacheMisses);
             }
+            else if (bufferLive)
+            {
+                cache = new StreamingTailTopicCache(
+                                partitionCount,
+                                clientStreamFactory.streamingCachePartitionCapacity,
+                                clientStreamFactory.streamingCacheRetentionMillis,
+                                messageCache,
+                                clientStreamFactory.counters.cacheHits,
+                                clientStreamFactory.counters.cacheMisses);
+            }
             else
             {
                 cache = StreamingTopicCache.INSTANCE;
@@ -2198,6 +2952,10 @@ public final class NetworkConnectionPool
                  }
                  MessageDispatcher bootstrapDispatcher = new ProgressUpdatingMessageDispatcher(partitionCount, progressHandler);
                  this.dispatcher.add(null, -1, Collections.emptyIterator(), bootstrapDispatcher);
+                 bootstrapProgress = new TopicBootstrapProgress(
+                         partitionCount,
+                         routeCounters.topicBootstrapOffsetsBehind(topicName),
+                         routeCounters.topicBootstrapsCompleted);
             }
         }
 
@@ -2329,11 +3087,11 @@ public final class NetworkConnectionPool
             }
             if (partitions.isEmpty()  && !compacted)
             {
-                topicsByName.remove(topicName);
+                removeTopic(topicName);
                 TopicMetadata metadata = topicMetadataByName.get(topicName);
                 if (metadata != null && metadata.isComplete() && metadata.consumers.isEmpty())
                 {
-                    topicMetadataByName.remove(topicName);
+                    removeTopicMetadata(topicName);
                 }
             }
         }
@@ -2375,7 +3133,7 @@ public final class NetworkConnectionPool
         int writableBytes(boolean live)
         {
             int writableBytes;
-            if (live && proactive)
+            if (live && (proactive || bufferLive))
             {
                 writableBytes = fetchPartitionMaxBytes;
             }
@@ -2479,6 +3237,53 @@ public final class NetworkConnectionPool
             return needsHistoricalByPartition.get(partition);
         }
 
+        boolean hasSubscribers()
+        {
+            return !windowSuppliers.isEmpty();
+        }
+
+        boolean fetchesOnBootstrapConnection(int partition)
+        {
+            return bootstrapConnections.length > 0 && bootstrapProgress != null && bootstrapProgress.isBootstrapping(partition);
+        }
+
+        boolean isLiveEdge(int partition, long offset)
+        {
+            return offset == MAX_OFFSET || highWatermarks[partition] - offset <= clientStreamFactory.fetchLiveEdgeOffsets;
+        }
+
+        boolean isBootstrapping(int nodeId)
+        {
+            final TopicMetadata metadata = topicMetadataByName.get(topicName);
+            boolean bootstrapping = false;
+            if (bootstrapProgress != null && metadata != null && metadata.nodeIdsByPartition != null)
+            {
+                for (int partition = bootstrapProgress.nextBootstrapping(0);
+                     partition != -1 && !bootstrapping;
+                     partition = bootstrapProgress.nextBootstrapping(partition + 1))
+                {
+                    bootstrapping = metadata.fetchNodeId(partition) == nodeId;
+                }
+            }
+            return bootstrapping;
+        }
+
+        void handleHighWatermark(
+            int partition,
+            long requestedOffset,
+            long highWatermark)
+        {
+            highWatermarks[partition] = highWatermark;
+            if (lagMetrics != null)
+            {
+                lagMetrics.onHighWatermark(partition, requestedOffset, highWatermark, System.currentTimeMillis());
+            }
+            if (bootstrapProgress != null)
+            {
+                bootstrapProgress.onHighWatermark(partition, requestedOffset, highWatermark);
+            }
+        }
+
         void setLiveOffset(
             int partitionId,
             long offset)
@@ -2611,7 +3416,21 @@ public final class NetworkConnectionPool
         }
     }
 
-    private static final class BrokerMetadata
+    private static final class TimestampSeek
+    {
+        final long timestamp;
+        final LongConsumer onOffset;
+
+        TimestampSeek(
+            long timestamp,
+            LongConsumer onOffset)
+        {
+            this.timestamp = timestamp;
+            this.onOffset = onOffset;
+        }
+    }
+
+    static final class BrokerMetadata
     {
         final int nodeId;
         final String host;
@@ -2670,12 +3489,19 @@ public final class NetworkConnectionPool
         BrokerMetadata[] brokers;
         private int nextBrokerIndex;
         private int[] nodeIdsByPartition;
+        private int[] preferredNodeIdsByPartition;
         private long[] firstOffsetsByPartition;
         private long[] offsetsOutOfRangeByPartition;
+        private long[] oversizedOffsetsByPartition;
+        private int[] oversizedBytesByPartition;
+        private List<TimestampSeek>[] seeksByPartition;
+        private int pendingSeeks;
         private Int2ObjectHashMap<Consumer<TopicMetadata>> consumers = new Int2ObjectHashMap<>();
         private MetadataRequestType nextRequiredRequestType = MetadataRequestType.METADATA;
         private int retries;
         private Timer retryTimer;
+        private boolean leadersRefreshRequired;
+        private int leadersRefreshRetries;
 
         TopicMetadata(String topicName)
         {
@@ -2692,10 +3518,92 @@ public final class NetworkConnectionPool
             return state == State.GET_REQUIRED;
         }
 
+        boolean isLeadersRefreshRequired()
+        {
+            return state == State.COMPLETE && leadersRefreshRequired;
+        }
+
+        void requestLeadersRefresh()
+        {
+            leadersRefreshRequired = state == State.COMPLETE;
+        }
+
+        void invalidateLeader(
+            int partition)
+        {
+            nodeIdsByPartition[partition] = UNKNOWN_BROKER;
+            preferredNodeIdsByPartition[partition] = UNKNOWN_BROKER;
+            requestLeadersRefresh();
+        }
+
+        int fetchNodeId(int partition)
+        {
+            final int preferredNodeId = preferredNodeIdsByPartition[partition];
+            return preferredNodeId != UNKNOWN_BROKER ? preferredNodeId : nodeIdsByPartition[partition];
+        }
+
+        boolean isPreferredReplica(int partition, int nodeId)
+        {
+            return preferredNodeIdsByPartition != null && preferredNodeIdsByPartition[partition] == nodeId &&
+                   nodeIdsByPartition[partition] != nodeId;
+        }
+
+        boolean setPreferredReplica(
+            int partition,
+            int replicaId)
+        {
+            final int preferredNodeId = replicaId != nodeIdsByPartition[partition] && hasBroker(replicaId) ?
+                    replicaId : UNKNOWN_BROKER;
+            final boolean changed = preferredNodeIdsByPartition[partition] != preferredNodeId;
+            preferredNodeIdsByPartition[partition] = preferredNodeId;
+            return changed;
+        }
+
+        void clearPreferredReplica(int partition)
+        {
+            preferredNodeIdsByPartition[partition] = UNKNOWN_BROKER;
+        }
+
+        private boolean hasBroker(
+            int nodeId)
+        {
+            boolean found = false;
+            if (brokers != null)
+            {
+                for (int i = 0; i < brokers.length && !found; i++)
+                {
+                    found = brokers[i] != null && brokers[i].nodeId == nodeId;
+                }
+            }
+            return found;
+        }
+
+        void leadersRefreshed()
+        {
+            leadersRefreshRequired = false;
+            leadersRefreshRetries = 0;
+        }
+
+        void scheduleLeadersRefresh(
+            DelayedTaskScheduler scheduler,
+            Backoff backoffMillis,
+            MetadataConnection connection)
+        {
+            leadersRefreshRequired = false;
+            Timer timer = getOrCreateTimer(scheduler);
+            timer.cancel();
+            scheduler.rescheduleTimeout(backoffMillis.next(leadersRefreshRetries++), timer, () ->
+            {
+                requestLeadersRefresh();
+                connection.doRequestIfNeeded();
+            });
+        }
+
         KafkaError setComplete(
             KafkaError error)
         {
             state = State.COMPLETE;
+            leadersRefreshed();
             KafkaError priorError = errorCode;
             errorCode = error;
             if (retryTimer != null)
@@ -2760,9 +3668,9 @@ public final class NetworkConnectionPool
             nextBrokerIndex = 0;
         }
 
-        void addBroker(int nodeId, String host, int port)
+        void addBroker(BrokerMetadata broker)
         {
-            brokers[nextBrokerIndex++] = new BrokerMetadata(nodeId, host, port);
+            brokers[nextBrokerIndex++] = broker;
         }
 
         boolean invalidateBroker(
@@ -2789,6 +3697,10 @@ public final class NetworkConnectionPool
                         {
                             nodeIdsByPartition[i] = UNKNOWN_BROKER;
                         }
+                        if (preferredNodeIdsByPartition[i] == brokerId)
+                        {
+                            preferredNodeIdsByPartition[i] = UNKNOWN_BROKER;
+                        }
                     }
                 }
             }
@@ -2805,6 +3717,7 @@ public final class NetworkConnectionPool
             if (nodeIdsByPartition != null)
             {
                 Arrays.fill(nodeIdsByPartition, UNKNOWN_BROKER);
+                Arrays.fill(preferredNodeIdsByPartition, UNKNOWN_BROKER);
             }
             nextRequiredRequestType = MetadataRequestType.METADATA;
         }
@@ -2815,9 +3728,14 @@ public final class NetworkConnectionPool
             if (nodeIdsByPartition == null)
             {
                 nodeIdsByPartition = new int[partitionCount];
+                preferredNodeIdsByPartition = new int[partitionCount];
+                Arrays.fill(preferredNodeIdsByPartition, UNKNOWN_BROKER);
                 firstOffsetsByPartition = new long[partitionCount];
                 offsetsOutOfRangeByPartition = new long[partitionCount];
                 Arrays.fill(offsetsOutOfRangeByPartition, NO_OFFSET);
+                oversizedOffsetsByPartition = new long[partitionCount];
+                Arrays.fill(oversizedOffsetsByPartition, NO_OFFSET);
+                oversizedBytesByPartition = new int[partitionCount];
             }
             else if (nodeIdsByPartition.length != partitionCount)
             {
@@ -2828,6 +3746,10 @@ public final class NetworkConnectionPool
 
         void addPartition(int partitionId, int nodeId)
         {
+            if (nodeIdsByPartition[partitionId] != nodeId)
+            {
+                preferredNodeIdsByPartition[partitionId] = UNKNOWN_BROKER;
+            }
             nodeIdsByPartition[partitionId] = nodeId;
         }
 
@@ -2851,6 +3773,38 @@ public final class NetworkConnectionPool
         }
 
 
+        void setOversizedMessage(
+            int partition,
+            long offset,
+            int messageBytes)
+        {
+            oversizedOffsetsByPartition[partition] = offset;
+            oversizedBytesByPartition[partition] = messageBytes;
+        }
+
+        // Forget the oversized message once the fetch offset has moved past it
+        void releaseOversizedMessage(
+            int partition,
+            long offset)
+        {
+            final long oversizedOffset = oversizedOffsetsByPartition[partition];
+            if (oversizedOffset != NO_OFFSET && oversizedOffset < offset)
+            {
+                oversizedOffsetsByPartition[partition] = NO_OFFSET;
+                oversizedBytesByPartition[partition] = 0;
+            }
+        }
+
+        // Max partition bytes for a fetch, raised to fit an oversized message at the fetch offset
+        int maxPartitionBytes(
+            int partition,
+            long offset,
+            int maxPartitionBytes)
+        {
+            return oversizedOffsetsByPartition[partition] == offset ?
+                    Math.max(maxPartitionBytes, oversizedBytesByPartition[partition]) : maxPartitionBytes;
+        }
+
         int offsetsRequired(
             int nodeId)
         {
@@ -2860,7 +3814,7 @@ public final class NetworkConnectionPool
                 for (int i=0; i < nodeIdsByPartition.length; i++)
                 {
                     if (nodeIdsByPartition[i] == nodeId &&
-                            offsetsOutOfRangeByPartition[i] != NO_OFFSET)
+                            (offsetsOutOfRangeByPartition[i] != NO_OFFSET || seekRequired(i)))
                     {
                         result++;
                     }
@@ -2869,6 +3823,71 @@ public final class NetworkConnectionPool
             return result;
         }
 
+        @SuppressWarnings("unchecked")
+        void addSeek(
+            int partition,
+            long timestamp,
+            LongConsumer onOffset)
+        {
+            if (seeksByPartition == null)
+            {
+                seeksByPartition = new List[nodeIdsByPartition.length];
+            }
+            if (seeksByPartition[partition] == null)
+            {
+                seeksByPartition[partition] = new ArrayList<>();
+            }
+            seeksByPartition[partition].add(new TimestampSeek(timestamp, onOffset));
+            pendingSeeks++;
+        }
+
+        boolean hasPendingSeeks()
+        {
+            return pendingSeeks > 0;
+        }
+
+        boolean seeksPending(
+            int nodeId)
+        {
+            boolean result = false;
+            if (pendingSeeks > 0)
+            {
+                for (int i=0; i < nodeIdsByPartition.length && !result; i++)
+                {
+                    result = nodeIdsByPartition[i] == nodeId && seekRequired(i);
+                }
+            }
+            return result;
+        }
+
+        // Only one lookup per partition can be made in each list offsets request
+        boolean seekRequired(
+            int partition)
+        {
+            return pendingSeeks > 0 &&
+                    offsetsOutOfRangeByPartition[partition] == NO_OFFSET &&
+                    seeksByPartition[partition] != null &&
+                    !seeksByPartition[partition].isEmpty();
+        }
+
+        long seekTimestamp(
+            int partition)
+        {
+            return seeksByPartition[partition].get(0).timestamp;
+        }
+
+        void completeSeek(
+            int partition,
+            long offset)
+        {
+            if (seekRequired(partition))
+            {
+                TimestampSeek seek = seeksByPartition[partition].remove(0);
+                pendingSeeks--;
+                seek.onOffset.accept(offset);
+            }
+        }
+
         void setFirstOffset(int partitionId, long offset)
         {
             firstOffsetsByPartition[partitionId] = offset;
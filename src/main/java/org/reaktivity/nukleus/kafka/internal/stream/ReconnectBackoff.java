@@ -0,0 +1,72 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import static java.lang.String.format;
+
+import java.util.Random;
+
+/*
+ * Decorrelated jitter backoff between reconnect attempts of one network connection, so that connections
+ * failing at the same time spread out their reconnects. Failures are forgotten after a quiet period.
+ */
+final class ReconnectBackoff
+{
+    private final int minimum;
+    private final int maximum;
+    private final long decayMillis;
+    private final Random random;
+
+    private int previous;
+    private long lastFailureAt;
+
+    ReconnectBackoff(
+        int minimum,
+        int maximum,
+        long decayMillis,
+        Random random)
+    {
+        assert minimum > 0;
+        assert maximum >= minimum;
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.decayMillis = decayMillis;
+        this.random = random;
+        this.previous = minimum;
+    }
+
+    int next(
+        long now)
+    {
+        if (now - lastFailureAt > decayMillis)
+        {
+            previous = minimum;
+        }
+
+        final int upper = (int) Math.min(previous * 3L, maximum);
+        final int delay = minimum + random.nextInt(upper - minimum + 1);
+
+        previous = delay;
+        lastFailureAt = now;
+        return delay;
+    }
+
+    @Override
+    public String toString()
+    {
+        return format("ReconnectBackoff: minimum %d maximum=%d previous=%d", minimum, maximum, previous);
+    }
+}
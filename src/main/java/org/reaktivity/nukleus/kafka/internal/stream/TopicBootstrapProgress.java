@@ -0,0 +1,80 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import java.util.BitSet;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/*
+ * Bootstrap progress of a proactively fetched topic. Each partition is bootstrapping until a fetch is made at its
+ * high water mark, and meanwhile its offsets behind the high water mark are published through an accumulating
+ * gauge. Completion of the bootstrap is counted once, when the last partition catches up.
+ */
+final class TopicBootstrapProgress
+{
+    private final BitSet bootstrapping;
+    private final long[] offsetsBehind;
+    private final LongConsumer offsetsBehindGauge;
+    private final LongSupplier bootstrapsCompleted;
+
+    TopicBootstrapProgress(
+        int partitionCount,
+        LongConsumer offsetsBehindGauge,
+        LongSupplier bootstrapsCompleted)
+    {
+        this.bootstrapping = new BitSet(partitionCount);
+        this.bootstrapping.set(0, partitionCount);
+        this.offsetsBehind = new long[partitionCount];
+        this.offsetsBehindGauge = offsetsBehindGauge;
+        this.bootstrapsCompleted = bootstrapsCompleted;
+    }
+
+    boolean isBootstrapping(
+        int partition)
+    {
+        return bootstrapping.get(partition);
+    }
+
+    int nextBootstrapping(
+        int fromPartition)
+    {
+        return bootstrapping.nextSetBit(fromPartition);
+    }
+
+    void onHighWatermark(
+        int partition,
+        long offset,
+        long highWatermark)
+    {
+        if (bootstrapping.get(partition))
+        {
+            final long newOffsetsBehind = Math.max(highWatermark - offset, 0L);
+            offsetsBehindGauge.accept(newOffsetsBehind - offsetsBehind[partition]);
+            offsetsBehind[partition] = newOffsetsBehind;
+
+            if (newOffsetsBehind == 0L)
+            {
+                // caught up, so the live fetch connection takes over this partition
+                bootstrapping.clear(partition);
+                if (bootstrapping.isEmpty())
+                {
+                    bootstrapsCompleted.getAsLong();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
+
+/*
+ * Lag of the live fetch cursor behind the high water mark for each partition of a topic, published as
+ * gauges through accumulators. The age of the lag is the time since the partition was last caught up.
+ * Per partition gauges are only published for the first partitions, up to a limit, to bound the number
+ * of counters, while the topic gauges (total offsets behind and oldest age) always cover all partitions.
+ */
+final class TopicLagMetrics
+{
+    private static final long CAUGHT_UP = -1L;
+
+    private final long[] offsetsBehind;
+    private final long[] behindSince;
+    private final LongConsumer topicOffsetsBehind;
+    private final LongConsumer topicAgeMillis;
+    private final LongConsumer[] partitionOffsetsBehind;
+    private final LongConsumer[] partitionAgeMillis;
+    private final long[] partitionAges;
+
+    private long topicAge;
+
+    TopicLagMetrics(
+        int partitionCount,
+        int maxPartitionGauges,
+        LongConsumer topicOffsetsBehind,
+        LongConsumer topicAgeMillis,
+        IntFunction<LongConsumer> supplyPartitionOffsetsBehind,
+        IntFunction<LongConsumer> supplyPartitionAgeMillis)
+    {
+        final int partitionGauges = Math.min(partitionCount, maxPartitionGauges);
+        this.offsetsBehind = new long[partitionCount];
+        this.behindSince = new long[partitionCount];
+        Arrays.fill(behindSince, CAUGHT_UP);
+        this.topicOffsetsBehind = topicOffsetsBehind;
+        this.topicAgeMillis = topicAgeMillis;
+        this.partitionOffsetsBehind = new LongConsumer[partitionGauges];
+        this.partitionAgeMillis = new LongConsumer[partitionGauges];
+        this.partitionAges = new long[partitionGauges];
+        for (int partition = 0; partition < partitionGauges; partition++)
+        {
+            partitionOffsetsBehind[partition] = supplyPartitionOffsetsBehind.apply(partition);
+            partitionAgeMillis[partition] = supplyPartitionAgeMillis.apply(partition);
+        }
+    }
+
+    void onHighWatermark(
+        int partition,
+        long offset,
+        long highWatermark,
+        long now)
+    {
+        final long newOffsetsBehind = Math.max(highWatermark - offset, 0L);
+        final long delta = newOffsetsBehind - offsetsBehind[partition];
+        offsetsBehind[partition] = newOffsetsBehind;
+        topicOffsetsBehind.accept(delta);
+
+        if (newOffsetsBehind == 0L)
+        {
+            behindSince[partition] = CAUGHT_UP;
+        }
+        else if (behindSince[partition] == CAUGHT_UP)
+        {
+            behindSince[partition] = now;
+        }
+
+        if (partition < partitionOffsetsBehind.length)
+        {
+            partitionOffsetsBehind[partition].accept(delta);
+            final long age = ageMillis(partition, now);
+            partitionAgeMillis[partition].accept(age - partitionAges[partition]);
+            partitionAges[partition] = age;
+        }
+
+        long oldest = 0L;
+        for (int i = 0; i < behindSince.length; i++)
+        {
+            oldest = Math.max(oldest, ageMillis(i, now));
+        }
+        topicAgeMillis.accept(oldest - topicAge);
+        topicAge = oldest;
+    }
+
+    void close()
+    {
+        long total = 0L;
+        for (int partition = 0; partition < offsetsBehind.length; partition++)
+        {
+            total += offsetsBehind[partition];
+            if (partition < partitionOffsetsBehind.length)
+            {
+                partitionOffsetsBehind[partition].accept(-offsetsBehind[partition]);
+                partitionAgeMillis[partition].accept(-partitionAges[partition]);
+                partitionAges[partition] = 0L;
+            }
+            offsetsBehind[partition] = 0L;
+            behindSince[partition] = CAUGHT_UP;
+        }
+        topicOffsetsBehind.accept(-total);
+        topicAgeMillis.accept(-topicAge);
+        topicAge = 0L;
+    }
+
+    private long ageMillis(
+        int partition,
+        long now)
+    {
+        final long since = behindSince[partition];
+        return since == CAUGHT_UP ? 0L : now - since;
+    }
+}
@@ -31,20 +31,25 @@ public class TopicMessageDispatcher implements MessageDispatcher, DecoderMessage
     private final HeadersMessageDispatcher headers;
     private final BroadcastMessageDispatcher broadcast = new BroadcastMessageDispatcher();
     private final TopicCache cache;
+    private final boolean compacted;
 
     private final OctetsFW octetsRO = new OctetsFW();
 
     private final boolean[] cacheNewMessages;
 
+    private int batchPartition = -1;
+    private long batchNextOffset;
+
     protected TopicMessageDispatcher(
         TopicCache cache,
         int partitionCount)
     {
         this.cache = cache;
+        this.compacted = cache.compacted();
         keys = new KeyMessageDispatcher[partitionCount];
         cacheNewMessages = new boolean[partitionCount];
         Function<DirectBuffer, HeaderValueMessageDispatcher> createHeaderValueMessageDispatcher =
-                cache.compacted() ? CompactedHeaderValueMessageDispatcher::new : HeaderValueMessageDispatcher::new;
+                compacted ? CompactedHeaderValueMessageDispatcher::new : HeaderValueMessageDispatcher::new;
         for (int partition = 0; partition < partitionCount; partition++)
         {
             keys[partition] = new KeyMessageDispatcher(createHeaderValueMessageDispatcher);
@@ -60,6 +65,19 @@ public class TopicMessageDispatcher implements MessageDispatcher, DecoderMessage
         cache.startOffset(partition, startOffset);
     }
 
+    @Override
+    public void startBatch(
+        int partition,
+        long requestOffset,
+        long firstOffset,
+        long lastOffset)
+    {
+        // records in a batch only ever extend the cache up to their own offsets, so the next offset
+        // seen at the start of the batch is good for historical detection of every record in it
+        batchPartition = partition;
+        batchNextOffset = cache.nextOffset(partition);
+    }
+
     @Override
     public void adjustOffset(
         int partition,
@@ -98,7 +116,7 @@ public class TopicMessageDispatcher implements MessageDispatcher, DecoderMessage
         long traceId,
         DirectBuffer value)
     {
-        if (cache.compacted() && key == null)
+        if (compacted && key == null)
         {
             return 0;
         }
@@ -114,7 +132,8 @@ public class TopicMessageDispatcher implements MessageDispatcher, DecoderMessage
             }
         }
 
-        if (MessageDispatcher.matched(result))
+        // streaming topic caches need every message so that they hold a contiguous range of offsets
+        if (MessageDispatcher.matched(result) || !compacted)
         {
             cache.add(partition, requestOffset, messageOffset, timestamp, traceId, key, headers, value,
                     cacheNewMessages[partition]);
@@ -135,7 +154,9 @@ public class TopicMessageDispatcher implements MessageDispatcher, DecoderMessage
         DirectBuffer value)
     {
         int result = 0;
-        if (shouldDispatch(partition, requestOffset, messageOffset, key))
+        // messages superseded by a later cached message with the same key are not dispatched
+        final long keyOffset = key != null ? cache.getOffset(partition, asOctets(key)) : NO_OFFSET;
+        if (messageOffset >= keyOffset)
         {
             result |= broadcast.dispatch(partition, requestOffset, messageOffset, key, supplyHeader, timestamp, traceId, value);
             if (key != null)
@@ -144,13 +165,11 @@ public class TopicMessageDispatcher implements MessageDispatcher, DecoderMessage
                 result |= keyDispatcher.dispatch(partition, requestOffset, messageOffset,
                                                    key, supplyHeader, timestamp, traceId, value);
                 // detect historical message stream
-                long highestOffset = cache.nextOffset(partition);
+                long highestOffset = partition == batchPartition ? batchNextOffset : cache.nextOffset(partition);
                 if (MessageDispatcher.delivered(result) && messageOffset < highestOffset)
                 {
-                    long offset = cache.getOffset(partition, asOctets(key));
-
                     // fast-forward to live stream after observing most recent cached offset for message key
-                    if (offset != NO_OFFSET && offset == messageOffset)
+                    if (keyOffset != NO_OFFSET && keyOffset == messageOffset)
                     {
                         keyDispatcher.flush(partition, requestOffset, highestOffset, key);
                     }
@@ -167,6 +186,7 @@ public class TopicMessageDispatcher implements MessageDispatcher, DecoderMessage
         long requestOffset,
         long lastOffset)
     {
+        batchPartition = -1;
         broadcast.flush(partition, requestOffset, lastOffset);
         keys[partition].flush(partition, requestOffset, lastOffset);
         headers.flush(partition, requestOffset, lastOffset);
@@ -233,21 +253,6 @@ public class TopicMessageDispatcher implements MessageDispatcher, DecoderMessage
         }
     }
 
-    private boolean shouldDispatch(
-        int partition,
-        long requestOffset,
-        long messageStartOffset,
-        DirectBuffer key)
-    {
-        boolean result = true;
-        if (key != null)
-        {
-            long expectedOffsetForKey = cache.getOffset(partition, asOctets(key));
-            result = messageStartOffset >= expectedOffsetForKey;
-        }
-        return result;
-    }
-
     private OctetsFW asOctets(
         DirectBuffer key)
     {
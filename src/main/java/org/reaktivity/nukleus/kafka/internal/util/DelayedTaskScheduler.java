@@ -15,46 +15,236 @@
  */
 package org.reaktivity.nukleus.kafka.internal.util;
 
-import org.agrona.TimerWheel;
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
-import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
+/*
+ * Hierarchical timer wheel with millisecond ticks. The first level holds the next 256 ms one tick
+ * per slot, each further level covers 64 slots of the whole level below it and timers cascade down
+ * as their slot comes due. Timers are stamped with their deadline: rescheduling an already scheduled
+ * timer to a later deadline only updates the stamp, and the timer is moved when its slot comes due.
+ * Cancelled timers are likewise dropped when their slot comes due, so the usual pattern of cancelling
+ * and rescheduling a read idle timer on every request touches no slot lists.
+ */
 public class DelayedTaskScheduler
 {
-    private final TimerWheel timerWheel;
+    private static final int LEVEL_0_BITS = 8;
+    private static final int LEVEL_BITS = 6;
+    private static final int LEVELS = 4;
+    private static final int LEVEL_0_SLOTS = 1 << LEVEL_0_BITS;
+    private static final int LEVEL_SLOTS = 1 << LEVEL_BITS;
+    private static final long MAX_DELTA = 1L << (LEVEL_0_BITS + (LEVELS - 1) * LEVEL_BITS);
+
+    private final LongSupplier clock;
+    private final Timer[][] slots;
+
+    private long currentTick;
+    private int scheduled;
 
     public DelayedTaskScheduler()
     {
-        this.timerWheel = new TimerWheel(500, TimeUnit.MILLISECONDS, 32);
+        this(() -> NANOSECONDS.toMillis(System.nanoTime()));
     }
 
-    public TimerWheel.Timer newBlankTimer()
+    DelayedTaskScheduler(
+        LongSupplier clock)
     {
-        return timerWheel.newBlankTimer();
+        this.clock = clock;
+        this.slots = new Timer[LEVELS][];
+        this.slots[0] = new Timer[LEVEL_0_SLOTS];
+        for (int level = 1; level < LEVELS; level++)
+        {
+            this.slots[level] = new Timer[LEVEL_SLOTS];
+        }
+        this.currentTick = clock.getAsLong();
     }
 
-    public TimerWheel.Timer newTimeout(long delay, Runnable task)
+    public Timer newBlankTimer()
     {
-        return timerWheel.newTimeout(delay, TimeUnit.MILLISECONDS, task);
+        return new Timer();
     }
 
-    public void rescheduleTimeout(long delay, TimerWheel.Timer timer)
+    public Timer newTimeout(long delay, Runnable task)
     {
-        timerWheel.rescheduleTimeout(delay, TimeUnit.MILLISECONDS, timer);
+        final Timer timer = new Timer();
+        rescheduleTimeout(delay, timer, task);
+        return timer;
     }
 
-    public void rescheduleTimeout(long delay, TimerWheel.Timer timer, Runnable task)
+    public void rescheduleTimeout(long delay, Timer timer)
     {
-        timerWheel.rescheduleTimeout(delay, TimeUnit.MILLISECONDS, timer, task);
+        rescheduleTimeout(delay, timer, timer.task);
+    }
+
+    public void rescheduleTimeout(long delay, Timer timer, Runnable task)
+    {
+        final long deadline = clock.getAsLong() + Math.max(delay, 0L);
+        timer.task = task;
+        timer.deadline = deadline;
+        timer.active = true;
+        if (timer.slots == null)
+        {
+            schedule(timer);
+        }
+        else if (deadline < timer.slotTick)
+        {
+            unlink(timer);
+            schedule(timer);
+        }
     }
 
     public int process()
     {
-        if (timerWheel.computeDelayInMs() <= 0)
+        final long now = clock.getAsLong();
+        int expired = 0;
+        if (scheduled == 0)
+        {
+            currentTick = Math.max(currentTick, now);
+        }
+        while (currentTick < now)
+        {
+            final long tick = currentTick + 1;
+            cascade(tick);
+            currentTick = tick;
+            expired += expire(slots[0], (int) tick & (LEVEL_0_SLOTS - 1));
+        }
+        return expired;
+    }
+
+    private void cascade(
+        long tick)
+    {
+        int level = 0;
+        for (int shift = LEVEL_0_BITS; level < LEVELS - 1 && (tick & ((1L << shift) - 1)) == 0; shift += LEVEL_BITS)
+        {
+            level++;
+        }
+
+        // timers due at tick land in the slot about to be expired, so reschedule as of the previous tick
+        currentTick = tick - 1;
+        for (; level > 0; level--)
+        {
+            final Timer[] levelSlots = slots[level];
+            final int slot = (int) (tick >> (LEVEL_0_BITS + (level - 1) * LEVEL_BITS)) & (LEVEL_SLOTS - 1);
+            for (Timer timer = levelSlots[slot]; timer != null; timer = levelSlots[slot])
+            {
+                unlink(timer);
+                if (timer.active)
+                {
+                    schedule(timer);
+                }
+            }
+        }
+    }
+
+    private int expire(
+        Timer[] levelSlots,
+        int slot)
+    {
+        int expired = 0;
+        for (Timer timer = levelSlots[slot]; timer != null; timer = levelSlots[slot])
+        {
+            unlink(timer);
+            if (timer.active && timer.deadline > currentTick)
+            {
+                schedule(timer);
+            }
+            else if (timer.active)
+            {
+                timer.active = false;
+                timer.task.run();
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    private void schedule(
+        Timer timer)
+    {
+        // choose the level from the highest bit where the slot tick differs from the next tick to expire,
+        // so a timer drained from a higher level slot always cascades to a strictly lower level
+        final long nextTick = currentTick + 1;
+        final long tick = nextTick + Math.min(Math.max(timer.deadline - nextTick, 0L), MAX_DELTA - 1);
+        final long bits = tick ^ nextTick;
+
+        int level = 0;
+        int shift = 0;
+        for (long span = LEVEL_0_SLOTS; level < LEVELS - 1 && bits >= span; span <<= LEVEL_BITS)
+        {
+            shift = LEVEL_0_BITS + level * LEVEL_BITS;
+            level++;
+        }
+
+        final Timer[] levelSlots = slots[level];
+        final int slot = (int) (tick >> shift) & (levelSlots.length - 1);
+        final Timer head = levelSlots[slot];
+        timer.slots = levelSlots;
+        timer.slot = slot;
+        timer.slotTick = tick;
+        timer.previous = null;
+        timer.next = head;
+        if (head != null)
+        {
+            head.previous = timer;
+        }
+        levelSlots[slot] = timer;
+        scheduled++;
+    }
+
+    private void unlink(
+        Timer timer)
+    {
+        if (timer.previous != null)
+        {
+            timer.previous.next = timer.next;
+        }
+        else
+        {
+            timer.slots[timer.slot] = timer.next;
+        }
+        if (timer.next != null)
         {
-            return timerWheel.expireTimers();
+            timer.next.previous = timer.previous;
         }
-        return 0;
+        timer.slots = null;
+        timer.previous = null;
+        timer.next = null;
+        scheduled--;
     }
 
+    public static final class Timer
+    {
+        private Runnable task;
+        private long deadline;
+        private boolean active;
+
+        private Timer[] slots;
+        private int slot;
+        private long slotTick;
+        private Timer previous;
+        private Timer next;
+
+        private Timer()
+        {
+        }
+
+        public void cancel()
+        {
+            active = false;
+        }
+
+        public boolean isActive()
+        {
+            return active;
+        }
+
+        @Override
+        public String toString()
+        {
+            return format("Timer: active=%b deadline=%d", active, deadline);
+        }
+    }
 }
@@ -0,0 +1,385 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.util;
+
+import static java.nio.ByteBuffer.allocateDirect;
+import static org.agrona.BitUtil.SIZE_OF_LONG;
+import static org.agrona.BitUtil.findNextPositivePowerOfTwo;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Open addressing map from byte sequences to objects. Slots are located using the murmur2 hash
+ * from {@link BufferUtil#defaultHashCode} (the same hash used to partition keys, so it is well mixed),
+ * and the key bytes are stored contiguously in a single off-heap buffer, so no per-entry key objects
+ * are allocated. Removal uses backward shift deletion so no tombstones accumulate.
+ */
+public final class DirectBufferHashMap<V>
+{
+    private static final int MIN_CAPACITY = 8;
+    private static final int MIN_KEYS_CAPACITY = 1024;
+    private static final float LOAD_FACTOR = 0.65f;
+
+    private int[] hashes;
+    private int[] keyOffsets;
+    private int[] keyLengths;
+    private Object[] entries;
+    private int mask;
+    private int resizeThreshold;
+    private int size;
+
+    private MutableDirectBuffer keys;
+    private int keysLimit;
+    private int keysGarbage;
+
+    private final Iterable<V> values = () -> new ValueIterator(entries);
+
+    public DirectBufferHashMap()
+    {
+        this(MIN_CAPACITY);
+    }
+
+    public DirectBufferHashMap(
+        int initialCapacity)
+    {
+        allocateSlots(findNextPositivePowerOfTwo(Math.max(initialCapacity, MIN_CAPACITY)));
+        keys = new UnsafeBuffer(allocateDirect(MIN_KEYS_CAPACITY));
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public V get(
+        DirectBuffer buffer,
+        int offset,
+        int length)
+    {
+        final int index = indexOf(BufferUtil.defaultHashCode(buffer, offset, offset + length), buffer, offset, length);
+        return index == -1 ? null : valueAt(index);
+    }
+
+    public V put(
+        DirectBuffer buffer,
+        int offset,
+        int length,
+        V value)
+    {
+        assert value != null;
+        final int hash = BufferUtil.defaultHashCode(buffer, offset, offset + length);
+        final int existing = indexOf(hash, buffer, offset, length);
+
+        V previous = null;
+        if (existing != -1)
+        {
+            previous = valueAt(existing);
+            entries[existing] = value;
+        }
+        else
+        {
+            final int keyOffset = storeKey(buffer, offset, length);
+            int index = hash & mask;
+            while (entries[index] != null)
+            {
+                index = (index + 1) & mask;
+            }
+            hashes[index] = hash;
+            keyOffsets[index] = keyOffset;
+            keyLengths[index] = length;
+            entries[index] = value;
+
+            if (++size > resizeThreshold)
+            {
+                rehash(entries.length << 1);
+            }
+        }
+        return previous;
+    }
+
+    public V remove(
+        DirectBuffer buffer,
+        int offset,
+        int length)
+    {
+        final int index = indexOf(BufferUtil.defaultHashCode(buffer, offset, offset + length), buffer, offset, length);
+        V previous = null;
+        if (index != -1)
+        {
+            previous = valueAt(index);
+            removeAt(index);
+        }
+        return previous;
+    }
+
+    public boolean removeIf(
+        Predicate<? super V> filter)
+    {
+        boolean removed = false;
+        int index = 0;
+        while (index < entries.length)
+        {
+            final V value = valueAt(index);
+            if (value != null && filter.test(value))
+            {
+                // backward shift may have moved another entry into this slot, so examine it again
+                removeAt(index);
+                removed = true;
+            }
+            else
+            {
+                index++;
+            }
+        }
+        return removed;
+    }
+
+    public void clear()
+    {
+        if (size > 0)
+        {
+            Arrays.fill(entries, null);
+            size = 0;
+        }
+        keysLimit = 0;
+        keysGarbage = 0;
+    }
+
+    public Iterable<V> values()
+    {
+        return values;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(size=%d, capacity=%d, keyBytes=%d, garbageKeyBytes=%d)",
+                getClass().getSimpleName(), size, entries.length, keysLimit - keysGarbage, keysGarbage);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(
+        int index)
+    {
+        return (V) entries[index];
+    }
+
+    private int indexOf(
+        int hash,
+        DirectBuffer buffer,
+        int offset,
+        int length)
+    {
+        int index = hash & mask;
+        while (entries[index] != null)
+        {
+            if (hashes[index] == hash &&
+                keyLengths[index] == length &&
+                keyEquals(keyOffsets[index], buffer, offset, length))
+            {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(
+        int keyOffset,
+        DirectBuffer buffer,
+        int offset,
+        int length)
+    {
+        int i = 0;
+        for (; i + SIZE_OF_LONG <= length; i += SIZE_OF_LONG)
+        {
+            if (keys.getLong(keyOffset + i) != buffer.getLong(offset + i))
+            {
+                return false;
+            }
+        }
+        for (; i < length; i++)
+        {
+            if (keys.getByte(keyOffset + i) != buffer.getByte(offset + i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void removeAt(
+        int deleteIndex)
+    {
+        keysGarbage += keyLengths[deleteIndex];
+        entries[deleteIndex] = null;
+        size--;
+
+        // backward shift deletion, see Knuth TAOCP vol 3, algorithm R
+        int index = deleteIndex;
+        while (true)
+        {
+            index = (index + 1) & mask;
+            if (entries[index] == null)
+            {
+                break;
+            }
+
+            final int home = hashes[index] & mask;
+            if ((index < home && (home <= deleteIndex || deleteIndex <= index)) ||
+                (home <= deleteIndex && deleteIndex <= index))
+            {
+                hashes[deleteIndex] = hashes[index];
+                keyOffsets[deleteIndex] = keyOffsets[index];
+                keyLengths[deleteIndex] = keyLengths[index];
+                entries[deleteIndex] = entries[index];
+                entries[index] = null;
+                deleteIndex = index;
+            }
+        }
+
+        if (size == 0)
+        {
+            keysLimit = 0;
+            keysGarbage = 0;
+        }
+    }
+
+    private int storeKey(
+        DirectBuffer buffer,
+        int offset,
+        int length)
+    {
+        if (keysLimit + length > keys.capacity())
+        {
+            compactKeys(length);
+        }
+        final int keyOffset = keysLimit;
+        keys.putBytes(keyOffset, buffer, offset, length);
+        keysLimit += length;
+        return keyOffset;
+    }
+
+    private void compactKeys(
+        int required)
+    {
+        final int liveBytes = keysLimit - keysGarbage;
+        int newCapacity = keys.capacity();
+        while (liveBytes + required > newCapacity >> 1)
+        {
+            newCapacity <<= 1;
+        }
+
+        final MutableDirectBuffer newKeys = new UnsafeBuffer(allocateDirect(newCapacity));
+        int newLimit = 0;
+        for (int i = 0; i < entries.length; i++)
+        {
+            if (entries[i] != null)
+            {
+                final int length = keyLengths[i];
+                newKeys.putBytes(newLimit, keys, keyOffsets[i], length);
+                keyOffsets[i] = newLimit;
+                newLimit += length;
+            }
+        }
+        keys = newKeys;
+        keysLimit = newLimit;
+        keysGarbage = 0;
+    }
+
+    private void rehash(
+        int newCapacity)
+    {
+        final int[] oldHashes = hashes;
+        final int[] oldKeyOffsets = keyOffsets;
+        final int[] oldKeyLengths = keyLengths;
+        final Object[] oldEntries = entries;
+
+        allocateSlots(newCapacity);
+
+        for (int i = 0; i < oldEntries.length; i++)
+        {
+            if (oldEntries[i] != null)
+            {
+                int index = oldHashes[i] & mask;
+                while (entries[index] != null)
+                {
+                    index = (index + 1) & mask;
+                }
+                hashes[index] = oldHashes[i];
+                keyOffsets[index] = oldKeyOffsets[i];
+                keyLengths[index] = oldKeyLengths[i];
+                entries[index] = oldEntries[i];
+            }
+        }
+    }
+
+    private void allocateSlots(
+        int capacity)
+    {
+        hashes = new int[capacity];
+        keyOffsets = new int[capacity];
+        keyLengths = new int[capacity];
+        entries = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private final class ValueIterator implements Iterator<V>
+    {
+        private final Object[] snapshot;
+        private int index;
+
+        private ValueIterator(
+            Object[] snapshot)
+        {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while (index < snapshot.length && snapshot[index] == null)
+            {
+                index++;
+            }
+            return index < snapshot.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            return (V) snapshot[index++];
+        }
+    }
+}
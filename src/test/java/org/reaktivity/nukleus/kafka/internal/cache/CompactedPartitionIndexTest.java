@@ -804,4 +804,62 @@ public final class CompactedPartitionIndexTest
         assertEquals(1, entry2.messageHandle());
     }
 
+    @Test
+    public void shouldLocateFirstOffsetAtOrAfterTimestamp()
+    {
+        final MessageFW message200 = new MessageFW.Builder().wrap(new UnsafeBuffer(new byte[100]), 0, 100)
+                .timestamp(200L)
+                .traceId(456L)
+                .key(asOctets("key2"))
+                .value(asOctets("value"))
+                .build();
+        final MessageFW message300 = new MessageFW.Builder().wrap(new UnsafeBuffer(new byte[100]), 0, 100)
+                .timestamp(300L)
+                .traceId(456L)
+                .key(asOctets("key3"))
+                .value(asOctets("value"))
+                .build();
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(messageCache).put(100, 456, asBuffer("key1"), emptyHeaders, value);
+                will(returnValue(0));
+                oneOf(messageCache).put(200, 456, asBuffer("key2"), emptyHeaders, value);
+                will(returnValue(1));
+                oneOf(messageCache).put(300, 456, asBuffer("key3"), emptyHeaders, value);
+                will(returnValue(2));
+                allowing(messageCache).get(with(1), with(any(MessageFW.class)));
+                will(returnValue(message200));
+                allowing(messageCache).get(with(2), with(any(MessageFW.class)));
+                will(returnValue(message300));
+            }
+        });
+
+        assertEquals(-1L, index.offsetForTimestamp(100L));
+
+        index.add(0L, 0L, 100, 456, asBuffer("key1"), emptyHeaders, value, true);
+        index.add(0L, 1L, 200, 456, asBuffer("key2"), emptyHeaders, value, true);
+        index.add(0L, 2L, 300, 456, asBuffer("key3"), emptyHeaders, value, true);
+
+        assertEquals(0L, index.offsetForTimestamp(100L));
+        assertEquals(1L, index.offsetForTimestamp(150L));
+        assertEquals(2L, index.offsetForTimestamp(250L));
+        assertEquals(3L, index.offsetForTimestamp(301L));
+    }
+
+    @Test
+    public void shouldBoundTimestampIndexSize()
+    {
+        final int messages = CompactedPartitionIndex.TIMESTAMP_INDEX_INTERVAL *
+                (CompactedPartitionIndex.MAX_TIMESTAMP_INDEX_ENTRIES + 1);
+        for (int offset = 0; offset < messages; offset++)
+        {
+            index.add(offset, offset, offset * 10L, 456, key, emptyHeaders, value, false);
+        }
+
+        assertTrue(index.numberOfTimestampIndexEntries() <= CompactedPartitionIndex.MAX_TIMESTAMP_INDEX_ENTRIES);
+        assertEquals(0L, index.offsetForTimestamp(0L));
+    }
+
 }
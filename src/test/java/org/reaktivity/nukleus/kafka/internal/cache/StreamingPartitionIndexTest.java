@@ -0,0 +1,257 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.reaktivity.nukleus.kafka.internal.cache.MessageCache.NO_MESSAGE;
+import static org.reaktivity.nukleus.kafka.internal.test.TestUtil.asBuffer;
+import static org.reaktivity.nukleus.kafka.internal.test.TestUtil.asOctets;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.junit.Rule;
+import org.junit.Test;
+import org.reaktivity.nukleus.kafka.internal.cache.PartitionIndex.Entry;
+import org.reaktivity.nukleus.kafka.internal.stream.HeadersFW;
+import org.reaktivity.nukleus.kafka.internal.types.MessageFW;
+
+public final class StreamingPartitionIndexTest
+{
+    private MessageCache messageCache;
+
+    private DirectBuffer key1 = asBuffer("key1");
+    private DirectBuffer key2 = asBuffer("key2");
+    private DirectBuffer value = asBuffer("value");
+
+    private DirectBuffer emptyHeadersBuffer = new UnsafeBuffer(new byte[0]);
+    private HeadersFW emptyHeaders = new HeadersFW().wrap(emptyHeadersBuffer, 0, 0);
+
+    private MessageFW message1 = new MessageFW.Builder().wrap(new UnsafeBuffer(new byte[100]), 0, 100)
+            .timestamp(123L)
+            .traceId(456L)
+            .key(asOctets("key1"))
+            .value(asOctets("value"))
+            .build();
+
+    private MessageFW message2 = new MessageFW.Builder().wrap(new UnsafeBuffer(new byte[100]), 0, 100)
+            .timestamp(123L)
+            .traceId(456L)
+            .key(asOctets("key2"))
+            .value(asOctets("value"))
+            .build();
+
+    private AtomicLong cacheHits = new AtomicLong();
+    private AtomicLong cacheMisses = new AtomicLong();
+
+    @Rule
+    public JUnitRuleMockery context = new JUnitRuleMockery()
+    {
+        {
+            messageCache = mock(MessageCache.class);
+        }
+    };
+
+    private StreamingPartitionIndex index = new StreamingPartitionIndex(
+                                                1024L,
+                                                0L,
+                                                messageCache,
+                                                cacheHits::incrementAndGet,
+                                                cacheMisses::incrementAndGet);
+
+    @Test
+    public void shouldServeMessagesFromRequestedOffset()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(messageCache).put(123L, 456L, key1, emptyHeaders, value);
+                will(returnValue(0));
+                oneOf(messageCache).put(123L, 456L, key2, emptyHeaders, value);
+                will(returnValue(1));
+                oneOf(messageCache).put(123L, 456L, key1, emptyHeaders, value);
+                will(returnValue(2));
+                oneOf(messageCache).get(with(1), with(any(MessageFW.class)));
+                will(returnValue(message2));
+                oneOf(messageCache).get(with(2), with(any(MessageFW.class)));
+                will(returnValue(message1));
+            }
+        });
+        index.add(10L, 10L, 123L, 456L, key1, emptyHeaders, value);
+        index.add(10L, 11L, 123L, 456L, key2, emptyHeaders, value);
+        index.add(10L, 12L, 123L, 456L, key1, emptyHeaders, value);
+        index.extendNextOffset(10L, 14L);
+
+        assertTrue(index.hasMessages(11L));
+        Iterator<Entry> entries = index.entries(11L, null, null);
+        assertEquals(11L, entries.next().offset());
+        assertEquals(12L, entries.next().offset());
+        assertTrue(entries.hasNext());
+        Entry entry = entries.next();
+        assertEquals(14L, entry.offset());
+        assertEquals(NO_MESSAGE, entry.messageHandle());
+        assertFalse(entries.hasNext());
+        assertEquals(2, cacheHits.get());
+    }
+
+    @Test
+    public void shouldNotServeOffsetsOutsideCachedRange()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(messageCache).put(123L, 456L, key1, emptyHeaders, value);
+                will(returnValue(0));
+            }
+        });
+        index.add(10L, 10L, 123L, 456L, key1, emptyHeaders, value);
+
+        assertFalse(index.hasMessages(9L));
+        assertFalse(index.hasMessages(11L));
+
+        Iterator<Entry> entries = index.entries(9L, null, null);
+        Entry entry = entries.next();
+        assertEquals(9L, entry.offset());
+        assertEquals(NO_MESSAGE, entry.messageHandle());
+        assertFalse(entries.hasNext());
+    }
+
+    @Test
+    public void shouldServeOnlyMessagesMatchingFetchKey()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(messageCache).put(123L, 456L, key1, emptyHeaders, value);
+                will(returnValue(0));
+                oneOf(messageCache).put(123L, 456L, key2, emptyHeaders, value);
+                will(returnValue(1));
+                oneOf(messageCache).get(with(0), with(any(MessageFW.class)));
+                will(returnValue(message1));
+                oneOf(messageCache).get(with(1), with(any(MessageFW.class)));
+                will(returnValue(message2));
+            }
+        });
+        index.add(10L, 10L, 123L, 456L, key1, emptyHeaders, value);
+        index.add(10L, 11L, 123L, 456L, key2, emptyHeaders, value);
+
+        Iterator<Entry> entries = index.entries(10L, asOctets("key2"), null);
+        assertEquals(11L, entries.next().offset());
+        assertEquals(12L, entries.next().offset());
+        assertFalse(entries.hasNext());
+    }
+
+    @Test
+    public void shouldEvictOldestMessagesWhenCapacityExceeded()
+    {
+        index = new StreamingPartitionIndex(20L, 0L, messageCache, cacheHits::incrementAndGet, cacheMisses::incrementAndGet);
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(messageCache).put(123L, 456L, key1, emptyHeaders, value);
+                will(returnValue(0));
+                oneOf(messageCache).put(123L, 456L, key2, emptyHeaders, value);
+                will(returnValue(1));
+                oneOf(messageCache).put(123L, 456L, key1, emptyHeaders, value);
+                will(returnValue(2));
+                oneOf(messageCache).release(0);
+            }
+        });
+        index.add(10L, 10L, 123L, 456L, key1, emptyHeaders, value);
+        index.add(10L, 11L, 123L, 456L, key2, emptyHeaders, value);
+        index.add(10L, 12L, 123L, 456L, key1, emptyHeaders, value);
+
+        assertEquals(2, index.numberOfEntries());
+        assertEquals(18L, index.bytes());
+        assertFalse(index.hasMessages(10L));
+        assertTrue(index.hasMessages(11L));
+    }
+
+    @Test
+    public void shouldRestartWhenOffsetsAreNotContiguous()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(messageCache).put(123L, 456L, key1, emptyHeaders, value);
+                will(returnValue(0));
+                oneOf(messageCache).release(0);
+                oneOf(messageCache).put(123L, 456L, key2, emptyHeaders, value);
+                will(returnValue(1));
+            }
+        });
+        index.add(10L, 10L, 123L, 456L, key1, emptyHeaders, value);
+        index.add(20L, 20L, 123L, 456L, key2, emptyHeaders, value);
+
+        assertFalse(index.hasMessages(10L));
+        assertTrue(index.hasMessages(20L));
+        assertEquals(21L, index.nextOffset());
+    }
+
+    @Test
+    public void shouldLocateFirstOffsetAtOrAfterTimestamp()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(messageCache).put(100L, 456L, key1, emptyHeaders, value);
+                will(returnValue(0));
+                oneOf(messageCache).put(200L, 456L, key2, emptyHeaders, value);
+                will(returnValue(1));
+                oneOf(messageCache).put(300L, 456L, key1, emptyHeaders, value);
+                will(returnValue(2));
+            }
+        });
+        index.add(10L, 10L, 100L, 456L, key1, emptyHeaders, value);
+        index.add(10L, 11L, 200L, 456L, key2, emptyHeaders, value);
+        index.add(10L, 12L, 300L, 456L, key1, emptyHeaders, value);
+
+        assertEquals(-1L, index.offsetForTimestamp(100L));
+        assertEquals(11L, index.offsetForTimestamp(101L));
+        assertEquals(11L, index.offsetForTimestamp(200L));
+        assertEquals(12L, index.offsetForTimestamp(250L));
+        assertEquals(13L, index.offsetForTimestamp(301L));
+    }
+
+    @Test
+    public void shouldReportCacheMissWhenMessageNoLongerCached()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(messageCache).put(123L, 456L, key1, emptyHeaders, value);
+                will(returnValue(0));
+                oneOf(messageCache).get(with(0), with(any(MessageFW.class)));
+                will(returnValue(null));
+            }
+        });
+        index.add(10L, 10L, 123L, 456L, key1, emptyHeaders, value);
+
+        Iterator<Entry> entries = index.entries(10L, null, null);
+        Entry entry = entries.next();
+        assertEquals(10L, entry.offset());
+        assertEquals(NO_MESSAGE, entry.messageHandle());
+        assertFalse(entries.hasNext());
+        assertEquals(1, cacheMisses.get());
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.reaktivity.nukleus.kafka.internal.test.TestUtil.asBuffer;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.junit.Rule;
+import org.junit.Test;
+import org.reaktivity.nukleus.kafka.internal.cache.ImmutableTopicCache.MessageRef;
+import org.reaktivity.nukleus.kafka.internal.stream.HeadersFW;
+import org.reaktivity.nukleus.kafka.internal.types.MessageFW;
+
+public final class StreamingTailTopicCacheTest
+{
+    private MessageCache messageCache;
+
+    private DirectBuffer key = asBuffer("key");
+    private DirectBuffer value = asBuffer("value");
+    private DirectBuffer headersBuffer = new UnsafeBuffer(new byte[0]);
+    private HeadersFW headers = new HeadersFW().wrap(headersBuffer, 0, 0);
+    private MessageFW messageRO = new MessageFW();
+
+    private AtomicLong cacheHits = new AtomicLong();
+    private AtomicLong cacheMisses = new AtomicLong();
+
+    @Rule
+    public JUnitRuleMockery context = new JUnitRuleMockery()
+    {
+        {
+            messageCache = mock(MessageCache.class);
+        }
+    };
+
+    private StreamingTailTopicCache cache = new StreamingTailTopicCache(
+            1,
+            1024L,
+            0L,
+            messageCache,
+            cacheHits::incrementAndGet,
+            cacheMisses::incrementAndGet);
+
+    @Test
+    public void shouldRetainLiveTailWhileHistoricalScanIsCached()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                allowing(messageCache).put(123L, 456L, key, headers, value);
+                will(onConsecutiveCalls(returnValue(0), returnValue(1), returnValue(2)));
+            }
+        });
+        cache.add(0, 100L, 100L, 123L, 456L, key, headers, value, false);
+        cache.add(0, 10L, 10L, 123L, 456L, key, headers, value, false);
+        cache.add(0, 10L, 11L, 123L, 456L, key, headers, value, false);
+
+        assertTrue(cache.hasMessages(fetchOffsets(100L), null, null));
+        assertTrue(cache.hasMessages(fetchOffsets(11L), null, null));
+        assertFalse(cache.hasMessages(fetchOffsets(12L), null, null));
+        assertEquals(101L, cache.nextOffset(0));
+    }
+
+    @Test
+    public void shouldReportNextOffsetOfLiveStreamHeldInScan()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                allowing(messageCache).put(123L, 456L, key, headers, value);
+                will(onConsecutiveCalls(returnValue(0), returnValue(1), returnValue(2)));
+            }
+        });
+        cache.add(0, 0L, 0L, 123L, 456L, key, headers, value, false);
+        cache.add(0, 0L, 1L, 123L, 456L, key, headers, value, false);
+        cache.add(0, 0L, 2L, 123L, 456L, key, headers, value, false);
+
+        assertTrue(cache.hasMessages(fetchOffsets(0L), null, null));
+        assertEquals(3L, cache.nextOffset(0));
+    }
+
+    @Test
+    public void shouldServeTrailingCursorFromHistoricalScan()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                allowing(messageCache).put(123L, 456L, key, headers, value);
+                will(onConsecutiveCalls(returnValue(0), returnValue(1), returnValue(2)));
+                oneOf(messageCache).get(with(2), with(any(MessageFW.class)));
+                will(returnValue(messageRO));
+            }
+        });
+        cache.add(0, 100L, 100L, 123L, 456L, key, headers, value, false);
+        cache.add(0, 10L, 10L, 123L, 456L, key, headers, value, false);
+        cache.add(0, 10L, 11L, 123L, 456L, key, headers, value, false);
+        cache.extendNextOffset(0, 10L, 12L);
+
+        Iterator<MessageRef> messages = cache.getMessages(fetchOffsets(11L), null, null);
+        assertTrue(messages.hasNext());
+        MessageRef message = messages.next();
+        assertEquals(11L, message.offset());
+        assertTrue(messages.hasNext());
+        assertEquals(12L, messages.next().offset());
+        assertFalse(messages.hasNext());
+        assertEquals(1, cacheHits.get());
+    }
+
+    @Test
+    public void shouldSplitPartitionCapacityBetweenTailAndScan()
+    {
+        // key and value are 8 bytes, so each ring can hold only one message
+        cache = new StreamingTailTopicCache(1, 16L, 0L, messageCache, cacheHits::incrementAndGet,
+                cacheMisses::incrementAndGet);
+        context.checking(new Expectations()
+        {
+            {
+                allowing(messageCache).put(123L, 456L, key, headers, value);
+                will(onConsecutiveCalls(returnValue(0), returnValue(1), returnValue(2), returnValue(3)));
+                allowing(messageCache).release(with(any(Integer.class)));
+            }
+        });
+        cache.add(0, 100L, 100L, 123L, 456L, key, headers, value, false);
+        cache.add(0, 100L, 101L, 123L, 456L, key, headers, value, false);
+        cache.add(0, 10L, 10L, 123L, 456L, key, headers, value, false);
+        cache.add(0, 10L, 11L, 123L, 456L, key, headers, value, false);
+
+        assertFalse(cache.hasMessages(fetchOffsets(100L), null, null));
+        assertTrue(cache.hasMessages(fetchOffsets(101L), null, null));
+        assertFalse(cache.hasMessages(fetchOffsets(10L), null, null));
+        assertTrue(cache.hasMessages(fetchOffsets(11L), null, null));
+    }
+
+    private static Long2LongHashMap fetchOffsets(
+        long offset)
+    {
+        Long2LongHashMap fetchOffsets = new Long2LongHashMap(-1L);
+        fetchOffsets.put(0, offset);
+        return fetchOffsets;
+    }
+}
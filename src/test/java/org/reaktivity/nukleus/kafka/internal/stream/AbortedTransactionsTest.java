@@ -0,0 +1,74 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public final class AbortedTransactionsTest
+{
+    private final AbortedTransactions aborted = new AbortedTransactions();
+
+    @Test
+    public void shouldReportAbortedFromFirstOffsetUntilControlBatch()
+    {
+        aborted.add(7L, 10L);
+
+        assertFalse(aborted.isAborted(7L, 9L));
+        assertTrue(aborted.isAborted(7L, 12L));
+        assertFalse(aborted.isAborted(8L, 12L));
+
+        aborted.onControlBatch(7L, 13L);
+        assertFalse(aborted.isAborted(7L, 15L));
+    }
+
+    @Test
+    public void shouldReportAbortedWhenTransactionStartsWithinBatch()
+    {
+        aborted.add(7L, 10L);
+
+        assertTrue(aborted.isAborted(7L, 11L));
+    }
+
+    @Test
+    public void shouldTrackTransactionsOfSeveralProducers()
+    {
+        aborted.add(7L, 10L);
+        aborted.add(8L, 11L);
+        aborted.add(7L, 20L);
+
+        assertTrue(aborted.isAborted(7L, 10L));
+        assertTrue(aborted.isAborted(8L, 11L));
+
+        aborted.onControlBatch(7L, 12L);
+        assertFalse(aborted.isAborted(7L, 13L));
+        assertTrue(aborted.isAborted(8L, 13L));
+        assertTrue(aborted.isAborted(7L, 20L));
+    }
+
+    @Test
+    public void shouldForgetTransactionsWhenReset()
+    {
+        aborted.add(7L, 10L);
+        assertTrue(aborted.isAborted(7L, 10L));
+
+        aborted.reset();
+        assertFalse(aborted.isAborted(7L, 10L));
+    }
+
+}
@@ -28,6 +28,8 @@ import org.kaazing.k3po.junit.annotation.ScriptProperty;
 import org.kaazing.k3po.junit.annotation.Specification;
 import org.kaazing.k3po.junit.rules.K3poRule;
 import org.reaktivity.nukleus.kafka.internal.KafkaConfiguration;
+import org.reaktivity.reaktor.test.annotation.Configure;
+import org.reaktivity.reaktor.test.annotation.Configures;
 import org.reaktivity.reaktor.test.ReaktorRule;
 
 public class BootstrapIT
@@ -39,6 +41,7 @@ public class BootstrapIT
             .addScriptRoot("routeAnyTopic", "org/reaktivity/specification/nukleus/kafka/control/route")
             .addScriptRoot("control", "org/reaktivity/specification/nukleus/kafka/control")
             .addScriptRoot("server", "org/reaktivity/specification/kafka/fetch.v5")
+            .addScriptRoot("localServer", "org/reaktivity/nukleus/kafka/internal/stream/fetch.v5")
             .addScriptRoot("metadata", "org/reaktivity/specification/kafka/metadata.v5")
             .addScriptRoot("client", "org/reaktivity/specification/nukleus/kafka/streams/fetch");
 
@@ -70,6 +73,31 @@ public class BootstrapIT
         k3po.finish();
     }
 
+    @Test
+    @Specification({
+        "${route}/client/controller",
+        "${localServer}/compacted.message.bootstrap.connection/server"})
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    @Configure(name=KafkaConfiguration.TOPIC_BOOTSTRAP_PARALLELISM_PROPERTY, value="1")
+    public void shouldBootstrapTopicOnBootstrapConnectionThenFetchLive() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+        "${route}/client/controller",
+        "${localServer}/compacted.messages.live.edge.first/server"})
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    @Configures({
+        @Configure(name=KafkaConfiguration.FETCH_LIVE_EDGE_OFFSETS_PROPERTY, value="5"),
+        @Configure(name=KafkaConfiguration.FETCH_CATCH_UP_WEIGHT_PROPERTY, value="50")
+    })
+    public void shouldFetchLiveEdgePartitionsBeforeCatchingUpPartitionsWithReducedMaxBytes() throws Exception
+    {
+        k3po.finish();
+    }
+
     @Test
     @Specification({
         "${route}/client/controller",
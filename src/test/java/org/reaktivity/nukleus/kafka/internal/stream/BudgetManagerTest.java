@@ -15,9 +15,12 @@
  */
 package org.reaktivity.nukleus.kafka.internal.stream;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 
+import java.util.ArrayList;
+import java.util.List;
 
 import org.jmock.Expectations;
 import org.jmock.integration.junit4.JUnitRuleMockery;
@@ -78,7 +81,6 @@ public final class BudgetManagerTest
         context.checking(new Expectations()
         {
             {
-                oneOf(stream1).run();
                 oneOf(stream2).run();
             }
         });
@@ -96,7 +98,7 @@ public final class BudgetManagerTest
         context.checking(new Expectations()
         {
             {
-                exactly(2).of(stream1).run();
+                oneOf(stream1).run();
                 oneOf(stream2).run();
             }
         });
@@ -112,26 +114,185 @@ public final class BudgetManagerTest
         assertEquals(100, budget1.getBudget());
         assertEquals(100, budget2.getBudget());
 
+        budget1.decBudget(1L, 60);
+        assertEquals(40, budget1.getBudget());
+
         context.checking(new Expectations()
         {
             {
                 oneOf(stream2).run();
             }
         });
+        budget1.blocked(2L);
+        budget1.closing(1L, 60);
+        assertEquals(100, budget1.getBudget());
 
-        budget1.decBudget(1L, 60);
-        assertEquals(40, budget1.getBudget());
+        budget1.closed(1L);
+    }
 
+    @Test
+    public void shouldOnlyNotifyStreamsWaitingForBudget()
+    {
         context.checking(new Expectations()
         {
             {
                 oneOf(stream1).run();
+                exactly(2).of(stream2).run();
             }
         });
-        budget1.closing(1L, 60);
-        assertEquals(100, budget1.getBudget());
 
-        budget1.closed(1L);
+        Budget budget = budgetManager.createBudget(1L);
+        budget.incBudget(1L, 100, stream1);
+        budget.incBudget(2L, 100, stream2);
+
+        budget.decBudget(1L, 50);
+        budget.decBudget(2L, 50);
+        budget.blocked(2L);
+
+        budget.incBudget(1L, 50, stream1);
+        assertEquals(50, budget.getBudget());
+
+        budget.incBudget(2L, 50, stream2);
+        assertEquals(100, budget.getBudget());
+    }
+
+    @Test
+    public void shouldNotifyWaitingStreamsInRoundRobinOrder()
+    {
+        final List<Long> notified = new ArrayList<>();
+        final Budget budget = budgetManager.createBudget(1L);
+
+        budget.incBudget(1L, 30, () -> consume(budget, 1L, 10, notified));
+        budget.incBudget(2L, 30, () -> consume(budget, 2L, 10, notified));
+        budget.incBudget(3L, 30, () -> consume(budget, 3L, 10, notified));
+        assertEquals(asList(1L, 1L, 2L), notified);
+        assertEquals(0, budget.getBudget());
+
+        notified.clear();
+        budget.incBudget(1L, 10, null);
+        budget.incBudget(1L, 10, null);
+        budget.incBudget(2L, 10, null);
+        budget.incBudget(1L, 10, null);
+        assertEquals(asList(1L, 2L, 3L, 1L), notified);
     }
 
+    @Test
+    public void shouldDeferStreamWhichConsumedMoreThanItsShare()
+    {
+        final List<Long> notified = new ArrayList<>();
+        final Budget budget = budgetManager.createBudget(1L);
+
+        budget.incBudget(1L, 100, () -> notified.add(1L));
+        budget.incBudget(2L, 100, () -> notified.add(2L));
+        budget.incBudget(3L, 100, () -> notified.add(3L));
+
+        // stream 1 writes a large message, streams 2 and 3 are then blocked waiting for budget
+        budget.decBudget(1L, 100);
+        budget.blocked(1L);
+        budget.blocked(2L);
+        budget.blocked(3L);
+
+        notified.clear();
+        budget.incBudget(1L, 50, null);
+        assertEquals(asList(2L, 3L), notified);
+    }
+
+    @Test
+    public void shouldResumeEveryStreamOutOfBudgetOnceCreditArrives()
+    {
+        final Budget budget = budgetManager.createBudget(1L);
+        final List<PendingStream> streams = new ArrayList<>();
+        for (long streamId = 1L; streamId <= 4L; streamId++)
+        {
+            final PendingStream stream = new PendingStream(budget, streamId, 60, 10);
+            streams.add(stream);
+            budget.incBudget(streamId, 100, stream::write);
+        }
+
+        // stream 1 wrote all, stream 2 wrote partially, streams 3 and 4 got no window
+        assertEquals(asList(0, 40, 60, 60), remaining(streams));
+
+        for (int acks = 0; acks < 10 && budget.getBudget() < 100; acks++)
+        {
+            for (PendingStream stream : streams)
+            {
+                stream.ack();
+            }
+        }
+
+        assertEquals(asList(0, 0, 0, 0), remaining(streams));
+    }
+
+    private static void consume(
+        Budget budget,
+        long streamId,
+        int amount,
+        List<Long> notified)
+    {
+        notified.add(streamId);
+        if (budget.getBudget() >= amount)
+        {
+            budget.decBudget(streamId, amount);
+        }
+        budget.blocked(streamId);
+    }
+
+    private static List<Integer> remaining(
+        List<PendingStream> streams)
+    {
+        final List<Integer> remaining = new ArrayList<>();
+        for (PendingStream stream : streams)
+        {
+            remaining.add(stream.remaining);
+        }
+        return remaining;
+    }
+
+    // Writes a payload as ClientAcceptStream does, blocking on partial writes and when there is no window
+    private static final class PendingStream
+    {
+        private final Budget budget;
+        private final long streamId;
+        private final int padding;
+        private int remaining;
+        private int unacked;
+
+        private PendingStream(
+            Budget budget,
+            long streamId,
+            int remaining,
+            int padding)
+        {
+            this.budget = budget;
+            this.streamId = streamId;
+            this.remaining = remaining;
+            this.padding = padding;
+        }
+
+        private void write()
+        {
+            final int writeableBytes = budget.getBudget() - padding;
+            if (remaining > 0 && writeableBytes > 0)
+            {
+                final int bytesToWrite = Math.min(remaining, writeableBytes);
+                budget.decBudget(streamId, bytesToWrite + padding);
+                unacked += bytesToWrite + padding;
+                remaining -= bytesToWrite;
+            }
+            if (remaining > 0)
+            {
+                budget.blocked(streamId);
+            }
+        }
+
+        private void ack()
+        {
+            if (unacked > 0)
+            {
+                final int credit = unacked;
+                unacked = 0;
+                budget.incBudget(streamId, credit, null);
+            }
+        }
+    }
 }
@@ -31,6 +31,8 @@ import org.kaazing.k3po.junit.rules.K3poRule;
 import org.reaktivity.nukleus.kafka.internal.KafkaConfiguration;
 import org.reaktivity.nukleus.kafka.internal.test.KafkaCountersRule;
 import org.reaktivity.reaktor.test.ReaktorRule;
+import org.reaktivity.reaktor.test.annotation.Configure;
+import org.reaktivity.reaktor.test.annotation.Configures;
 
 public class CachingFetchIT
 {
@@ -39,8 +41,10 @@ public class CachingFetchIT
             .addScriptRoot("routeAnyTopic", "org/reaktivity/specification/nukleus/kafka/control/route")
             .addScriptRoot("control", "org/reaktivity/specification/nukleus/kafka/control")
             .addScriptRoot("server", "org/reaktivity/specification/kafka/fetch.v5")
+            .addScriptRoot("localServer", "org/reaktivity/nukleus/kafka/internal/stream/fetch.v5")
             .addScriptRoot("metadata", "org/reaktivity/specification/kafka/metadata.v5")
-            .addScriptRoot("client", "org/reaktivity/specification/nukleus/kafka/streams/fetch");
+            .addScriptRoot("client", "org/reaktivity/specification/nukleus/kafka/streams/fetch")
+            .addScriptRoot("localClient", "org/reaktivity/nukleus/kafka/internal/stream/streams/fetch");
 
     private final TestRule timeout = new DisableOnDebug(new Timeout(10, SECONDS));
 
@@ -429,6 +433,65 @@ public class CachingFetchIT
         k3po.finish();
     }
 
+    @Test
+    @Specification({
+        "${route}/client/controller",
+        "${client}/fanout.with.slow.consumer/client",
+        "${localServer}/fanout.with.slow.consumer.buffered/server"})
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    @Configures({
+        @Configure(name=KafkaConfiguration.FETCH_PARTITION_MAX_BYTES_PROPERTY, value="123000"),
+        @Configure(name=KafkaConfiguration.STREAMING_CACHE_PARTITION_CAPACITY_PROPERTY, value="65536"),
+        @Configure(name=KafkaConfiguration.SLOW_CONSUMER_MAX_LAG_PROPERTY, value="1")
+    })
+    public void shouldParkSlowConsumerOnStreamingCacheUpToMaxLag() throws Exception
+    {
+        k3po.start();
+        k3po.awaitBarrier("CLIENT_ONE_CONNECTED");
+        awaitWindowFromClient();
+        k3po.notifyBarrier("SERVER_DELIVER_LIVE_RESPONSE_ONE");
+        k3po.awaitBarrier("CLIENT_TWO_RECEIVED_SECOND_MESSAGE");
+        awaitWindowFromClient();
+        k3po.notifyBarrier("SERVER_DELIVER_LIVE_RESPONSE_TWO");
+        k3po.finish();
+        assertEquals(1, counters.slowConsumerParked());
+        assertEquals(0, counters.slowConsumerFallbacks());
+    }
+
+    @Test
+    @Specification({
+        "${route}/client/controller",
+        "${localClient}/zero.offset.messages.late.client/client",
+        "${localServer}/zero.offset.messages.late.client/server"})
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    @Configures({
+        @Configure(name=KafkaConfiguration.FETCH_PARTITION_MAX_BYTES_PROPERTY, value="123000"),
+        @Configure(name=KafkaConfiguration.STREAMING_CACHE_PARTITION_CAPACITY_PROPERTY, value="65536"),
+        @Configure(name=KafkaConfiguration.SLOW_CONSUMER_MAX_LAG_PROPERTY, value="3")
+    })
+    public void shouldReplayStreamingCacheToLateClientWithinMaxLag() throws Exception
+    {
+        k3po.finish();
+        assertEquals(0, counters.slowConsumerFallbacks());
+    }
+
+    @Test
+    @Specification({
+        "${route}/client/controller",
+        "${localClient}/zero.offset.messages.late.client/client",
+        "${localServer}/zero.offset.messages.late.client.historical/server"})
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    @Configures({
+        @Configure(name=KafkaConfiguration.FETCH_PARTITION_MAX_BYTES_PROPERTY, value="123000"),
+        @Configure(name=KafkaConfiguration.STREAMING_CACHE_PARTITION_CAPACITY_PROPERTY, value="65536"),
+        @Configure(name=KafkaConfiguration.SLOW_CONSUMER_MAX_LAG_PROPERTY, value="2")
+    })
+    public void shouldFallBackToHistoricalFetchWhenLateClientExceedsMaxLag() throws Exception
+    {
+        k3po.finish();
+        assertEquals(1, counters.slowConsumerFallbacks());
+    }
+
     @Test
     @Specification({
         "${route}/client/controller",
@@ -918,6 +981,9 @@ public class CachingFetchIT
         k3po.awaitBarrier("CLIENT_TWO_CONNECTED");
         k3po.notifyBarrier("SERVER_DELIVER_RESPONSE");
         k3po.finish();
+
+        // second subscriber hits the encode cache filled by the DATA frames of the first
+        assertEquals(2, counters.dispatchEncodeCacheHits());
     }
 
     @Test
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.reaktivity.nukleus.kafka.internal.stream.ClusterMetadata.TopicEntry;
+import org.reaktivity.nukleus.kafka.internal.stream.NetworkConnectionPool.BrokerMetadata;
+
+public final class ClusterMetadataTest
+{
+    private final ClusterMetadata metadata = new ClusterMetadata(1000L);
+
+    private final BrokerMetadata[] brokers = new BrokerMetadata[]
+    {
+        new BrokerMetadata(1, "broker1", 9092),
+        new BrokerMetadata(2, "broker2", 9092)
+    };
+
+    @Test
+    public void shouldServeTopicMetadataWithinTimeToLive()
+    {
+        metadata.put("test", brokers, new int[] {1, 2}, true, 500, 100L);
+
+        TopicEntry entry = metadata.get("test", 1100L);
+        assertArrayEquals(brokers, entry.brokers);
+        assertArrayEquals(new int[] {1, 2}, entry.nodeIdsByPartition);
+        assertTrue(entry.compacted);
+        assertEquals(500, entry.deleteRetentionMs);
+    }
+
+    @Test
+    public void shouldExpireTopicMetadataAfterTimeToLive()
+    {
+        metadata.put("test", brokers, new int[] {1, 2}, false, 500, 100L);
+
+        assertNull(metadata.get("test", 1101L));
+        assertNull(metadata.get("test", 100L));
+    }
+
+    @Test
+    public void shouldNotServeInvalidatedTopicMetadata()
+    {
+        metadata.put("test", brokers, new int[] {1, 2}, false, 500, 100L);
+        metadata.invalidate("test");
+
+        assertNull(metadata.get("test", 100L));
+    }
+
+    @Test
+    public void shouldNotShareChangesToPublishedArrays()
+    {
+        int[] nodeIdsByPartition = new int[] {1, 2};
+        metadata.put("test", brokers, nodeIdsByPartition, false, 500, 100L);
+        nodeIdsByPartition[1] = -1;
+        brokers[1] = null;
+
+        TopicEntry entry = metadata.get("test", 100L);
+        assertEquals(2, entry.nodeIdsByPartition[1]);
+        assertEquals(2, entry.brokers[1].nodeId);
+    }
+}
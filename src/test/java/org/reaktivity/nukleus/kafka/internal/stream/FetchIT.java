@@ -38,8 +38,10 @@ public class FetchIT
             .addScriptRoot("routeAnyTopic", "org/reaktivity/specification/nukleus/kafka/control/route")
             .addScriptRoot("control", "org/reaktivity/specification/nukleus/kafka/control")
             .addScriptRoot("server", "org/reaktivity/specification/kafka/fetch.v5")
+            .addScriptRoot("localServer", "org/reaktivity/nukleus/kafka/internal/stream/fetch.v5")
             .addScriptRoot("metadata", "org/reaktivity/specification/kafka/metadata.v5")
-            .addScriptRoot("client", "org/reaktivity/specification/nukleus/kafka/streams/fetch");
+            .addScriptRoot("client", "org/reaktivity/specification/nukleus/kafka/streams/fetch")
+            .addScriptRoot("localClient", "org/reaktivity/nukleus/kafka/internal/stream/streams/fetch");
 
     private final TestRule timeout = new DisableOnDebug(new Timeout(10, SECONDS));
 
@@ -1442,6 +1444,110 @@ public class FetchIT
         k3po.finish();
     }
 
+    @Test
+    @Configure(name=KafkaConfiguration.METADATA_PARTITION_REFRESH_PROPERTY, value="true")
+    @Specification({
+        "${routeAnyTopic}/client/controller",
+        "${client}/zero.offset.message.two.topics/client",
+        "${localServer}/live.fetch.error.recovered.partition.refresh/server" })
+    @ScriptProperty({
+    "networkAccept \"nukleus://target/streams/kafka\"",
+    "errorCode 6s"
+    })
+    public void shouldRefreshPartitionLeaderOnlyAfterLeadershipElection() throws Exception
+    {
+        k3po.start();
+        k3po.awaitBarrier("FIRST_FETCH_REQUEST_RECEIVED");
+        k3po.notifyBarrier("CONNECT_CLIENT_TWO");
+        k3po.awaitBarrier("CLIENT_TWO_CONNECTED");
+        awaitWindowFromClient();
+        k3po.notifyBarrier("WRITE_FIRST_FETCH_RESPONSE");
+        k3po.finish();
+    }
+
+    @Test
+    @Configure(name=KafkaConfiguration.METADATA_REFRESH_INTERVAL_MS_PROPERTY, value="100")
+    @Specification({
+        "${route}/client/controller",
+        "${client}/zero.offset.message/client",
+        "${localServer}/zero.offset.message.metadata.refreshed/server" })
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    public void shouldRefreshPartitionLeadersPeriodically() throws Exception
+    {
+        k3po.start();
+        k3po.notifyBarrier("WRITE_FETCH_RESPONSE");
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+        "${route}/client/controller",
+        "${localClient}/timestamp.offset.message/client",
+        "${localServer}/timestamp.offset.message/server" })
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    public void shouldReceiveMessageAtTimestampOffsetFromListOffsets() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+        "${route}/client/controller",
+        "${localClient}/timestamp.offset.message/client",
+        "${localServer}/timestamp.offset.message.list.offsets.error/server" })
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    public void shouldLookUpTimestampOffsetAgainAfterListOffsetsError() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+        "${route}/client/controller",
+        "${localClient}/timestamp.offset.messages.multiple.partitions/client",
+        "${localServer}/timestamp.offset.messages.multiple.nodes/server" })
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    public void shouldFetchOnlyAfterTimestampOffsetsOfAllPartitionsAreResolved() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Configure(name=KafkaConfiguration.CLIENT_RACK_PROPERTY, value="rack1")
+    @Specification({
+        "${route}/client/controller",
+        "${client}/zero.offset.message/client",
+        "${localServer}/zero.offset.message.preferred.replica/server" })
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    public void shouldFetchFromPreferredReadReplica() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Configure(name=KafkaConfiguration.CLIENT_RACK_PROPERTY, value="rack1")
+    @Specification({
+        "${route}/client/controller",
+        "${client}/zero.offset.message/client",
+        "${localServer}/zero.offset.message.preferred.replica.fallback/server" })
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    public void shouldFallBackToLeaderWhenPreferredReadReplicaFails() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Configure(name=KafkaConfiguration.READ_COMMITTED_PROPERTY, value="true")
+    @Specification({
+        "${route}/client/controller",
+        "${localClient}/zero.offset.messages.read.committed/client",
+        "${localServer}/zero.offset.messages.read.committed/server" })
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    public void shouldSkipAbortedTransactionsAndControlBatchesWhenReadCommitted() throws Exception
+    {
+        k3po.finish();
+    }
+
     @Test
     @Specification({
         "${routeAnyTopic}/client/controller",
@@ -30,6 +30,7 @@ import org.kaazing.k3po.junit.rules.K3poRule;
 import org.reaktivity.nukleus.kafka.internal.KafkaConfiguration;
 import org.reaktivity.reaktor.internal.ReaktorConfiguration;
 import org.reaktivity.reaktor.test.ReaktorRule;
+import org.reaktivity.reaktor.test.annotation.Configure;
 
 public class FetchLimitsIT
 {
@@ -38,7 +39,9 @@ public class FetchLimitsIT
             .addScriptRoot("routeAnyTopic", "org/reaktivity/specification/nukleus/kafka/control/route")
             .addScriptRoot("server", "org/reaktivity/specification/kafka/fetch.v5")
             .addScriptRoot("metadata", "org/reaktivity/specification/kafka/metadata.v5")
-            .addScriptRoot("client", "org/reaktivity/specification/nukleus/kafka/streams/fetch");
+            .addScriptRoot("client", "org/reaktivity/specification/nukleus/kafka/streams/fetch")
+            .addScriptRoot("localServer", "org/reaktivity/nukleus/kafka/internal/stream/fetch.v5")
+            .addScriptRoot("localClient", "org/reaktivity/nukleus/kafka/internal/stream/streams/fetch");
 
     private final TestRule timeout = new DisableOnDebug(new Timeout(10, SECONDS));
 
@@ -181,4 +184,19 @@ public class FetchLimitsIT
     {
         k3po.finish();
     }
+
+    @Test
+    @Specification({
+        "${route}/client/controller",
+        "${localClient}/zero.offset.messages.multiple.partitions.large/client",
+        "${localServer}/record.too.large.fetched.again/server"})
+    @ScriptProperty({
+        "networkAccept \"nukleus://target/streams/kafka\"",
+        "applicationConnectWindow \"200\""
+    })
+    @Configure(name=KafkaConfiguration.FETCH_MESSAGE_MAX_BYTES_PROPERTY, value="1024")
+    public void shouldFetchRecordLargerThanFetchPartitionMaxBytesAgainAndDeliverItInFragments() throws Exception
+    {
+        k3po.finish();
+    }
 }
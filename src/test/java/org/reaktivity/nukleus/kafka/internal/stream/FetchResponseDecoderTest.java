@@ -0,0 +1,678 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+import org.reaktivity.nukleus.kafka.internal.types.OctetsFW;
+
+public final class FetchResponseDecoderTest
+{
+    private static final int DECODING_BUFFER_CAPACITY = 1024;
+    private static final int RESPONSE_HEADER_SIZE = 16;
+    private static final int PARTITION_RESPONSE_SIZE = 34;
+    private static final int RECORD_SET_SIZE = 4;
+    private static final int V11_RESPONSE_HEADER_EXTRA_SIZE = 6;
+    private static final int V11_PARTITION_RESPONSE_EXTRA_SIZE = 4;
+    private static final int TRANSACTIONAL = 0x10;
+    private static final int CONTROL = 0x20;
+
+    private final MutableDirectBuffer frameBuffer = new UnsafeBuffer(new byte[64 * 1024]);
+    private final OctetsFW payload = new OctetsFW();
+    private final List<String> dispatched = new ArrayList<>();
+    private final long[] bytesCopied = new long[1];
+
+    private FetchResponseDecoder decoder = newDecoder(false, DECODING_BUFFER_CAPACITY, 0);
+
+    private byte[] response;
+    private boolean responseRackAware;
+    private int encodeLimit;
+
+    @Test
+    public void shouldDecodeResponseInSingleFrameWithoutCopying()
+    {
+        encodeResponse(false, 2, 3);
+
+        decodeFrames(response.length);
+
+        assertEquals(expectedDispatch(2, 3), dispatched);
+        assertEquals(0L, bytesCopied[0]);
+    }
+
+    @Test
+    public void shouldDecodeResponseSplitIntoUnevenFrames()
+    {
+        encodeResponse(false, 2, 3);
+
+        decodeFrames(1, 2, 3, 5, 8, 13, 21, 34, 55, 89, 144, 233, 377);
+
+        assertEquals(expectedDispatch(2, 3), dispatched);
+        assertTrue(bytesCopied[0] <= response.length);
+    }
+
+    @Test
+    public void shouldDecodeResponseSplitIntoSingleByteFrames()
+    {
+        encodeResponse(false, 2, 3);
+
+        final int[] frames = new int[response.length];
+        Arrays.fill(frames, 1);
+        decodeFrames(frames);
+
+        assertEquals(expectedDispatch(2, 3), dispatched);
+    }
+
+    @Test
+    public void shouldCopyOnlyRecordSetSpanningFrames()
+    {
+        encodeResponse(false, 1, 3);
+        final int recordSetOffset = recordSetOffset(0);
+        final int recordSetSize = recordSetSize(0);
+
+        decodeFrames(recordSetOffset + 10, 50, response.length);
+
+        assertEquals(expectedDispatch(1, 3), dispatched);
+        assertEquals(recordSetSize, bytesCopied[0]);
+    }
+
+    @Test
+    public void shouldDecodeRecordSetSpanningManyFrames()
+    {
+        encodeResponse(false, 2, 3);
+        final int recordSetSize = recordSetSize(0);
+
+        decodeFrames(recordSetOffset(0) + 1, 40, 40, 40, 40, 40, 40, 40, 40, 40, response.length);
+
+        assertEquals(expectedDispatch(2, 3), dispatched);
+        assertTrue(bytesCopied[0] >= recordSetSize && bytesCopied[0] < response.length);
+    }
+
+    @Test
+    public void shouldCompletePartialPartitionHeaderFromNextFrame()
+    {
+        encodeResponse(false, 2, 3);
+        final int partialHeaderBytes = 7;
+        final int firstFrame = partitionResponseOffset(1) + partialHeaderBytes;
+
+        decodeFrames(firstFrame, response.length);
+
+        assertEquals(expectedDispatch(2, 3), dispatched);
+        assertEquals(partialHeaderBytes + Math.min(256, response.length - firstFrame), bytesCopied[0]);
+    }
+
+    @Test
+    public void shouldDecodeConsecutiveResponsesSplitAcrossFrames()
+    {
+        encodeResponse(false, 2, 3);
+
+        decodeFrames(recordSetOffset(1) + 3, response.length);
+        decodeFrames(partitionResponseOffset(1) + 1, 17, response.length);
+
+        final List<String> expected = new ArrayList<>(expectedDispatch(2, 3));
+        expected.addAll(expectedDispatch(2, 3));
+        assertEquals(expected, dispatched);
+    }
+
+    @Test
+    public void shouldFetchOversizedRecordSetAgainThenDecodeItInEnlargedBuffer()
+    {
+        encodeResponse(false, 1, 3);
+        final int recordSetSize = recordSetSize(0);
+        decoder = newDecoder(false, 256, 4096);
+
+        final List<String> oversized = new ArrayList<>();
+        oversized.add("highWatermark test 0 0 3");
+        oversized.add(String.format("oversized test 0 0 %d", recordSetSize));
+        oversized.add("flush 0 0 0");
+
+        // the decoding buffer is only enlarged for the response following an oversized record set
+        for (int i = 0; i < 2; i++)
+        {
+            dispatched.clear();
+            decodeFrames(response.length);
+
+            assertEquals(oversized, dispatched);
+
+            dispatched.clear();
+            decodeFrames(recordSetOffset(0) + 1, 100, response.length);
+
+            assertEquals(expectedDispatch(1, 3), dispatched);
+        }
+    }
+
+    @Test
+    public void shouldSkipOversizedRecordSetExceedingMaxMessageBytes()
+    {
+        encodeResponse(false, 1, 3);
+        decoder = newDecoder(false, 256, 0);
+
+        decodeFrames(response.length);
+        decodeFrames(response.length);
+
+        final List<String> expected = new ArrayList<>();
+        expected.add("highWatermark test 0 0 3");
+        expected.add("flush 0 0 1");
+        expected.addAll(expected);
+        assertEquals(expected, dispatched);
+    }
+
+    @Test
+    public void shouldDecodePreferredReadReplicaFromV11PartitionResponse()
+    {
+        decoder = newDecoder(true, DECODING_BUFFER_CAPACITY, 0);
+        encodeResponse(true, 2, 3, p -> p == 1 ? 2 : -1);
+
+        decodeFrames(response.length);
+
+        final List<String> expected = expectedDispatch(2, 3);
+        expected.add(1, "preferredReplica test 0 -1");
+        expected.add(expected.indexOf("highWatermark test 1 0 3") + 1, "preferredReplica test 1 2");
+        assertEquals(expected, dispatched);
+    }
+
+    @Test
+    public void shouldDecodeV11ResponseSplitIntoSingleByteFrames()
+    {
+        decoder = newDecoder(true, DECODING_BUFFER_CAPACITY, 0);
+        encodeResponse(true, 2, 3, p -> 1);
+
+        final int[] frames = new int[response.length];
+        Arrays.fill(frames, 1);
+        decodeFrames(frames);
+
+        final List<String> expected = expectedDispatch(2, 3);
+        expected.add(1, "preferredReplica test 0 1");
+        expected.add(expected.indexOf("highWatermark test 1 0 3") + 1, "preferredReplica test 1 1");
+        assertEquals(expected, dispatched);
+    }
+
+    @Test
+    public void shouldCompletePartialV11PartitionHeaderFromNextFrame()
+    {
+        decoder = newDecoder(true, DECODING_BUFFER_CAPACITY, 0);
+        encodeResponse(true, 2, 3, p -> 3);
+
+        // split inside the preferred read replica of the second partition
+        decodeFrames(recordSetOffset(1) - RECORD_SET_SIZE - 2, response.length);
+
+        final List<String> expected = expectedDispatch(2, 3);
+        expected.add(1, "preferredReplica test 0 3");
+        expected.add(expected.indexOf("highWatermark test 1 0 3") + 1, "preferredReplica test 1 3");
+        assertEquals(expected, dispatched);
+    }
+
+    @Test
+    public void shouldNotReportPreferredReadReplicaForPartitionInError()
+    {
+        decoder = newDecoder(true, DECODING_BUFFER_CAPACITY, 0);
+        encodeResponse(true, 1, 0, p -> 2);
+        final MutableDirectBuffer buffer = new UnsafeBuffer(response);
+        buffer.putShort(partitionResponseOffset(0) + 4, KafkaError.NOT_LEADER_FOR_PARTITION.errorCode, BIG_ENDIAN);
+
+        decodeFrames(response.length);
+
+        final List<String> expected = new ArrayList<>();
+        expected.add(String.format("error test 0 %s", KafkaError.NOT_LEADER_FOR_PARTITION));
+        expected.add("startBatch 0 0 0 -1");
+        expected.add("flush 0 0 0");
+        assertEquals(expected, dispatched);
+    }
+
+    @Test
+    public void shouldSkipAbortedTransactionsAndControlBatchesAdvancingOffset()
+    {
+        decoder = newDecoder(false, 4096, 0);
+        encodeTransactionalResponse(10L, new long[][] { { 7L, 2L } }, transactionalRecordBatches());
+
+        decodeFrames(response.length);
+
+        final List<String> expected = new ArrayList<>();
+        expected.add("highWatermark test 0 0 10");
+        expected.add("startBatch 0 0 0 1");
+        expected.add(expectedRecord(0, 0));
+        expected.add(expectedRecord(0, 1));
+        expected.add("flush 0 0 4");
+        expected.add("flush 0 0 5");
+        expected.add("startBatch 0 0 5 6");
+        expected.add(expectedRecord(0, 5));
+        expected.add(expectedRecord(0, 6));
+        expected.add("flush 0 0 8");
+        expected.add("startBatch 0 0 8 9");
+        expected.add(expectedRecord(0, 8));
+        expected.add(expectedRecord(0, 9));
+        expected.add("flush 0 0 10");
+        assertEquals(expected, dispatched);
+    }
+
+    @Test
+    public void shouldSkipOnlyControlBatchesWhenNoTransactionsAborted()
+    {
+        decoder = newDecoder(false, 4096, 0);
+        encodeTransactionalResponse(10L, new long[0][], transactionalRecordBatches());
+
+        decodeFrames(response.length);
+
+        final List<String> expected = new ArrayList<>();
+        expected.add("highWatermark test 0 0 10");
+        expected.add("startBatch 0 0 0 1");
+        expected.add(expectedRecord(0, 0));
+        expected.add(expectedRecord(0, 1));
+        expected.add("startBatch 0 0 2 3");
+        expected.add(expectedRecord(0, 2));
+        expected.add(expectedRecord(0, 3));
+        expected.add("flush 0 0 5");
+        expected.add("startBatch 0 0 5 6");
+        expected.add(expectedRecord(0, 5));
+        expected.add(expectedRecord(0, 6));
+        expected.add("flush 0 0 8");
+        expected.add("startBatch 0 0 8 9");
+        expected.add(expectedRecord(0, 8));
+        expected.add(expectedRecord(0, 9));
+        expected.add("flush 0 0 10");
+        assertEquals(expected, dispatched);
+    }
+
+    private FetchResponseDecoder newDecoder(
+        boolean rackAware,
+        int decodingBufferCapacity,
+        int maxMessageBytes)
+    {
+        return new FetchResponseDecoder(
+                t -> new RecordingDispatcher(t),
+                (t, p) -> 0L,
+                (t, p, o) -> o,
+                (t, p, o, h) -> dispatched.add(String.format("highWatermark %s %d %d %d", t, p, o, h)),
+                (t, p, e) -> dispatched.add(String.format("error %s %d %s", t, p, e)),
+                (t, p, o, s) -> dispatched.add(String.format("oversized %s %d %d %d", t, p, o, s)),
+                (t, p, r) -> dispatched.add(String.format("preferredReplica %s %d %d", t, p, r)),
+                rackAware,
+                maxMessageBytes,
+                new UnsafeBuffer(new byte[decodingBufferCapacity]),
+                v -> bytesCopied[0] += v,
+                null,
+                null);
+    }
+
+    // Decodes the response in frames of the given sizes, the last frame holding any remaining bytes
+    private void decodeFrames(
+        int... frameSizes)
+    {
+        int offset = 0;
+        for (int i = 0; i < frameSizes.length && offset < response.length; i++)
+        {
+            final int length = Math.min(frameSizes[i], response.length - offset);
+
+            // frames are not retained by the decoder, so reuse and overwrite the same frame buffer
+            frameBuffer.setMemory(0, frameBuffer.capacity(), (byte) 0xff);
+            frameBuffer.putBytes(0, response, offset, length);
+            payload.wrap(frameBuffer, 0, length);
+            offset += length;
+
+            final int result = decoder.decode(payload, 0L);
+            assertEquals(offset == response.length, result >= 0);
+        }
+        assertEquals(response.length, offset);
+    }
+
+    private List<String> expectedDispatch(
+        int partitionCount,
+        int recordCount)
+    {
+        final List<String> expected = new ArrayList<>();
+        for (int partition = 0; partition < partitionCount; partition++)
+        {
+            expected.add(String.format("highWatermark test %d 0 %d", partition, recordCount));
+            expected.add(String.format("startBatch %d 0 0 %d", partition, recordCount - 1));
+            for (int record = 0; record < recordCount; record++)
+            {
+                expected.add(String.format("dispatch %d %d %s %s", partition, record, key(record), value(partition, record)));
+            }
+            expected.add(String.format("flush %d 0 %d", partition, recordCount));
+        }
+        return expected;
+    }
+
+    private static String expectedRecord(
+        int partition,
+        long offset)
+    {
+        return String.format("dispatch %d %d %s %s", partition, offset, key((int) offset), value(partition, (int) offset));
+    }
+
+    // Record batches as first offset, attributes, producer id and record count
+    private static long[][] transactionalRecordBatches()
+    {
+        return new long[][]
+        {
+            { 0L, 0, -1L, 2 },                      // not transactional
+            { 2L, TRANSACTIONAL, 7L, 2 },           // aborted when reported in the response
+            { 4L, TRANSACTIONAL | CONTROL, 7L, 1 }, // abort marker
+            { 5L, TRANSACTIONAL, 8L, 2 },           // committed
+            { 7L, TRANSACTIONAL | CONTROL, 8L, 1 }, // commit marker
+            { 8L, TRANSACTIONAL, 7L, 2 }            // committed, after the abort marker
+        };
+    }
+
+    private void encodeResponse(
+        boolean rackAware,
+        int partitionCount,
+        int recordCount)
+    {
+        encodeResponse(rackAware, partitionCount, recordCount, p -> -1);
+    }
+
+    private void encodeResponse(
+        boolean rackAware,
+        int partitionCount,
+        int recordCount,
+        IntUnaryOperator preferredReadReplica)
+    {
+        responseRackAware = rackAware;
+        final MutableDirectBuffer buffer = new UnsafeBuffer(new byte[16 * 1024]);
+        encodeLimit = 4;                            // size, set last
+        putInt(buffer, 1);                          // correlation id
+        putInt(buffer, 0);                          // throttle time
+        if (rackAware)
+        {
+            putShort(buffer, (short) 0);            // error code
+            putInt(buffer, 0);                      // session id
+        }
+        putInt(buffer, 1);                          // topic count
+        putString(buffer, "test");
+        putInt(buffer, partitionCount);
+        for (int partition = 0; partition < partitionCount; partition++)
+        {
+            putInt(buffer, partition);
+            putShort(buffer, (short) 0);            // error code
+            putLong(buffer, recordCount);           // high watermark
+            putLong(buffer, -1L);                   // last stable offset
+            putLong(buffer, 0L);                    // log start offset
+            putInt(buffer, -1);                     // aborted transactions (null)
+            if (rackAware)
+            {
+                putInt(buffer, preferredReadReplica.applyAsInt(partition));
+            }
+            final int recordSetSizeAt = encodeLimit;
+            putInt(buffer, 0);                      // record set size, set below
+            final int recordSetAt = encodeLimit;
+            putRecordBatch(buffer, partition, 0L, (short) 0, -1L, recordCount);
+            buffer.putInt(recordSetSizeAt, encodeLimit - recordSetAt, BIG_ENDIAN);
+        }
+        buffer.putInt(0, encodeLimit - 4, BIG_ENDIAN);
+        response = new byte[encodeLimit];
+        buffer.getBytes(0, response);
+    }
+
+    // Encodes a response for partition 0 reporting the given aborted transactions, as producer id and first offset,
+    // and a record set of the given record batches
+    private void encodeTransactionalResponse(
+        long highWatermark,
+        long[][] abortedTransactions,
+        long[][] recordBatches)
+    {
+        responseRackAware = false;
+        final MutableDirectBuffer buffer = new UnsafeBuffer(new byte[16 * 1024]);
+        encodeLimit = 4;                            // size, set last
+        putInt(buffer, 1);                          // correlation id
+        putInt(buffer, 0);                          // throttle time
+        putInt(buffer, 1);                          // topic count
+        putString(buffer, "test");
+        putInt(buffer, 1);                          // partition count
+        putInt(buffer, 0);                          // partition
+        putShort(buffer, (short) 0);                // error code
+        putLong(buffer, highWatermark);
+        putLong(buffer, highWatermark);             // last stable offset
+        putLong(buffer, 0L);                        // log start offset
+        putInt(buffer, abortedTransactions.length);
+        for (long[] abortedTransaction : abortedTransactions)
+        {
+            putLong(buffer, abortedTransaction[0]); // producer id
+            putLong(buffer, abortedTransaction[1]); // first offset
+        }
+        final int recordSetSizeAt = encodeLimit;
+        putInt(buffer, 0);                          // record set size, set below
+        final int recordSetAt = encodeLimit;
+        for (long[] recordBatch : recordBatches)
+        {
+            putRecordBatch(buffer, 0, recordBatch[0], (short) recordBatch[1], recordBatch[2], (int) recordBatch[3]);
+        }
+        buffer.putInt(recordSetSizeAt, encodeLimit - recordSetAt, BIG_ENDIAN);
+        buffer.putInt(0, encodeLimit - 4, BIG_ENDIAN);
+        response = new byte[encodeLimit];
+        buffer.getBytes(0, response);
+    }
+
+    private void putRecordBatch(
+        MutableDirectBuffer buffer,
+        int partition,
+        long firstOffset,
+        short attributes,
+        long producerId,
+        int recordCount)
+    {
+        final int recordBatchAt = encodeLimit;
+        putLong(buffer, firstOffset);
+        putInt(buffer, 0);                          // length, set below
+        putInt(buffer, 0);                          // leader epoch
+        buffer.putByte(encodeLimit++, (byte) 2);    // magic
+        putInt(buffer, 0);                          // crc
+        putShort(buffer, attributes);
+        putInt(buffer, recordCount - 1);            // last offset delta
+        putLong(buffer, 1000L);                     // first timestamp
+        putLong(buffer, 1000L);                     // max timestamp
+        putLong(buffer, producerId);
+        putShort(buffer, (short) -1);               // producer epoch
+        putInt(buffer, -1);                         // first sequence
+        putInt(buffer, recordCount);
+        for (int record = 0; record < recordCount; record++)
+        {
+            final int offset = (int) firstOffset + record;
+            putRecord(buffer, record, key(offset), value(partition, offset));
+        }
+        buffer.putInt(recordBatchAt + 8, encodeLimit - recordBatchAt - 12, BIG_ENDIAN);
+    }
+
+    private void putRecord(
+        MutableDirectBuffer buffer,
+        int offsetDelta,
+        String key,
+        String value)
+    {
+        final MutableDirectBuffer record = new UnsafeBuffer(new byte[1024]);
+        int limit = 0;
+        record.putByte(limit++, (byte) 0);          // attributes
+        limit = putVarint(record, limit, 0);        // timestamp delta
+        limit = putVarint(record, limit, offsetDelta);
+        limit = putVarint(record, limit, key.length());
+        limit += record.putStringWithoutLengthUtf8(limit, key);
+        limit = putVarint(record, limit, value.length());
+        limit += record.putStringWithoutLengthUtf8(limit, value);
+        limit = putVarint(record, limit, 0);        // header count
+
+        encodeLimit = putVarint(buffer, encodeLimit, limit);
+        buffer.putBytes(encodeLimit, record, 0, limit);
+        encodeLimit += limit;
+    }
+
+    private int partitionResponseOffset(
+        int partition)
+    {
+        int offset = RESPONSE_HEADER_SIZE + 2 + "test".length() + 4;
+        if (responseRackAware)
+        {
+            offset += V11_RESPONSE_HEADER_EXTRA_SIZE;
+        }
+        for (int i = 0; i < partition; i++)
+        {
+            offset += partitionResponseSize() + RECORD_SET_SIZE + recordSetSize(i);
+        }
+        return offset;
+    }
+
+    private int recordSetOffset(
+        int partition)
+    {
+        return partitionResponseOffset(partition) + partitionResponseSize() + RECORD_SET_SIZE;
+    }
+
+    private int partitionResponseSize()
+    {
+        return responseRackAware ? PARTITION_RESPONSE_SIZE + V11_PARTITION_RESPONSE_EXTRA_SIZE : PARTITION_RESPONSE_SIZE;
+    }
+
+    private int recordSetSize(
+        int partition)
+    {
+        return new UnsafeBuffer(response).getInt(partitionResponseOffset(partition) + partitionResponseSize(), BIG_ENDIAN);
+    }
+
+    private void putString(
+        MutableDirectBuffer buffer,
+        String value)
+    {
+        putShort(buffer, (short) value.length());
+        encodeLimit += buffer.putStringWithoutLengthUtf8(encodeLimit, value);
+    }
+
+    private void putShort(
+        MutableDirectBuffer buffer,
+        short value)
+    {
+        buffer.putShort(encodeLimit, value, BIG_ENDIAN);
+        encodeLimit += Short.BYTES;
+    }
+
+    private void putInt(
+        MutableDirectBuffer buffer,
+        int value)
+    {
+        buffer.putInt(encodeLimit, value, BIG_ENDIAN);
+        encodeLimit += Integer.BYTES;
+    }
+
+    private void putLong(
+        MutableDirectBuffer buffer,
+        long value)
+    {
+        buffer.putLong(encodeLimit, value, BIG_ENDIAN);
+        encodeLimit += Long.BYTES;
+    }
+
+    private static int putVarint(
+        MutableDirectBuffer buffer,
+        int offset,
+        int value)
+    {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7f) != 0)
+        {
+            buffer.putByte(offset++, (byte) ((zigzag & 0x7f) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.putByte(offset++, (byte) zigzag);
+        return offset;
+    }
+
+    private static String key(
+        int record)
+    {
+        return "key" + record;
+    }
+
+    private static String value(
+        int partition,
+        int record)
+    {
+        final StringBuilder value = new StringBuilder();
+        while (value.length() < 100)
+        {
+            value.append(String.format("value-%d-%d ", partition, record));
+        }
+        return value.toString();
+    }
+
+    private static String asString(
+        DirectBuffer buffer)
+    {
+        return buffer == null ? null : buffer.getStringWithoutLengthUtf8(0, buffer.capacity());
+    }
+
+    private final class RecordingDispatcher implements DecoderMessageDispatcher
+    {
+        private final String topicName;
+
+        private RecordingDispatcher(
+            String topicName)
+        {
+            this.topicName = topicName;
+        }
+
+        @Override
+        public void startOffset(
+            int partition,
+            long lowWatermark)
+        {
+            dispatched.add(String.format("startOffset %s %d %d", topicName, partition, lowWatermark));
+        }
+
+        @Override
+        public void startBatch(
+            int partition,
+            long requestOffset,
+            long firstOffset,
+            long lastOffset)
+        {
+            dispatched.add(String.format("startBatch %d %d %d %d", partition, requestOffset, firstOffset, lastOffset));
+        }
+
+        @Override
+        public int dispatch(
+            int partition,
+            long requestOffset,
+            long messageOffset,
+            long highWatermark,
+            DirectBuffer key,
+            HeadersFW headers,
+            long timestamp,
+            long traceId,
+            DirectBuffer value)
+        {
+            dispatched.add(String.format("dispatch %d %d %s %s", partition, messageOffset, asString(key), asString(value)));
+            return 0;
+        }
+
+        @Override
+        public void flush(
+            int partition,
+            long requestOffset,
+            long lastOffset)
+        {
+            dispatched.add(String.format("flush %d %d %d", partition, requestOffset, lastOffset));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import static java.nio.ByteBuffer.allocateDirect;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.reaktivity.nukleus.kafka.internal.test.TestUtil.asOctets;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.reaktivity.nukleus.kafka.internal.types.KafkaHeaderFW;
+import org.reaktivity.nukleus.kafka.internal.types.ListFW;
+import org.reaktivity.nukleus.kafka.internal.types.codec.fetch.HeaderFW;
+
+/*
+ * Measures HeadersFW.matches as used when filtering cached messages during replay.
+ * Run with the GC profiler (see main) to verify gc.alloc.rate.norm is 0 B/op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(3)
+@Warmup(iterations = 5, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+public class HeadersFWBenchmark
+{
+    private final HeadersFW headersRO = new HeadersFW();
+
+    private MutableDirectBuffer rawHeaders;
+    private int limit;
+
+    private ListFW<KafkaHeaderFW> matchingConditions;
+    private ListFW<KafkaHeaderFW> nonMatchingConditions;
+
+    @Setup
+    public void setup()
+    {
+        final HeaderFW.Builder headerRW = new HeaderFW.Builder();
+        rawHeaders = new UnsafeBuffer(allocateDirect(1000));
+        int position = 0;
+        for (int i = 0; i < 8; i++)
+        {
+            final String name = "header" + i;
+            final String value = "value" + i;
+            position = headerRW.wrap(rawHeaders, position, rawHeaders.capacity())
+                    .keyLen(name.length())
+                    .key(asOctets(name))
+                    .valueLen(value.length())
+                    .value(asOctets(value))
+                    .build().limit();
+        }
+        limit = position;
+
+        matchingConditions =
+            new ListFW.Builder<KafkaHeaderFW.Builder, KafkaHeaderFW>(new KafkaHeaderFW.Builder(), new KafkaHeaderFW())
+                .wrap(new UnsafeBuffer(new byte[100]), 0, 100)
+                .item(b -> b.key("header3").value(asOctets("value3")))
+                .item(b -> b.key("header7").value(asOctets("value7")))
+                .build();
+
+        nonMatchingConditions =
+            new ListFW.Builder<KafkaHeaderFW.Builder, KafkaHeaderFW>(new KafkaHeaderFW.Builder(), new KafkaHeaderFW())
+                .wrap(new UnsafeBuffer(new byte[100]), 0, 100)
+                .item(b -> b.key("header3").value(asOctets("value3")))
+                .item(b -> b.key("header7").value(asOctets("junk")))
+                .build();
+    }
+
+    @Benchmark
+    public boolean matchAllConditions()
+    {
+        return headersRO.wrap(rawHeaders, 0, limit).matches(matchingConditions);
+    }
+
+    @Benchmark
+    public boolean failLastCondition()
+    {
+        return headersRO.wrap(rawHeaders, 0, limit).matches(nonMatchingConditions);
+    }
+
+    public static void main(
+        String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(HeadersFWBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .forks(0)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -19,9 +19,15 @@ import static java.nio.ByteBuffer.allocateDirect;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.reaktivity.nukleus.kafka.internal.stream.MessageDispatcher.FLAGS_DELIVERED;
 import static org.reaktivity.nukleus.kafka.internal.test.TestUtil.asOctets;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
@@ -83,6 +89,66 @@ public final class HeadersFWTest
         assertFalse(header.hasNext());
     }
 
+    @Test
+    public void shouldIterateOverNestedHeaderLookups()
+    {
+        headersRO.wrap(rawHeaders,  offset, position);
+        Iterator<DirectBuffer> header1 = headersRO.headerSupplier().apply(TestUtil.asBuffer("header1"));
+        assertTrue(header1.hasNext());
+        assertMatches("value1", header1.next());
+
+        Iterator<DirectBuffer> header2 = headersRO.headerSupplier().apply(TestUtil.asBuffer("header2"));
+        assertMatches("value1", header2.next());
+        assertFalse(header2.hasNext());
+
+        assertTrue(header1.hasNext());
+        assertMatches("value2", header1.next());
+        assertFalse(header1.hasNext());
+    }
+
+    @Test
+    public void shouldRouteThroughMoreSiblingAndNestedHeaderLookupsThanInitialDepth()
+    {
+        final HeadersMessageDispatcher dispatcher = new HeadersMessageDispatcher(HeaderValueMessageDispatcher::new);
+        final Set<String> expected = new HashSet<>();
+        final Set<String> delivered = new HashSet<>();
+        for (String outer : new String[] { "a", "b", "c" })
+        {
+            for (int i = 0; i < 10; i++)
+            {
+                final String name = outer + i;
+                dispatcher.add(conditions("outer", outer, "header" + i, "value"), recording(name, delivered));
+                if (!"c".equals(outer))
+                {
+                    expected.add(name);
+                }
+            }
+        }
+
+        final MutableDirectBuffer buffer = new UnsafeBuffer(allocateDirect(1000));
+        int limit = putHeader(buffer, 0, "outer", "a");
+        limit = putHeader(buffer, limit, "outer", "b");
+        for (int i = 0; i < 10; i++)
+        {
+            limit = putHeader(buffer, limit, "header" + i, "value");
+        }
+        headersRO.wrap(buffer, 0, limit);
+
+        dispatcher.dispatch(0, 0L, 0L, null, headersRO.headerSupplier(), 0L, 0L, null);
+
+        assertEquals(expected, delivered);
+    }
+
+    @Test
+    public void shouldReindexHeadersWhenRewrapped()
+    {
+        headersRO.wrap(rawHeaders,  offset, position);
+        assertTrue(headersRO.headerSupplier().apply(TestUtil.asBuffer("header2")).hasNext());
+
+        headersRO.wrap(rawHeaders, offset, offset);
+        assertFalse(headersRO.headerSupplier().apply(TestUtil.asBuffer("header2")).hasNext());
+    }
+
     @Test
     public void shouldMatchSingleHeaderConditionOnMultiplyOccuringHeader()
     {
@@ -223,6 +289,82 @@ public final class HeadersFWTest
         assertFalse(headersRO.matches(headerConditions));
     }
 
+    private int putHeader(
+        MutableDirectBuffer buffer,
+        int offset,
+        String key,
+        String value)
+    {
+        return headerRW.wrap(buffer, offset, buffer.capacity())
+                .keyLen(key.length())
+                .key(asOctets(key))
+                .valueLen(value.length())
+                .value(asOctets(value))
+                .build().limit();
+    }
+
+    private static Iterator<KafkaHeaderFW> conditions(
+        String... keysAndValues)
+    {
+        final List<KafkaHeaderFW> conditions = new ArrayList<>();
+        for (int i = 0; i < keysAndValues.length; i += 2)
+        {
+            final String key = keysAndValues[i];
+            final String value = keysAndValues[i + 1];
+            conditions.add(new KafkaHeaderFW.Builder()
+                    .wrap(new UnsafeBuffer(new byte[100]), 0, 100)
+                    .key(key)
+                    .value(asOctets(value))
+                    .build());
+        }
+        return conditions.iterator();
+    }
+
+    private static MessageDispatcher recording(
+        String name,
+        Set<String> delivered)
+    {
+        return new MessageDispatcher()
+        {
+            @Override
+            public void adjustOffset(
+                int partition,
+                long oldOffset,
+                long newOffset)
+            {
+            }
+
+            @Override
+            public void detach(
+                boolean reattach)
+            {
+            }
+
+            @Override
+            public int dispatch(
+                int partition,
+                long requestOffset,
+                long messageStartOffset,
+                DirectBuffer key,
+                Function<DirectBuffer, Iterator<DirectBuffer>> supplyHeader,
+                long timestamp,
+                long traceId,
+                DirectBuffer value)
+            {
+                delivered.add(name);
+                return FLAGS_DELIVERED;
+            }
+
+            @Override
+            public void flush(
+                int partition,
+                long requestOffset,
+                long nextFetchOffset)
+            {
+            }
+        };
+    }
+
     private void assertMatches(
         String string,
         DirectBuffer buffer)
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public final class LatencyHistogramTest
+{
+    private final Map<String, long[]> gauges = new HashMap<>();
+
+    private final LatencyHistogram histogram = new LatencyHistogram(name ->
+    {
+        final long[] gauge = gauges.computeIfAbsent(name, n -> new long[1]);
+        return v -> gauge[0] += v;
+    });
+
+    @Test
+    public void shouldMapValuesToContiguousBuckets()
+    {
+        int previous = 0;
+        for (long value = 1L; value < 1_000_000L; value++)
+        {
+            final int bucket = LatencyHistogram.bucket(value);
+            assertTrue(bucket == previous || bucket == previous + 1);
+            assertTrue(value <= LatencyHistogram.highestValue(bucket));
+            previous = bucket;
+        }
+        assertEquals(LatencyHistogram.bucket(Long.MAX_VALUE), LatencyHistogram.bucket(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void shouldReportPercentilesWithinBucketPrecision()
+    {
+        for (long value = 1L; value <= 1000L; value++)
+        {
+            histogram.record(value);
+        }
+
+        final long p50 = histogram.percentile(50.0);
+        final long p99 = histogram.percentile(99.0);
+        assertTrue(p50 >= 500L && p50 <= 500L * 9 / 8);
+        assertTrue(p99 >= 990L && p99 <= 1000L);
+    }
+
+    @Test
+    public void shouldPublishIntervalPercentilesAsGauges()
+    {
+        histogram.recordMillis(2L);
+        histogram.recordMillis(2L);
+        histogram.recordMillis(40L);
+        histogram.publish();
+
+        assertEquals(40_000L, gauges.get("max")[0]);
+        assertEquals(40_000L, gauges.get("p99")[0]);
+        assertTrue(gauges.get("p50")[0] >= 2000L && gauges.get("p50")[0] <= 2250L);
+
+        histogram.recordNanos(5_000L);
+        histogram.publish();
+
+        assertEquals(5L, gauges.get("max")[0]);
+        assertEquals(5L, gauges.get("p999")[0]);
+    }
+
+    @Test
+    public void shouldRecordNegativeLatencyAsZero()
+    {
+        histogram.recordMillis(-10L);
+
+        assertEquals(0L, histogram.percentile(99.9));
+    }
+}
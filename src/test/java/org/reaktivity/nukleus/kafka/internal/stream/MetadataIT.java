@@ -36,8 +36,10 @@ public class MetadataIT
             .addScriptRoot("route", "org/reaktivity/specification/nukleus/kafka/control/route.ext")
             .addScriptRoot("routeAnyTopic", "org/reaktivity/specification/nukleus/kafka/control/route")
             .addScriptRoot("metadata", "org/reaktivity/specification/kafka/metadata.v5")
+            .addScriptRoot("localMetadata", "org/reaktivity/nukleus/kafka/internal/stream/metadata.v5")
             .addScriptRoot("server", "org/reaktivity/specification/kafka/fetch.v5")
-            .addScriptRoot("client", "org/reaktivity/specification/nukleus/kafka/streams/fetch");
+            .addScriptRoot("client", "org/reaktivity/specification/nukleus/kafka/streams/fetch")
+            .addScriptRoot("localClient", "org/reaktivity/nukleus/kafka/internal/stream/streams/fetch");
 
     private final TestRule timeout = new DisableOnDebug(new Timeout(15, SECONDS));
 
@@ -283,4 +285,28 @@ public class MetadataIT
         k3po.notifyBarrier("CONNECT_CLIENT_THREE");
         k3po.finish();
     }
+
+    @Test
+    @Configure(name=KafkaConfiguration.METADATA_REQUEST_MAX_TOPICS_PROPERTY, value="10")
+    @Specification({
+        "${routeAnyTopic}/client/controller",
+        "${localClient}/zero.offset.three.topics/client",
+        "${localMetadata}/batched.topics/server" })
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    public void shouldBatchMetadataAndDescribeConfigsRequestsForTopicsAttachedTogether() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Configure(name=KafkaConfiguration.METADATA_REQUEST_MAX_TOPICS_PROPERTY, value="10")
+    @Specification({
+        "${routeAnyTopic}/client/controller",
+        "${localClient}/zero.offset.three.topics.one.invalid/client",
+        "${localMetadata}/batched.topics.partial.response/server" })
+    @ScriptProperty("networkAccept \"nukleus://target/streams/kafka\"")
+    public void shouldBatchMetadataRequestsAndRequestTopicsMissingFromResponseAgain() throws Exception
+    {
+        k3po.finish();
+    }
 }
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public final class ReconnectBackoffTest
+{
+
+    @Test
+    public void shouldStartWithinThreeTimesMinimum()
+    {
+        ReconnectBackoff backoff = new ReconnectBackoff(100, 10_000, 60_000L, new Random(1L));
+        int delay = backoff.next(1000L);
+        assertTrue(delay >= 100 && delay <= 300);
+    }
+
+    @Test
+    public void shouldStayWithinThreeTimesPreviousUpToMaximum()
+    {
+        ReconnectBackoff backoff = new ReconnectBackoff(100, 10_000, 60_000L, new Random(1L));
+        int previous = 100;
+        for (int i = 0; i < 100; i++)
+        {
+            int delay = backoff.next(1000L + i);
+            assertTrue(delay >= 100 && delay <= Math.min(previous * 3, 10_000));
+            previous = delay;
+        }
+    }
+
+    @Test
+    public void shouldForgetFailuresAfterQuietPeriod()
+    {
+        ReconnectBackoff backoff = new ReconnectBackoff(100, 10_000, 60_000L, new Random(1L));
+        for (int i = 0; i < 100; i++)
+        {
+            backoff.next(1000L + i);
+        }
+        int delay = backoff.next(1099L + 60_001L);
+        assertTrue(delay >= 100 && delay <= 300);
+    }
+
+    @Test
+    public void shouldDecorrelateConnectionsFailingTogether()
+    {
+        ReconnectBackoff backoff1 = new ReconnectBackoff(100, 10_000, 60_000L, new Random(1L));
+        ReconnectBackoff backoff2 = new ReconnectBackoff(100, 10_000, 60_000L, new Random(2L));
+        int differences = 0;
+        for (int i = 0; i < 10; i++)
+        {
+            differences += backoff1.next(1000L + i) != backoff2.next(1000L + i) ? 1 : 0;
+        }
+        assertNotEquals(0, differences);
+    }
+
+    @Test(expected = AssertionError.class)
+    public void shouldRejectMaximumLessThanMinimum()
+    {
+        new ReconnectBackoff(1000, 50, 60_000L, new Random());
+    }
+
+    @Test(expected = AssertionError.class)
+    public void shouldRejectNegativeMinimum()
+    {
+        new ReconnectBackoff(-10, 50, 60_000L, new Random());
+    }
+}
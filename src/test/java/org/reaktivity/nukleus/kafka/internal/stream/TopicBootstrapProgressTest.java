@@ -0,0 +1,79 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public final class TopicBootstrapProgressTest
+{
+    private final long[] offsetsBehind = new long[1];
+    private final long[] bootstrapsCompleted = new long[1];
+
+    private final TopicBootstrapProgress progress = new TopicBootstrapProgress(3,
+            v -> offsetsBehind[0] += v,
+            () -> ++bootstrapsCompleted[0]);
+
+    @Test
+    public void shouldReportOffsetsBehindWhileBootstrapping()
+    {
+        progress.onHighWatermark(0, 0L, 10L);
+        progress.onHighWatermark(1, 0L, 5L);
+        progress.onHighWatermark(0, 6L, 12L);
+
+        assertEquals(11L, offsetsBehind[0]);
+        assertTrue(progress.isBootstrapping(0));
+        assertEquals(0L, bootstrapsCompleted[0]);
+    }
+
+    @Test
+    public void shouldStopBootstrappingPartitionAtHighWatermark()
+    {
+        progress.onHighWatermark(0, 0L, 10L);
+        progress.onHighWatermark(1, 0L, 5L);
+        progress.onHighWatermark(0, 10L, 10L);
+
+        assertFalse(progress.isBootstrapping(0));
+        assertEquals(1, progress.nextBootstrapping(0));
+        assertEquals(5L, offsetsBehind[0]);
+
+        progress.onHighWatermark(0, 10L, 20L);
+
+        assertFalse(progress.isBootstrapping(0));
+        assertEquals(5L, offsetsBehind[0]);
+    }
+
+    @Test
+    public void shouldCountCompletedBootstrapOnce()
+    {
+        progress.onHighWatermark(0, 0L, 0L);
+        progress.onHighWatermark(1, 3L, 3L);
+        progress.onHighWatermark(2, 0L, 4L);
+
+        assertEquals(0L, bootstrapsCompleted[0]);
+
+        progress.onHighWatermark(2, 4L, 4L);
+        progress.onHighWatermark(2, 4L, 4L);
+        progress.onHighWatermark(1, 3L, 3L);
+
+        assertEquals(1L, bootstrapsCompleted[0]);
+        assertEquals(0L, offsetsBehind[0]);
+        assertEquals(-1, progress.nextBootstrapping(0));
+    }
+}
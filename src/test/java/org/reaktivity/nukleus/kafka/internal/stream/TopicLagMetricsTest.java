@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public final class TopicLagMetricsTest
+{
+    private final long[] topicOffsetsBehind = new long[1];
+    private final long[] topicAgeMillis = new long[1];
+    private final long[] partitionOffsetsBehind = new long[2];
+    private final long[] partitionAgeMillis = new long[2];
+
+    private final TopicLagMetrics metrics = new TopicLagMetrics(3, 2,
+            v -> topicOffsetsBehind[0] += v,
+            v -> topicAgeMillis[0] += v,
+            p -> v -> partitionOffsetsBehind[p] += v,
+            p -> v -> partitionAgeMillis[p] += v);
+
+    @Test
+    public void shouldReportOffsetsBehindPerPartitionAndTopic()
+    {
+        metrics.onHighWatermark(0, 10L, 15L, 1000L);
+        metrics.onHighWatermark(2, 20L, 27L, 1000L);
+        metrics.onHighWatermark(0, 15L, 18L, 1100L);
+
+        assertEquals(3L, partitionOffsetsBehind[0]);
+        assertEquals(0L, partitionOffsetsBehind[1]);
+        assertEquals(10L, topicOffsetsBehind[0]);
+    }
+
+    @Test
+    public void shouldReportAgeSinceLastCaughtUp()
+    {
+        metrics.onHighWatermark(0, 10L, 15L, 1000L);
+        metrics.onHighWatermark(1, 10L, 15L, 1200L);
+        metrics.onHighWatermark(1, 12L, 15L, 1500L);
+
+        assertEquals(300L, partitionAgeMillis[1]);
+        assertEquals(500L, topicAgeMillis[0]);
+
+        metrics.onHighWatermark(0, 15L, 15L, 1600L);
+
+        assertEquals(0L, partitionAgeMillis[0]);
+        assertEquals(400L, topicAgeMillis[0]);
+    }
+
+    @Test
+    public void shouldClearGaugesOnClose()
+    {
+        metrics.onHighWatermark(0, 10L, 15L, 1000L);
+        metrics.onHighWatermark(2, 20L, 27L, 1100L);
+        metrics.onHighWatermark(0, 11L, 15L, 1200L);
+        metrics.close();
+
+        assertEquals(0L, partitionOffsetsBehind[0]);
+        assertEquals(0L, partitionAgeMillis[0]);
+        assertEquals(0L, topicOffsetsBehind[0]);
+        assertEquals(0L, topicAgeMillis[0]);
+    }
+}
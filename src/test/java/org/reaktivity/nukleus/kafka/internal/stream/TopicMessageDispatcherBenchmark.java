@@ -0,0 +1,168 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.stream;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.reaktivity.nukleus.kafka.internal.test.TestUtil.asBuffer;
+import static org.reaktivity.nukleus.kafka.internal.test.TestUtil.asOctets;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.function.Function;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.reaktivity.nukleus.kafka.internal.cache.StreamingTopicCache;
+
+/*
+ * Measures TopicMessageDispatcher.dispatch per record for batches of small keyed messages delivered to
+ * a broadcast subscriber and a key subscriber, with and without the startBatch hook used by the fetch
+ * decoder. Scores are per record (see OperationsPerInvocation). The streaming topic cache keeps cache
+ * lookups cheap, so this measures the overhead of the dispatcher tree itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(3)
+@Warmup(iterations = 5, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+public class TopicMessageDispatcherBenchmark
+{
+    private static final int RECORDS_PER_BATCH = 100;
+
+    private final HeadersFW headersRO = new HeadersFW();
+
+    private TopicMessageDispatcher dispatcher;
+    private DirectBuffer[] keys;
+    private DirectBuffer value;
+
+    private long nextOffset;
+
+    @Setup
+    public void setup()
+    {
+        dispatcher = new TopicMessageDispatcher(StreamingTopicCache.INSTANCE, 1);
+        dispatcher.add(null, -1, Collections.emptyIterator(), new DeliveringMessageDispatcher());
+        dispatcher.add(asOctets("key0"), 0, Collections.emptyIterator(), new DeliveringMessageDispatcher());
+
+        keys = new DirectBuffer[RECORDS_PER_BATCH];
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = asBuffer("key" + i % 10);
+        }
+        value = asBuffer("Hello, world");
+        headersRO.wrap(new UnsafeBuffer(new byte[0]), 0, 0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS_PER_BATCH)
+    public int dispatchBatch()
+    {
+        final long firstOffset = nextOffset;
+        dispatcher.startBatch(0, firstOffset, firstOffset, firstOffset + RECORDS_PER_BATCH - 1);
+        final int result = dispatchRecords(firstOffset);
+        dispatcher.flush(0, firstOffset, nextOffset);
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS_PER_BATCH)
+    public int dispatchRecords()
+    {
+        final long firstOffset = nextOffset;
+        final int result = dispatchRecords(firstOffset);
+        dispatcher.flush(0, firstOffset, nextOffset);
+        return result;
+    }
+
+    private int dispatchRecords(
+        long firstOffset)
+    {
+        int result = 0;
+        for (int i = 0; i < RECORDS_PER_BATCH; i++)
+        {
+            result |= dispatcher.dispatch(0, firstOffset, nextOffset, nextOffset + RECORDS_PER_BATCH,
+                    keys[i], headersRO, 0L, 0L, value);
+            nextOffset++;
+        }
+        return result;
+    }
+
+    private static final class DeliveringMessageDispatcher implements MessageDispatcher
+    {
+        @Override
+        public void adjustOffset(
+            int partition,
+            long oldOffset,
+            long newOffset)
+        {
+        }
+
+        @Override
+        public void detach(
+            boolean reattach)
+        {
+        }
+
+        @Override
+        public int dispatch(
+            int partition,
+            long requestOffset,
+            long messageStartOffset,
+            DirectBuffer key,
+            Function<DirectBuffer, Iterator<DirectBuffer>> supplyHeader,
+            long timestamp,
+            long traceId,
+            DirectBuffer value)
+        {
+            return FLAGS_DELIVERED;
+        }
+
+        @Override
+        public void flush(
+            int partition,
+            long requestOffset,
+            long nextFetchOffset)
+        {
+        }
+    }
+
+    public static void main(
+        String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(TopicMessageDispatcherBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .forks(0)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -297,6 +297,41 @@ public final class TopicMessageDispatcherTest
                 dispatcher.dispatch(1, 10L, 11L, 12L, asBuffer("key2"), headers, timestamp, 0L, null));
     }
 
+    @Test
+    public void shouldFastForwardUsingNextOffsetFromStartOfBatch()
+    {
+        MessageDispatcher child1 = context.mock(MessageDispatcher.class, "child1");
+        dispatcher.add(asOctets("key1"), 1, emptyHeaders, child1);
+
+        HeadersFW headers = emptyHeaders();
+
+        final long timestamp = System.currentTimeMillis() - 123;
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(topicCache).nextOffset(1);
+                will(returnValue(20L));
+                oneOf(topicCache).getOffset(with(1), with(asOctets("key1")));
+                will(returnValue(13L));
+                oneOf(topicCache).add(with(1), with(10L), with(12L), with(timestamp), with(0L),
+                        with(bufferMatching("key1")), with(headers), with((DirectBuffer) null), with(false));
+                oneOf(topicCache).getOffset(with(1), with(asOctets("key1")));
+                will(returnValue(13L));
+                oneOf(child1).dispatch(with(1), with(10L), with(13L), with(bufferMatching("key1")),
+                        with(headers.headerSupplier()), with(timestamp), with(0L), with((DirectBuffer) null));
+                will(returnValue(FLAGS_DELIVERED));
+                oneOf(child1).flush(1, 10L, 20L);
+                oneOf(topicCache).add(with(1), with(10L), with(13L), with(timestamp), with(0L),
+                        with(bufferMatching("key1")), with(headers), with((DirectBuffer) null), with(false));
+            }
+        });
+        dispatcher.startBatch(1, 10L, 12L, 13L);
+        assertEquals(0, dispatcher.dispatch(1, 10L, 12L, 999L, asBuffer("key1"), headers, timestamp, 0L, null));
+        assertEquals(FLAGS_DELIVERED,
+                dispatcher.dispatch(1, 10L, 13L, 999L, asBuffer("key1"), headers, timestamp, 0L, null));
+    }
+
     @Test
     public void shouldFlush()
     {
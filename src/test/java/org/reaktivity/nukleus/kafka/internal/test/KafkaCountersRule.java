@@ -58,6 +58,21 @@ public class KafkaCountersRule implements TestRule
         return controller().count("cache.inuse");
     }
 
+    public long dispatchEncodeCacheHits()
+    {
+        return controller().count("dispatch.encode.cache.hits");
+    }
+
+    public long slowConsumerParked()
+    {
+        return controller().count("slow.consumer.parked");
+    }
+
+    public long slowConsumerFallbacks()
+    {
+        return controller().count("slow.consumer.fallbacks");
+    }
+
     private KafkaController controller()
     {
         return reaktor.controller(KafkaController.class);
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.agrona.collections.MutableInteger;
+import org.junit.Test;
+import org.reaktivity.nukleus.kafka.internal.util.DelayedTaskScheduler.Timer;
+
+public final class DelayedTaskSchedulerTest
+{
+    private long now = 1000L;
+
+    private final DelayedTaskScheduler scheduler = new DelayedTaskScheduler(() -> now);
+
+    @Test
+    public void shouldExpireTimerOnItsMillisecond()
+    {
+        MutableInteger runs = new MutableInteger();
+        scheduler.newTimeout(3, () -> runs.value++);
+
+        now += 2;
+        assertEquals(0, scheduler.process());
+        now += 1;
+        assertEquals(1, scheduler.process());
+        assertEquals(1, runs.value);
+    }
+
+    @Test
+    public void shouldCascadeTimersFromHigherLevels()
+    {
+        final long[] delays = new long[] { 255L, 256L, 300L, 16_383L, 16_384L, 70_000L, 1_048_576L, 5_000_000L };
+        final long[] expiredAt = new long[delays.length];
+        for (int i = 0; i < delays.length; i++)
+        {
+            final int index = i;
+            scheduler.newTimeout(delays[i], () -> expiredAt[index] = now);
+        }
+
+        final long start = now;
+        while (now < start + 5_000_000L)
+        {
+            now += 7;
+            scheduler.process();
+        }
+
+        for (int i = 0; i < delays.length; i++)
+        {
+            assertTrue(expiredAt[i] >= start + delays[i] && expiredAt[i] < start + delays[i] + 7);
+        }
+    }
+
+    @Test
+    public void shouldExpireTimersDueOnLastTickOfBlock()
+    {
+        now = 0L;
+        final DelayedTaskScheduler scheduler = new DelayedTaskScheduler(() -> now);
+        final long[] deadlines = new long[] { 255L, 511L, 767L, 16_383L, 32_767L, 1_048_575L, 2_097_151L };
+        final long[] expiredAt = new long[deadlines.length];
+        for (int i = 0; i < deadlines.length; i++)
+        {
+            final int index = i;
+            scheduler.newTimeout(deadlines[i], () -> expiredAt[index] = now);
+        }
+
+        while (now < 2_097_151L)
+        {
+            now++;
+            scheduler.process();
+        }
+
+        for (int i = 0; i < deadlines.length; i++)
+        {
+            assertEquals(deadlines[i], expiredAt[i]);
+        }
+    }
+
+    @Test
+    public void shouldExpireTimersDueOnEveryBlockBoundary()
+    {
+        final long[] blocks = new long[] { 1L << 8, 1L << 14, 1L << 20 };
+        final long end = 3L << 20;
+        final MutableInteger runs = new MutableInteger();
+        int expected = 0;
+        for (long block : blocks)
+        {
+            for (long deadline = block - 1; deadline <= end; deadline += block)
+            {
+                if (deadline > now)
+                {
+                    final long due = deadline;
+                    scheduler.newTimeout(deadline - now, () ->
+                    {
+                        assertEquals(due, now);
+                        runs.value++;
+                    });
+                    expected++;
+                }
+            }
+        }
+
+        while (now < end)
+        {
+            now++;
+            scheduler.process();
+        }
+
+        assertEquals(expected, runs.value);
+    }
+
+    @Test
+    public void shouldExpireTimerAfterLaterReschedule()
+    {
+        MutableInteger runs = new MutableInteger();
+        Timer timer = scheduler.newTimeout(10, () -> runs.value++);
+
+        now += 5;
+        scheduler.process();
+        scheduler.rescheduleTimeout(500, timer);
+
+        now += 10;
+        assertEquals(0, scheduler.process());
+        now += 489;
+        assertEquals(0, scheduler.process());
+        now += 1;
+        assertEquals(1, scheduler.process());
+        assertEquals(1, runs.value);
+    }
+
+    @Test
+    public void shouldExpireTimerAfterEarlierReschedule()
+    {
+        MutableInteger runs = new MutableInteger();
+        Timer timer = scheduler.newTimeout(60_000, () -> runs.value++);
+
+        timer.cancel();
+        scheduler.rescheduleTimeout(2, timer);
+
+        now += 2;
+        assertEquals(1, scheduler.process());
+        assertFalse(timer.isActive());
+    }
+
+    @Test
+    public void shouldNotExpireCancelledTimer()
+    {
+        MutableInteger runs = new MutableInteger();
+        Timer timer = scheduler.newTimeout(10, () -> runs.value++);
+        timer.cancel();
+
+        now += 100;
+        assertEquals(0, scheduler.process());
+        assertEquals(0, runs.value);
+    }
+
+    @Test
+    public void shouldRescheduleTimerFromItsOwnTask()
+    {
+        MutableInteger runs = new MutableInteger();
+        Timer timer = scheduler.newBlankTimer();
+        scheduler.rescheduleTimeout(1, timer, () ->
+        {
+            runs.value++;
+            scheduler.rescheduleTimeout(1, timer);
+        });
+
+        for (int i = 0; i < 5; i++)
+        {
+            now += 1;
+            scheduler.process();
+        }
+        assertEquals(5, runs.value);
+        assertTrue(timer.isActive());
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.kafka.internal.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+public final class DirectBufferHashMapTest
+{
+    private final MutableDirectBuffer buffer = new UnsafeBuffer(new byte[100]);
+
+    private final DirectBufferHashMap<String> map = new DirectBufferHashMap<>();
+
+    @Test
+    public void shouldPutAndGet()
+    {
+        put("key1", "value1");
+        put("key2", "value2");
+
+        assertEquals(2, map.size());
+        assertEquals("value1", get("key1"));
+        assertEquals("value2", get("key2"));
+        assertNull(get("key3"));
+    }
+
+    @Test
+    public void shouldGetFromDifferentOffset()
+    {
+        put("key1", "value1");
+
+        int offset = 17;
+        int length = buffer.putStringWithoutLengthUtf8(offset, "key1");
+
+        assertEquals("value1", map.get(buffer, offset, length));
+    }
+
+    @Test
+    public void shouldReplaceValueForExistingKey()
+    {
+        put("key1", "value1");
+
+        assertEquals("value1", put("key1", "value2"));
+        assertEquals(1, map.size());
+        assertEquals("value2", get("key1"));
+    }
+
+    @Test
+    public void shouldSupportEmptyKey()
+    {
+        put("", "empty");
+
+        assertEquals("empty", get(""));
+        assertNull(get("a"));
+    }
+
+    @Test
+    public void shouldNotMatchKeyWhichIsPrefix()
+    {
+        put("a-long-key-value", "value1");
+
+        assertNull(get("a-long-key-valu"));
+        assertNull(get("a-long-key-value1"));
+    }
+
+    @Test
+    public void shouldRemove()
+    {
+        put("key1", "value1");
+        put("key2", "value2");
+
+        assertEquals("value1", remove("key1"));
+        assertNull(remove("key1"));
+        assertNull(get("key1"));
+        assertEquals("value2", get("key2"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void shouldGrowAndRemoveManyEntries()
+    {
+        final int count = 10_000;
+        for (int i = 0; i < count; i++)
+        {
+            put("key" + i, "value" + i);
+        }
+        assertEquals(count, map.size());
+
+        for (int i = 0; i < count; i += 2)
+        {
+            assertEquals("value" + i, remove("key" + i));
+        }
+        assertEquals(count / 2, map.size());
+
+        for (int i = 0; i < count; i++)
+        {
+            assertEquals(i % 2 == 0 ? null : "value" + i, get("key" + i));
+        }
+
+        // reuse space released by removed keys
+        for (int i = 0; i < count; i += 2)
+        {
+            put("other" + i, "other" + i);
+        }
+        for (int i = 0; i < count; i++)
+        {
+            assertEquals(i % 2 == 0 ? "other" + i : "value" + i, get(i % 2 == 0 ? "other" + i : "key" + i));
+        }
+    }
+
+    @Test
+    public void shouldRemoveIf()
+    {
+        final int count = 1_000;
+        for (int i = 0; i < count; i++)
+        {
+            put("key" + i, i % 3 == 0 ? "noop" : "value" + i);
+        }
+
+        assertTrue(map.removeIf("noop"::equals));
+        assertFalse(map.removeIf("noop"::equals));
+
+        int size = 0;
+        for (String value : map.values())
+        {
+            assertFalse("noop".equals(value));
+            size++;
+        }
+        assertEquals(map.size(), size);
+        assertEquals(count - (count + 2) / 3, size);
+    }
+
+    @Test
+    public void shouldBeEmptyAfterClear()
+    {
+        put("key1", "value1");
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertNull(get("key1"));
+        assertFalse(map.values().iterator().hasNext());
+    }
+
+    private String put(
+        String key,
+        String value)
+    {
+        DirectBuffer keyBuffer = asBuffer(key);
+        return map.put(keyBuffer, 0, keyBuffer.capacity(), value);
+    }
+
+    private String get(
+        String key)
+    {
+        DirectBuffer keyBuffer = asBuffer(key);
+        return map.get(keyBuffer, 0, keyBuffer.capacity());
+    }
+
+    private String remove(
+        String key)
+    {
+        DirectBuffer keyBuffer = asBuffer(key);
+        return map.remove(keyBuffer, 0, keyBuffer.capacity());
+    }
+
+    private static DirectBuffer asBuffer(
+        String value)
+    {
+        return new UnsafeBuffer(value.getBytes(UTF_8));
+    }
+}